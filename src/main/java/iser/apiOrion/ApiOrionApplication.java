@@ -10,7 +10,7 @@ import org.springframework.data.mongodb.repository.config.EnableMongoRepositorie
 import org.springframework.scheduling.annotation.EnableScheduling; // ¡Importa esta anotación!
 
 @SpringBootApplication(scanBasePackages = "iser.apiOrion")
-@EnableMongoRepositories
+@EnableMongoRepositories(basePackages = "iser.apiOrion.repository")
 @EnableScheduling // <-- ¡Añade esta línea aquí!
 public class ApiOrionApplication extends SpringBootServletInitializer {
 
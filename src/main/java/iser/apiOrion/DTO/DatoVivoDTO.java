@@ -0,0 +1,27 @@
+package iser.apiOrion.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DatoVivoDTO {
+
+    /*
+     * idSensor: Identificador del sensor
+     * fecha: Fecha del dato en milisegundos
+     * valor: Valor del dato
+     * unidad: Unidad del dato
+     * tardio: true si la fecha es anterior a la del ultimo dato publicado del sensor, por
+     *         ejemplo lecturas acumuladas que se suben despues de un corte
+     */
+
+    private String idSensor;
+    private long fecha;
+    private Double valor;
+    private String unidad;
+    private Boolean tardio;
+
+}
@@ -0,0 +1,22 @@
+package iser.apiOrion.DTO;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class DatosAgregadosDTO {
+
+    /*
+     * idSensor: Identificador del sensor
+     * intervalo: minuto, hora o dia
+     * agregaciones: Agregaciones calculadas (min, max, avg, count, sum)
+     * puntos: Un punto por intervalo con datos, en orden cronologico
+     */
+
+    private String idSensor;
+    private String intervalo;
+    private List<String> agregaciones;
+    private List<PuntoAgregadoDTO> puntos;
+
+}
@@ -2,13 +2,25 @@ package iser.apiOrion.DTO;
 
 import lombok.Data;
 
+import java.util.Date;
+
 @Data
 public class DatosDTO {
     /**
      * idSensor: Identificador del sensor
-     * valor: Valor del sensor
+     * valor: Valor del sensor, se guarda como numero
+     * unidad: Unidad del valor (opcional)
+     * secuencia: Contador creciente del dispositivo, de uno en uno (opcional); se aceptan
+     *            desordenadas hasta 64 posiciones por debajo de la mayor recibida, y los datos
+     *            con secuencia ya recibida se descartan como repetidos. No debe ser la fecha en
+     *            ms: una lectura mas de 64 ms atrasada se descartaria
+     * fecha: Fecha de la lectura en el dispositivo, epoch ms o ISO-8601 (opcional); sin ella
+     *        se usa la fecha de recepcion
      */
     private String idSensor;
     private String valor;
+    private String unidad;
+    private Long secuencia;
+    private Date fecha;
 
 }
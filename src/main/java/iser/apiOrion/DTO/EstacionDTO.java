@@ -16,6 +16,7 @@ public class EstacionDTO {
         * idTipoCultivo: Identificador del tipo de cultivo
         * descripcionTipoCultivo: Descripcion del tipo de cultivo
         * Numero_Asociados: Numero de asociados
+        * retencionDias: Dias de datos crudos en mongo antes de archivarlos (null = valor por defecto)
      */
 
     private String id;
@@ -30,5 +31,6 @@ public class EstacionDTO {
     private String idTipoCultivo;
     private String descripcionTipoCultivo;
     private int Numero_Asociados;
+    private Integer retencionDias;
 
 }
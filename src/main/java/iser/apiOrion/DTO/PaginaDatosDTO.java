@@ -0,0 +1,20 @@
+package iser.apiOrion.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PaginaDatosDTO {
+
+    /*
+     * datos: Datos de la pagina en orden cronologico
+     * siguiente: Cursor para pedir la pagina siguiente, ausente en la ultima pagina
+     */
+
+    private List<DatosGraficaDTO> datos;
+    private String siguiente;
+
+}
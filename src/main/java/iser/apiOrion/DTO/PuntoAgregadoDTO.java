@@ -0,0 +1,27 @@
+package iser.apiOrion.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PuntoAgregadoDTO {
+
+    /*
+     * t: Inicio del intervalo en milisegundos epoch
+     * count: Cantidad de valores en el intervalo
+     * sum: Suma de los valores
+     * min: Valor minimo
+     * max: Valor maximo
+     * avg: Promedio de los valores
+     * Solo se envian las agregaciones solicitadas
+     */
+
+    private long t;
+    private Long count;
+    private Double sum;
+    private Double min;
+    private Double max;
+    private Double avg;
+
+}
@@ -0,0 +1,26 @@
+package iser.apiOrion.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResultadoItemDTO {
+
+    /*
+     * indice: Posicion del dato dentro del lote
+     * estado: insertado, aceptado (escritura diferida), duplicado o rechazado
+     * id: Identificador asignado al dato insertado
+     * mensaje: Motivo del rechazo
+     */
+
+    private int indice;
+    private String estado;
+    private String id;
+    private String mensaje;
+
+}
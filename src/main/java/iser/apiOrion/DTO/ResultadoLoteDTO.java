@@ -0,0 +1,24 @@
+package iser.apiOrion.DTO;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ResultadoLoteDTO {
+
+    /*
+     * total: Cantidad de datos recibidos en el lote
+     * insertados: Cantidad de datos insertados
+     * rechazados: Cantidad de datos rechazados
+     * duplicados: Cantidad de datos descartados por secuencia ya recibida
+     * resultados: Resultado de cada dato en el orden recibido
+     */
+
+    private int total;
+    private int insertados;
+    private int rechazados;
+    private int duplicados;
+    private List<ResultadoItemDTO> resultados;
+
+}
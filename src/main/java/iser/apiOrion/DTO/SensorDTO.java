@@ -13,6 +13,8 @@ public class SensorDTO {
      * descripcion: Descripcion del sensor
      * config: Configuracin del sensor
      * ubicacion: Ubicacion del sensor
+     * indice: Indice compacto del sensor para la ingesta binaria
+     * retencionDias: Dias de datos crudos en mongo antes de archivarlos (null = los de la estacion)
      */
 
     private String id;
@@ -21,5 +23,7 @@ public class SensorDTO {
     private String descripcion;
     private boolean config;
     private String ubicacion;
+    private Integer indice;
+    private Integer retencionDias;
 
 }
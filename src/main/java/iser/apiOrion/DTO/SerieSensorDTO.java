@@ -0,0 +1,18 @@
+package iser.apiOrion.DTO;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SerieSensorDTO {
+
+    /*
+     * idSensor: Identificador del sensor
+     * datos: Datos del sensor en orden cronologico
+     */
+
+    private String idSensor;
+    private List<DatosGraficaDTO> datos;
+
+}
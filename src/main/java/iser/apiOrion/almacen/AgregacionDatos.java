@@ -0,0 +1,104 @@
+package iser.apiOrion.almacen;
+
+import iser.apiOrion.DTO.PuntoAgregadoDTO;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Etapas comunes de los pipelines de agregacion por intervalo
+ */
+public class AgregacionDatos {
+
+    private AgregacionDatos() {
+    }
+
+    /**
+     * Valor numerico del dato: los documentos de la version 1 guardan texto y se convierten
+     * en el servidor; los que no son numeros quedan en null y no cuentan
+     * @param campo campo con el valor
+     * @return expresion $convert
+     */
+    public static Document valorNumerico(String campo) {
+        return new Document("$convert", new Document("input", campo)
+                .append("to", "double")
+                .append("onError", null)
+                .append("onNull", null));
+    }
+
+    /**
+     * Etapa $group que agrupa valores sueltos (campo v) por intervalo
+     * @param campoFecha campo con la fecha
+     * @param unidad unidad de $dateTrunc
+     * @param zonaHoraria zona horaria
+     * @return etapa $group
+     */
+    public static Document agruparValores(String campoFecha, String unidad, String zonaHoraria) {
+        return new Document("$group", new Document("_id", truncar(campoFecha, unidad, zonaHoraria))
+                .append("count", new Document("$sum", new Document("$cond", List.of(new Document("$ne", Arrays.asList("$v", null)), 1, 0))))
+                .append("sum", new Document("$sum", "$v"))
+                .append("min", new Document("$min", "$v"))
+                .append("max", new Document("$max", "$v")));
+    }
+
+    /**
+     * Expresion $dateTrunc
+     * @param campoFecha campo con la fecha
+     * @param unidad unidad (minute, hour o day)
+     * @param zonaHoraria zona horaria
+     * @return expresion
+     */
+    public static Document truncar(String campoFecha, String unidad, String zonaHoraria) {
+        return new Document("$dateTrunc", new Document("date", campoFecha)
+                .append("unit", unidad)
+                .append("timezone", zonaHoraria));
+    }
+
+    /**
+     * Metodo que permite convertir el resultado de un $group por intervalo
+     * @param resultados documentos con _id (fecha), count, sum, min y max
+     * @return puntos agregados
+     */
+    public static List<PuntoAgregadoDTO> leer(Iterable<Document> resultados) {
+        List<PuntoAgregadoDTO> puntos = new ArrayList<>();
+        for (Document documento : resultados) {
+            Number count = documento.get("count", Number.class);
+            if (count == null || count.longValue() == 0) {
+                continue;
+            }
+            PuntoAgregadoDTO punto = new PuntoAgregadoDTO();
+            punto.setT(documento.get("_id", Date.class).getTime());
+            punto.setCount(count.longValue());
+            punto.setSum(numero(documento.get("sum")));
+            punto.setMin(numero(documento.get("min")));
+            punto.setMax(numero(documento.get("max")));
+            puntos.add(punto);
+        }
+        return puntos;
+    }
+
+    /**
+     * Metodo que permite sumar dos puntos del mismo intervalo que vienen de fuentes distintas
+     * @param punto punto que acumula
+     * @param otro punto a sumar
+     * @return el primer punto con count, sum, min y max combinados
+     */
+    public static PuntoAgregadoDTO combinar(PuntoAgregadoDTO punto, PuntoAgregadoDTO otro) {
+        punto.setCount(punto.getCount() + otro.getCount());
+        punto.setSum(punto.getSum() == null ? otro.getSum()
+                : otro.getSum() == null ? punto.getSum() : punto.getSum() + otro.getSum());
+        punto.setMin(punto.getMin() == null ? otro.getMin()
+                : otro.getMin() == null ? punto.getMin() : Math.min(punto.getMin(), otro.getMin()));
+        punto.setMax(punto.getMax() == null ? otro.getMax()
+                : otro.getMax() == null ? punto.getMax() : Math.max(punto.getMax(), otro.getMax()));
+        return punto;
+    }
+
+    private static Double numero(Object valor) {
+        return valor instanceof Number numero ? numero.doubleValue() : null;
+    }
+
+}
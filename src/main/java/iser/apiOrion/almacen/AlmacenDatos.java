@@ -0,0 +1,81 @@
+package iser.apiOrion.almacen;
+
+import iser.apiOrion.DTO.PuntoAgregadoDTO;
+import iser.apiOrion.collection.Datos;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public interface AlmacenDatos {
+
+    /**
+     * Calificador de los almacenes de mongo (documento o bucket), que AlmacenDatosArchivo
+     * envuelve para sumar el archivo frio
+     */
+    String MONGO = "almacenMongo";
+
+    /**
+     * Metodo que permite escribir un lote de datos en una sola operacion masiva
+     * @param lote datos a escribir
+     * @return errores de escritura indexados por la posicion del dato en el lote
+     */
+    Map<Integer, String> escribirLote(List<Datos> lote);
+
+    /**
+     * Metodo que permite recorrer los datos de un sensor en un rango de fechas
+     * (ambos extremos excluidos) en orden cronologico sin cargarlos todos en memoria
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param consumidor recibe cada dato
+     */
+    void recorrerRango(String idSensor, Date inicio, Date fin, Consumer<Datos> consumidor);
+
+    /**
+     * Metodo que permite recorrer con una sola consulta ($in) los datos de varios sensores en
+     * un rango de fechas (ambos extremos excluidos), ordenados por sensor y luego por fecha
+     * @param idSensores ids de los sensores
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param consumidor recibe cada dato
+     */
+    void recorrerRangoSensores(Collection<String> idSensores, Date inicio, Date fin, Consumer<Datos> consumidor);
+
+    /**
+     * Metodo que permite leer una pagina de datos de un sensor ordenados por (fecha, id)
+     * continuando despues del ultimo dato de la pagina anterior, sin saltar documentos
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param despuesFecha fecha del ultimo dato entregado, o null para la primera pagina
+     * @param despuesId id del ultimo dato entregado, o null para la primera pagina
+     * @param limite cantidad maxima de datos
+     * @return datos de la pagina
+     */
+    List<Datos> pagina(String idSensor, Date inicio, Date fin, Date despuesFecha, String despuesId, int limite);
+
+    /**
+     * Metodo que permite agregar en mongo los datos de un sensor por intervalo de tiempo
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param unidad unidad de $dateTrunc (minute, hour o day)
+     * @param zonaHoraria zona horaria para truncar las fechas
+     * @return un punto por intervalo con count, sum, min y max
+     */
+    List<PuntoAgregadoDTO> agregar(String idSensor, Date inicio, Date fin, String unidad, String zonaHoraria);
+
+    /**
+     * Metodo que permite borrar los datos de un sensor en un rango de fechas, despues de
+     * archivarlos
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial (incluida)
+     * @param fin fecha final (excluida)
+     * @return cantidad de documentos borrados
+     */
+    long eliminarRango(String idSensor, Date inicio, Date fin);
+
+}
@@ -0,0 +1,120 @@
+package iser.apiOrion.almacen;
+
+import iser.apiOrion.DTO.PuntoAgregadoDTO;
+import iser.apiOrion.collection.Datos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Almacen que se inyecta en el resto de la aplicacion: escribe en el almacen de mongo y en las
+ * lecturas suma el archivo frio cuando el rango empieza antes del ultimo dia archivado del
+ * sensor, de modo que los datos archivados se siguen consultando igual.
+ * <p>
+ *     Los dias archivados ya no estan en mongo, por lo que cada lectura se parte en la fecha
+ *     limite del archivo: lo anterior sale de los archivos y lo posterior de mongo. Si el rango
+ *     empieza despues del limite no se toca el disco.
+ * </p>
+ */
+@Primary
+@Component
+public class AlmacenDatosArchivo implements AlmacenDatos {
+
+    /**
+     * Almacen de mongo segun datos.almacenamiento.modo
+     */
+    @Autowired
+    @Qualifier(AlmacenDatos.MONGO)
+    AlmacenDatos almacenMongo;
+
+    /**
+     * Archivo frio de datos crudos
+     */
+    @Autowired
+    ArchivoDatos archivoDatos;
+
+    @Override
+    public Map<Integer, String> escribirLote(List<Datos> lote) {
+        return almacenMongo.escribirLote(lote);
+    }
+
+    @Override
+    public void recorrerRango(String idSensor, Date inicio, Date fin, Consumer<Datos> consumidor) {
+        Date limite = archivoDatos.limite(idSensor);
+        if (limite == null || !inicio.before(limite)) {
+            almacenMongo.recorrerRango(idSensor, inicio, fin, consumidor);
+            return;
+        }
+        archivoDatos.recorrer(idSensor, inicio, fin.before(limite) ? fin : limite, consumidor);
+        if (fin.after(limite)) {
+            almacenMongo.recorrerRango(idSensor, new Date(limite.getTime() - 1), fin, consumidor);
+        }
+    }
+
+    /**
+     * Metodo que permite recorrer varios sensores. Si alguno tiene datos archivados en el rango
+     * se recorren uno por uno en orden de id, que es el orden que entrega la consulta $in.
+     */
+    @Override
+    public void recorrerRangoSensores(Collection<String> idSensores, Date inicio, Date fin, Consumer<Datos> consumidor) {
+        boolean archivados = idSensores.stream()
+                .map(archivoDatos::limite)
+                .anyMatch(limite -> limite != null && inicio.before(limite));
+        if (!archivados) {
+            almacenMongo.recorrerRangoSensores(idSensores, inicio, fin, consumidor);
+            return;
+        }
+        for (String idSensor : new TreeSet<>(idSensores)) {
+            recorrerRango(idSensor, inicio, fin, consumidor);
+        }
+    }
+
+    @Override
+    public List<Datos> pagina(String idSensor, Date inicio, Date fin, Date despuesFecha, String despuesId, int limite) {
+        Date limiteArchivo = archivoDatos.limite(idSensor);
+        Date desde = despuesFecha != null && despuesFecha.after(inicio) ? despuesFecha : inicio;
+        if (limiteArchivo == null || !desde.before(limiteArchivo)) {
+            return almacenMongo.pagina(idSensor, inicio, fin, despuesFecha, despuesId, limite);
+        }
+        List<Datos> pagina = archivoDatos.pagina(idSensor, inicio, fin.before(limiteArchivo) ? fin : limiteArchivo,
+                despuesFecha, despuesId, limite);
+        if (pagina.size() < limite && fin.after(limiteArchivo)) {
+            pagina.addAll(almacenMongo.pagina(idSensor, new Date(limiteArchivo.getTime() - 1), fin, null, null, limite - pagina.size()));
+        }
+        return pagina;
+    }
+
+    @Override
+    public List<PuntoAgregadoDTO> agregar(String idSensor, Date inicio, Date fin, String unidad, String zonaHoraria) {
+        Date limite = archivoDatos.limite(idSensor);
+        if (limite == null || !inicio.before(limite)) {
+            return almacenMongo.agregar(idSensor, inicio, fin, unidad, zonaHoraria);
+        }
+        TreeMap<Long, PuntoAgregadoDTO> puntos = new TreeMap<>();
+        for (PuntoAgregadoDTO punto : archivoDatos.agregar(idSensor, inicio, fin.before(limite) ? fin : limite, unidad, zonaHoraria)) {
+            puntos.put(punto.getT(), punto);
+        }
+        if (fin.after(limite)) {
+            for (PuntoAgregadoDTO punto : almacenMongo.agregar(idSensor, new Date(limite.getTime() - 1), fin, unidad, zonaHoraria)) {
+                puntos.merge(punto.getT(), punto, AgregacionDatos::combinar);
+            }
+        }
+        return new ArrayList<>(puntos.values());
+    }
+
+    @Override
+    public long eliminarRango(String idSensor, Date inicio, Date fin) {
+        return almacenMongo.eliminarRango(idSensor, inicio, fin);
+    }
+
+}
@@ -0,0 +1,306 @@
+package iser.apiOrion.almacen;
+
+import com.mongodb.bulk.BulkWriteError;
+import iser.apiOrion.DTO.PuntoAgregadoDTO;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.collection.DatosBucket;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Almacen que agrupa los datos en un documento por sensor y por hora (coleccion datos_bucket),
+ * con min, max, count y suma precalculados. Se activa con datos.almacenamiento.modo=bucket.
+ */
+@Component
+@Qualifier(AlmacenDatos.MONGO)
+@ConditionalOnProperty(name = "datos.almacenamiento.modo", havingValue = "bucket")
+public class AlmacenDatosBucket implements AlmacenDatos {
+
+    /**
+     * Duracion de un bucket en milisegundos
+     */
+    public static final long MILISEGUNDOS_BUCKET = 3_600_000L;
+
+    /**
+     * Plantilla de mongo
+     */
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    /**
+     * Metodo que permite escribir un lote de datos como upserts no ordenados sobre los buckets.
+     * Cada dato es una operacion, por lo que los errores conservan la posicion en el lote.
+     * @param lote datos a escribir
+     * @return errores de escritura indexados por la posicion del dato en el lote
+     */
+    @Override
+    public Map<Integer, String> escribirLote(List<Datos> lote) {
+        Map<Integer, String> errores = new HashMap<>();
+        if (lote.isEmpty()) {
+            return errores;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DatosBucket.class);
+        for (Datos datos : lote) {
+            long fecha = datos.getFecha().getTime();
+            long hora = inicioBucket(fecha);
+            double valor = datos.getValor();
+            Update update = new Update()
+                    .setOnInsert("idSensor", datos.getIdSensor())
+                    .setOnInsert("hora", new Date(hora))
+                    .push("offsets", (int) (fecha - hora))
+                    .push("valores", valor)
+                    .min("min", valor)
+                    .max("max", valor)
+                    .inc("count", 1)
+                    .inc("suma", valor);
+            if (datos.getUnidad() != null) {
+                update.set("unidad", datos.getUnidad());
+            }
+            bulk.upsert(new Query(Criteria.where("id").is(idBucket(datos.getIdSensor(), hora))), update);
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                errores.put(error.getIndex(), error.getMessage());
+            }
+        }
+        return errores;
+    }
+
+    /**
+     * Metodo que permite recorrer los datos de un sensor leyendo solo los buckets que se
+     * solapan con el rango. Dentro de cada bucket los valores se ordenan por offset.
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param consumidor recibe cada dato
+     */
+    @Override
+    public void recorrerRango(String idSensor, Date inicio, Date fin, Consumer<Datos> consumidor) {
+        recorrer(new Query(Criteria.where("idSensor").is(idSensor)
+                .and("hora").gte(new Date(inicioBucket(inicio.getTime()))).lt(fin))
+                .with(Sort.by(Sort.Direction.ASC, "hora")), inicio, fin, consumidor);
+    }
+
+    /**
+     * Metodo que permite recorrer los datos de varios sensores con un solo cursor sobre sus
+     * buckets, ordenados por sensor y hora
+     * @param idSensores ids de los sensores
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param consumidor recibe cada dato
+     */
+    @Override
+    public void recorrerRangoSensores(Collection<String> idSensores, Date inicio, Date fin, Consumer<Datos> consumidor) {
+        recorrer(new Query(Criteria.where("idSensor").in(idSensores)
+                .and("hora").gte(new Date(inicioBucket(inicio.getTime()))).lt(fin))
+                .with(Sort.by(Sort.Direction.ASC, "idSensor", "hora")), inicio, fin, consumidor);
+    }
+
+    private void recorrer(Query query, Date inicio, Date fin, Consumer<Datos> consumidor) {
+        long desde = inicio.getTime();
+        long hasta = fin.getTime();
+        try (Stream<DatosBucket> buckets = mongoTemplate.stream(query, DatosBucket.class)) {
+            buckets.forEach(bucket -> {
+                long hora = bucket.getHora().getTime();
+                for (long punto : ordenar(bucket)) {
+                    long fecha = hora + (punto >>> 32);
+                    if (fecha <= desde || fecha >= hasta) {
+                        continue;
+                    }
+                    consumidor.accept(dato(bucket, punto));
+                }
+            });
+        }
+    }
+
+    /**
+     * Metodo que permite leer una pagina de datos. Los datos no tienen id propio, por lo que se
+     * usa uno sintetico (id del bucket y posicion en sus arreglos); como los arreglos solo
+     * crecen, la posicion es estable y sirve de desempate entre datos con la misma fecha.
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param despuesFecha fecha del ultimo dato entregado, o null para la primera pagina
+     * @param despuesId id sintetico del ultimo dato entregado, o null para la primera pagina
+     * @param limite cantidad maxima de datos
+     * @return datos de la pagina
+     */
+    @Override
+    public List<Datos> pagina(String idSensor, Date inicio, Date fin, Date despuesFecha, String despuesId, int limite) {
+        long desde = inicio.getTime();
+        long hasta = fin.getTime();
+        long despues = despuesFecha != null ? despuesFecha.getTime() : Long.MIN_VALUE;
+        int despuesPosicion = despuesId != null ? Integer.parseInt(despuesId.substring(despuesId.lastIndexOf(':') + 1)) : -1;
+        Query query = new Query(Criteria.where("idSensor").is(idSensor)
+                .and("hora").gte(new Date(inicioBucket(Math.max(desde, despues)))).lt(fin))
+                .with(Sort.by(Sort.Direction.ASC, "hora"));
+        List<Datos> pagina = new ArrayList<>();
+        try (Stream<DatosBucket> buckets = mongoTemplate.stream(query, DatosBucket.class)) {
+            Iterator<DatosBucket> iterador = buckets.iterator();
+            while (iterador.hasNext() && pagina.size() < limite) {
+                DatosBucket bucket = iterador.next();
+                long hora = bucket.getHora().getTime();
+                for (long punto : ordenar(bucket)) {
+                    long fecha = hora + (punto >>> 32);
+                    if (fecha <= desde || fecha >= hasta || fecha < despues
+                            || (fecha == despues && (int) punto <= despuesPosicion)) {
+                        continue;
+                    }
+                    pagina.add(dato(bucket, punto));
+                    if (pagina.size() == limite) {
+                        break;
+                    }
+                }
+            }
+        }
+        return pagina;
+    }
+
+    /**
+     * Ordena los datos de un bucket por offset
+     * @return offset en los 32 bits altos y posicion en los bajos, para ordenar sin perder el valor
+     */
+    private long[] ordenar(DatosBucket bucket) {
+        int cantidad = bucket.getOffsets().size();
+        long[] puntos = new long[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            puntos[i] = ((long) bucket.getOffsets().get(i) << 32) | i;
+        }
+        Arrays.sort(puntos);
+        return puntos;
+    }
+
+    private Datos dato(DatosBucket bucket, long punto) {
+        int posicion = (int) punto;
+        Datos datos = new Datos();
+        datos.setId(bucket.getId() + ":" + posicion);
+        datos.setIdSensor(bucket.getIdSensor());
+        datos.setValor(bucket.getValores().get(posicion));
+        datos.setUnidad(bucket.getUnidad());
+        datos.setFecha(new Date(bucket.getHora().getTime() + (punto >>> 32)));
+        datos.setVersionEsquema(Datos.VERSION_ESQUEMA);
+        return datos;
+    }
+
+    /**
+     * Metodo que permite agregar los datos de un sensor por intervalo. Para hora y dia se
+     * suman los resumenes precalculados de los buckets que caen completos dentro del rango; los
+     * buckets de los extremos se calculan con sus valores filtrados por fecha, para no contar
+     * datos de fuera del rango. Para minuto se despliegan los valores.
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param unidad unidad de $dateTrunc
+     * @param zonaHoraria zona horaria
+     * @return un punto por intervalo
+     */
+    @Override
+    public List<PuntoAgregadoDTO> agregar(String idSensor, Date inicio, Date fin, String unidad, String zonaHoraria) {
+        Document match = new Document("$match", new Document("id_sensor", idSensor)
+                .append("hora", new Document("$gte", new Date(inicioBucket(inicio.getTime()))).append("$lt", fin)));
+        List<Document> pipeline;
+        if ("minute".equals(unidad)) {
+            pipeline = List.of(
+                    match,
+                    new Document("$project", new Document("hora", 1)
+                            .append("p", new Document("$zip", new Document("inputs", List.of("$offsets", "$valores"))))),
+                    new Document("$unwind", "$p"),
+                    new Document("$project", new Document("fecha", new Document("$add", List.of("$hora", new Document("$arrayElemAt", List.of("$p", 0)))))
+                            .append("v", new Document("$arrayElemAt", List.of("$p", 1)))),
+                    new Document("$match", new Document("fecha", new Document("$gt", inicio).append("$lt", fin))),
+                    AgregacionDatos.agruparValores("$fecha", unidad, zonaHoraria),
+                    new Document("$sort", new Document("_id", 1)));
+        } else {
+            Document fecha = new Document("$add", List.of("$hora", new Document("$arrayElemAt", List.of("$$p", 0))));
+            Document enRango = new Document("$and", List.of(
+                    new Document("$gt", List.of(fecha, inicio)),
+                    new Document("$lt", List.of(fecha, fin))));
+            // solo los buckets de los extremos despliegan sus arreglos, $cond no evalua la otra rama
+            Document valores = new Document("$cond", List.of("$completo", List.of(),
+                    new Document("$map", new Document("input", new Document("$filter", new Document("input",
+                            new Document("$zip", new Document("inputs", List.of("$offsets", "$valores"))))
+                            .append("as", "p")
+                            .append("cond", enRango)))
+                            .append("as", "p")
+                            .append("in", new Document("$arrayElemAt", List.of("$$p", 1))))));
+            pipeline = List.of(
+                    match,
+                    new Document("$project", new Document("hora", 1)
+                            .append("count", 1)
+                            .append("suma", 1)
+                            .append("min", 1)
+                            .append("max", 1)
+                            .append("completo", new Document("$and", List.of(
+                                    new Document("$gt", List.of("$hora", inicio)),
+                                    new Document("$lte", List.of(new Document("$add", List.of("$hora", MILISEGUNDOS_BUCKET)), fin)))))
+                            .append("v", valores)),
+                    new Document("$group", new Document("_id", AgregacionDatos.truncar("$hora", unidad, zonaHoraria))
+                            .append("count", new Document("$sum", new Document("$cond", List.of("$completo", "$count", new Document("$size", "$v")))))
+                            .append("sum", new Document("$sum", new Document("$cond", List.of("$completo", "$suma", new Document("$sum", "$v")))))
+                            .append("min", new Document("$min", new Document("$cond", List.of("$completo", "$min", new Document("$min", "$v")))))
+                            .append("max", new Document("$max", new Document("$cond", List.of("$completo", "$max", new Document("$max", "$v")))))),
+                    new Document("$sort", new Document("_id", 1)));
+        }
+        return AgregacionDatos.leer(mongoTemplate.getCollection(mongoTemplate.getCollectionName(DatosBucket.class))
+                .aggregate(pipeline)
+                .allowDiskUse(true));
+    }
+
+    /**
+     * Metodo que permite borrar los buckets de un sensor que caen completos dentro del rango;
+     * un bucket que cruza un extremo se conserva
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial (incluida)
+     * @param fin fecha final (excluida)
+     * @return cantidad de buckets borrados
+     */
+    @Override
+    public long eliminarRango(String idSensor, Date inicio, Date fin) {
+        Query query = new Query(Criteria.where("idSensor").is(idSensor)
+                .and("hora").gte(inicio).lte(new Date(fin.getTime() - MILISEGUNDOS_BUCKET)));
+        return mongoTemplate.remove(query, DatosBucket.class).getDeletedCount();
+    }
+
+    /**
+     * Metodo que permite obtener el inicio del bucket de una fecha
+     * @param fecha fecha en milisegundos
+     * @return inicio de la hora en milisegundos
+     */
+    public static long inicioBucket(long fecha) {
+        return Math.floorDiv(fecha, MILISEGUNDOS_BUCKET) * MILISEGUNDOS_BUCKET;
+    }
+
+    /**
+     * Metodo que permite construir el id determinista de un bucket
+     * @param idSensor id del sensor
+     * @param hora inicio del bucket en milisegundos
+     * @return id del bucket
+     */
+    public static String idBucket(String idSensor, long hora) {
+        return idSensor + ":" + hora;
+    }
+
+}
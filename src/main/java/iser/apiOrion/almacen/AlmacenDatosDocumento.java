@@ -0,0 +1,169 @@
+package iser.apiOrion.almacen;
+
+import com.mongodb.bulk.BulkWriteError;
+import iser.apiOrion.DTO.PuntoAgregadoDTO;
+import iser.apiOrion.collection.Datos;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Almacen que guarda cada dato como un documento de la coleccion datos
+ */
+@Component
+@Qualifier(AlmacenDatos.MONGO)
+@ConditionalOnProperty(name = "datos.almacenamiento.modo", havingValue = "documento", matchIfMissing = true)
+public class AlmacenDatosDocumento implements AlmacenDatos {
+
+    /**
+     * Plantilla de mongo
+     */
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    /**
+     * Metodo que permite escribir un lote de datos con un insert masivo no ordenado.
+     * Los id se asignan antes de escribir para poder reportar el resultado de cada dato y
+     * todos los datos se marcan con la fecha de escritura (recibido).
+     * @param lote datos a escribir
+     * @return errores de escritura indexados por la posicion del dato en el lote
+     */
+    @Override
+    public Map<Integer, String> escribirLote(List<Datos> lote) {
+        Map<Integer, String> errores = new HashMap<>();
+        if (lote.isEmpty()) {
+            return errores;
+        }
+        Date recibido = new Date();
+        for (Datos datos : lote) {
+            if (datos.getId() == null) {
+                datos.setId(new ObjectId().toHexString());
+            }
+            datos.setRecibido(recibido);
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Datos.class)
+                    .insert(lote)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                errores.put(error.getIndex(), error.getMessage());
+            }
+        }
+        return errores;
+    }
+
+    /**
+     * Metodo que permite recorrer los datos de un sensor con un cursor ordenado por fecha
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param consumidor recibe cada dato
+     */
+    @Override
+    public void recorrerRango(String idSensor, Date inicio, Date fin, Consumer<Datos> consumidor) {
+        Query query = new Query(Criteria.where("idSensor").is(idSensor).and("fecha").gt(inicio).lt(fin))
+                .with(Sort.by(Sort.Direction.ASC, "fecha"));
+        try (Stream<Datos> datos = mongoTemplate.stream(query, Datos.class)) {
+            datos.forEach(consumidor);
+        }
+    }
+
+    /**
+     * Metodo que permite recorrer los datos de varios sensores con un solo cursor; el orden
+     * (id_sensor, fecha) lo entrega el indice sin ordenar en memoria
+     * @param idSensores ids de los sensores
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param consumidor recibe cada dato
+     */
+    @Override
+    public void recorrerRangoSensores(Collection<String> idSensores, Date inicio, Date fin, Consumer<Datos> consumidor) {
+        Query query = new Query(Criteria.where("idSensor").in(idSensores).and("fecha").gt(inicio).lt(fin))
+                .with(Sort.by(Sort.Direction.ASC, "idSensor", "fecha"));
+        try (Stream<Datos> datos = mongoTemplate.stream(query, Datos.class)) {
+            datos.forEach(consumidor);
+        }
+    }
+
+    /**
+     * Metodo que permite leer una pagina por keyset sobre el indice (id_sensor, fecha, _id):
+     * el recorrido empieza en la fecha del ultimo dato entregado, por lo que cada pagina
+     * cuesta lo mismo sin importar su profundidad
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param despuesFecha fecha del ultimo dato entregado, o null para la primera pagina
+     * @param despuesId id del ultimo dato entregado, o null para la primera pagina
+     * @param limite cantidad maxima de datos
+     * @return datos de la pagina
+     */
+    @Override
+    public List<Datos> pagina(String idSensor, Date inicio, Date fin, Date despuesFecha, String despuesId, int limite) {
+        Criteria criteria = Criteria.where("idSensor").is(idSensor);
+        if (despuesFecha == null) {
+            criteria = criteria.and("fecha").gt(inicio).lt(fin);
+        } else {
+            criteria = criteria.and("fecha").gte(despuesFecha).gt(inicio).lt(fin)
+                    .orOperator(Criteria.where("fecha").gt(despuesFecha), Criteria.where("id").gt(despuesId));
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "fecha").and(Sort.by(Sort.Direction.ASC, "id")))
+                .limit(limite);
+        return mongoTemplate.find(query, Datos.class);
+    }
+
+    /**
+     * Metodo que permite agregar los datos de un sensor por intervalo con un pipeline
+     * $match, $set (valor numerico), $group por $dateTrunc y $sort
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param unidad unidad de $dateTrunc
+     * @param zonaHoraria zona horaria
+     * @return un punto por intervalo
+     */
+    @Override
+    public List<PuntoAgregadoDTO> agregar(String idSensor, Date inicio, Date fin, String unidad, String zonaHoraria) {
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("id_sensor", idSensor)
+                        .append("fecha", new Document("$gt", inicio).append("$lt", fin))),
+                new Document("$set", new Document("v", AgregacionDatos.valorNumerico("$valor"))),
+                AgregacionDatos.agruparValores("$fecha", unidad, zonaHoraria),
+                new Document("$sort", new Document("_id", 1)));
+        return AgregacionDatos.leer(mongoTemplate.getCollection(mongoTemplate.getCollectionName(Datos.class))
+                .aggregate(pipeline)
+                .allowDiskUse(true));
+    }
+
+    /**
+     * Metodo que permite borrar los datos de un sensor en un rango con un solo deleteMany
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial (incluida)
+     * @param fin fecha final (excluida)
+     * @return cantidad de documentos borrados
+     */
+    @Override
+    public long eliminarRango(String idSensor, Date inicio, Date fin) {
+        Query query = new Query(Criteria.where("idSensor").is(idSensor).and("fecha").gte(inicio).lt(fin));
+        return mongoTemplate.remove(query, Datos.class).getDeletedCount();
+    }
+
+}
@@ -0,0 +1,191 @@
+package iser.apiOrion.almacen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formato de los archivos del almacen frio: una tabla ordenada por fecha guardada por
+ * columnas dentro de un gzip.
+ * <p>
+ *     Despues de la cabecera van todas las fechas (la primera completa y las demas como
+ *     diferencia con la anterior en varint), luego cada columna numerica completa y por ultimo
+ *     cada columna de texto como diccionario mas un indice varint por fila. Guardar juntos los
+ *     valores de una misma columna deja secuencias parecidas que gzip comprime mucho mejor que
+ *     los documentos BSON fila por fila.
+ *     <pre>
+ *     magico    int      ARC1
+ *     filas     int
+ *     columnas  int numericas, int de texto, y el nombre (UTF) de cada una
+ *     fechas    long + (filas - 1) varint
+ *     numericas filas double por columna (NaN = null)
+ *     texto     int tamano del diccionario, sus valores (UTF) y filas varint (0 = null)
+ *     </pre>
+ * </p>
+ */
+final class ArchivoColumnar {
+
+    private static final int MAGICO = 0x41524331;
+
+    private ArchivoColumnar() {
+    }
+
+    /**
+     * Tabla de un archivo
+     * @param fechas fecha de cada fila en ms, en orden ascendente
+     * @param nombresNumero nombres de las columnas numericas
+     * @param numeros valores de cada columna numerica, NaN para null
+     * @param nombresTexto nombres de las columnas de texto
+     * @param textos valores de cada columna de texto
+     */
+    record Tabla(long[] fechas, String[] nombresNumero, double[][] numeros, String[] nombresTexto, String[][] textos) {
+
+        int filas() {
+            return fechas.length;
+        }
+
+        Double numero(int columna, int fila) {
+            double valor = numeros[columna][fila];
+            return Double.isNaN(valor) ? null : valor;
+        }
+
+        String texto(int columna, int fila) {
+            return textos[columna][fila];
+        }
+    }
+
+    /**
+     * Metodo que permite escribir una tabla. Se escribe en un temporal que luego reemplaza al
+     * archivo, por lo que una lectura concurrente nunca ve un archivo a medio escribir.
+     * @param archivo ruta del archivo
+     * @param tabla tabla ordenada por fecha
+     * @throws IOException si no se pudo escribir
+     */
+    static void escribir(Path archivo, Tabla tabla) throws IOException {
+        Files.createDirectories(archivo.getParent());
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temporal), 1 << 16)))) {
+            int filas = tabla.filas();
+            salida.writeInt(MAGICO);
+            salida.writeInt(filas);
+            salida.writeInt(tabla.nombresNumero().length);
+            salida.writeInt(tabla.nombresTexto().length);
+            for (String nombre : tabla.nombresNumero()) {
+                salida.writeUTF(nombre);
+            }
+            for (String nombre : tabla.nombresTexto()) {
+                salida.writeUTF(nombre);
+            }
+
+            long[] fechas = tabla.fechas();
+            for (int i = 0; i < filas; i++) {
+                if (i == 0) {
+                    salida.writeLong(fechas[0]);
+                } else {
+                    escribirVarint(salida, fechas[i] - fechas[i - 1]);
+                }
+            }
+            for (double[] columna : tabla.numeros()) {
+                for (int i = 0; i < filas; i++) {
+                    salida.writeDouble(columna[i]);
+                }
+            }
+            for (String[] columna : tabla.textos()) {
+                Map<String, Integer> diccionario = new HashMap<>();
+                List<String> valores = new ArrayList<>();
+                for (String valor : columna) {
+                    if (valor != null && diccionario.putIfAbsent(valor, valores.size() + 1) == null) {
+                        valores.add(valor);
+                    }
+                }
+                salida.writeInt(valores.size());
+                for (String valor : valores) {
+                    salida.writeUTF(valor);
+                }
+                for (String valor : columna) {
+                    escribirVarint(salida, valor == null ? 0 : diccionario.get(valor));
+                }
+            }
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Metodo que permite leer una tabla completa
+     * @param archivo ruta del archivo
+     * @return tabla
+     * @throws IOException si no se pudo leer o el formato no es valido
+     */
+    static Tabla leer(Path archivo) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(archivo), 1 << 16)))) {
+            if (entrada.readInt() != MAGICO) {
+                throw new IOException("archivo con formato desconocido: " + archivo);
+            }
+            int filas = entrada.readInt();
+            String[] nombresNumero = new String[entrada.readInt()];
+            String[] nombresTexto = new String[entrada.readInt()];
+            for (int c = 0; c < nombresNumero.length; c++) {
+                nombresNumero[c] = entrada.readUTF();
+            }
+            for (int c = 0; c < nombresTexto.length; c++) {
+                nombresTexto[c] = entrada.readUTF();
+            }
+
+            long[] fechas = new long[filas];
+            for (int i = 0; i < filas; i++) {
+                fechas[i] = i == 0 ? entrada.readLong() : fechas[i - 1] + leerVarint(entrada);
+            }
+            double[][] numeros = new double[nombresNumero.length][filas];
+            for (double[] columna : numeros) {
+                for (int i = 0; i < filas; i++) {
+                    columna[i] = entrada.readDouble();
+                }
+            }
+            String[][] textos = new String[nombresTexto.length][filas];
+            for (String[] columna : textos) {
+                String[] valores = new String[entrada.readInt() + 1];
+                for (int v = 1; v < valores.length; v++) {
+                    valores[v] = entrada.readUTF();
+                }
+                for (int i = 0; i < filas; i++) {
+                    columna[i] = valores[(int) leerVarint(entrada)];
+                }
+            }
+            return new Tabla(fechas, nombresNumero, numeros, nombresTexto, textos);
+        }
+    }
+
+    private static void escribirVarint(DataOutputStream salida, long valor) throws IOException {
+        while ((valor & ~0x7FL) != 0) {
+            salida.writeByte((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        salida.writeByte((int) valor);
+    }
+
+    private static long leerVarint(DataInputStream entrada) throws IOException {
+        long valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            byte b = entrada.readByte();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("varint mal formado");
+    }
+
+}
@@ -0,0 +1,540 @@
+package iser.apiOrion.almacen;
+
+import iser.apiOrion.DTO.PuntoAgregadoDTO;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.collection.TuyaSensorData;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Almacen frio de los datos crudos que salieron de la ventana caliente de mongo.
+ * <p>
+ *     Hay un archivo por serie y por dia (datos/{idSensor}/{yyyy-MM-dd}.col.gz y
+ *     tuya/{yyyy-MM-dd}.col.gz bajo datos.archivo.directorio) en el formato de
+ *     ArchivoColumnar. Los dias se cortan en datos.zona-horaria, como los resumenes; los
+ *     timestamp de tuya son hora local del servidor y se pasan a esa zona para elegir el dia
+ *     (diaTuya). Al iniciar se recorre el directorio para
+ *     conocer el ultimo dia archivado de cada serie: las consultas que empiezan despues no
+ *     tocan el disco.
+ * </p>
+ */
+@Component
+public class ArchivoDatos {
+
+    /**
+     * logger :: log for ArchivoDatos
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ArchivoDatos.class);
+
+    /**
+     * Prefijo de los id sinteticos de los datos archivados: archivo:{dia}:{fila}
+     */
+    public static final String PREFIJO_ID = "archivo:";
+
+    private static final String EXTENSION = ".col.gz";
+
+    private static final String PREFIJO_CARPETA = "b64-";
+
+    private static final String[] NUMEROS_DATOS = {"valor"};
+    private static final String[] TEXTOS_DATOS = {"unidad"};
+
+    private static final String[] NUMEROS_TUYA = {"ph", "orp", "ec", "tds", "salinidad", "temperatura"};
+    private static final String[] TEXTOS_TUYA = {"nombre"};
+
+    @Value("${datos.archivo.directorio:archivo}")
+    private String directorio;
+
+    @Value("${datos.zona-horaria:America/Bogota}")
+    private String zonaHoraria;
+
+    private ZoneId zona;
+
+    private Path raizDatos;
+
+    private Path raizTuya;
+
+    /**
+     * Fin (excluido, en ms) del ultimo dia archivado de cada sensor
+     */
+    private final Map<String, Long> limites = new ConcurrentHashMap<>();
+
+    private volatile LocalDateTime limiteTuya;
+
+    @PostConstruct
+    void iniciar() throws IOException {
+        zona = ZoneId.of(zonaHoraria);
+        raizDatos = Paths.get(directorio, "datos");
+        raizTuya = Paths.get(directorio, "tuya");
+        if (Files.isDirectory(raizDatos)) {
+            try (Stream<Path> carpetas = Files.list(raizDatos)) {
+                carpetas.filter(Files::isDirectory).forEach(carpeta -> {
+                    List<LocalDate> dias = dias(carpeta, LocalDate.MIN, LocalDate.MAX);
+                    if (!dias.isEmpty()) {
+                        limites.put(idSensor(carpeta.getFileName().toString()), finDia(dias.get(dias.size() - 1)));
+                    }
+                });
+            }
+        }
+        List<LocalDate> diasTuya = dias(raizTuya, LocalDate.MIN, LocalDate.MAX);
+        if (!diasTuya.isEmpty()) {
+            limiteTuya = inicioDiaTuya(diasTuya.get(diasTuya.size() - 1).plusDays(1), zona);
+        }
+        if (!limites.isEmpty() || limiteTuya != null) {
+            logger.info("Archivo de datos con " + limites.size() + " sensores en " + raizDatos.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Metodo que permite conocer hasta donde llega el archivo de un sensor
+     * @param idSensor id del sensor
+     * @return fin del ultimo dia archivado, o null si el sensor no tiene datos archivados
+     */
+    public Date limite(String idSensor) {
+        Long limite = limites.get(idSensor);
+        return limite != null ? new Date(limite) : null;
+    }
+
+    /**
+     * Metodo que permite recorrer los datos archivados de un sensor en orden cronologico
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial (excluida)
+     * @param fin fecha final (excluida)
+     * @param consumidor recibe cada dato
+     */
+    public void recorrer(String idSensor, Date inicio, Date fin, Consumer<Datos> consumidor) {
+        long desde = inicio.getTime();
+        long hasta = fin.getTime();
+        for (LocalDate dia : dias(carpeta(idSensor), dia(desde), dia(hasta))) {
+            ArchivoColumnar.Tabla tabla = leer(archivoDatos(idSensor, dia));
+            for (int i = 0; i < tabla.filas(); i++) {
+                long fecha = tabla.fechas()[i];
+                if (fecha >= hasta) {
+                    return;
+                }
+                if (fecha > desde) {
+                    consumidor.accept(dato(idSensor, dia, tabla, i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Metodo que permite leer una pagina de datos archivados con el mismo orden (fecha, id)
+     * que AlmacenDatos.pagina; el id sintetico lleva la fila dentro del archivo del dia
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param despuesFecha fecha del ultimo dato entregado, o null para la primera pagina
+     * @param despuesId id del ultimo dato entregado, o null para la primera pagina
+     * @param limite cantidad maxima de datos
+     * @return datos de la pagina
+     */
+    public List<Datos> pagina(String idSensor, Date inicio, Date fin, Date despuesFecha, String despuesId, int limite) {
+        long desde = inicio.getTime();
+        long hasta = fin.getTime();
+        long despues = despuesFecha != null ? despuesFecha.getTime() : Long.MIN_VALUE;
+        // un cursor que no es del archivo se entrego antes de archivar: su dato ya se envio
+        int despuesFila = despuesId == null ? -1
+                : despuesId.startsWith(PREFIJO_ID) ? Integer.parseInt(despuesId.substring(despuesId.lastIndexOf(':') + 1))
+                : Integer.MAX_VALUE;
+        List<Datos> pagina = new ArrayList<>();
+        for (LocalDate dia : dias(carpeta(idSensor), dia(Math.max(desde, despues)), dia(hasta))) {
+            ArchivoColumnar.Tabla tabla = leer(archivoDatos(idSensor, dia));
+            for (int i = 0; i < tabla.filas(); i++) {
+                long fecha = tabla.fechas()[i];
+                if (fecha >= hasta) {
+                    return pagina;
+                }
+                if (fecha <= desde || fecha < despues || (fecha == despues && i <= despuesFila)) {
+                    continue;
+                }
+                pagina.add(dato(idSensor, dia, tabla, i));
+                if (pagina.size() == limite) {
+                    return pagina;
+                }
+            }
+        }
+        return pagina;
+    }
+
+    /**
+     * Metodo que permite agregar por intervalo los datos archivados de un sensor
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param unidad minute, hour o day
+     * @param zonaHoraria zona horaria para truncar las fechas
+     * @return un punto por intervalo con count, sum, min y max
+     */
+    public List<PuntoAgregadoDTO> agregar(String idSensor, Date inicio, Date fin, String unidad, String zonaHoraria) {
+        ZoneId zonaIntervalo = ZoneId.of(zonaHoraria);
+        ChronoUnit truncar = "day".equals(unidad) ? ChronoUnit.DAYS : "hour".equals(unidad) ? ChronoUnit.HOURS : ChronoUnit.MINUTES;
+        TreeMap<Long, PuntoAgregadoDTO> puntos = new TreeMap<>();
+        recorrer(idSensor, inicio, fin, dato -> {
+            if (dato.getValor() == null) {
+                return;
+            }
+            PuntoAgregadoDTO punto = new PuntoAgregadoDTO();
+            punto.setT(dato.getFecha().toInstant().atZone(zonaIntervalo).truncatedTo(truncar).toInstant().toEpochMilli());
+            punto.setCount(1L);
+            punto.setSum(dato.getValor());
+            punto.setMin(dato.getValor());
+            punto.setMax(dato.getValor());
+            puntos.merge(punto.getT(), punto, AgregacionDatos::combinar);
+        });
+        return new ArrayList<>(puntos.values());
+    }
+
+    /**
+     * Metodo que permite archivar los datos de un dia de un sensor. Si el dia ya tiene archivo
+     * se combinan, descartando los datos que ya estan en el archivo porque una ejecucion
+     * interrumpida los archivo sin borrarlos de mongo.
+     * @param idSensor id del sensor
+     * @param dia dia en datos.zona-horaria
+     * @param datos datos del dia
+     * @throws IOException si no se pudo escribir
+     */
+    public synchronized void archivar(String idSensor, LocalDate dia, List<Datos> datos) throws IOException {
+        Path archivo = archivoDatos(idSensor, dia);
+        List<Datos> existentes = new ArrayList<>();
+        if (Files.exists(archivo)) {
+            ArchivoColumnar.Tabla tabla = ArchivoColumnar.leer(archivo);
+            for (int i = 0; i < tabla.filas(); i++) {
+                existentes.add(fila(tabla.fechas()[i], tabla.numero(0, i), tabla.texto(0, i)));
+            }
+        }
+        List<Datos> nuevas = new ArrayList<>();
+        for (Datos dato : datos) {
+            nuevas.add(fila(dato.getFecha().getTime(), dato.getValor(), dato.getUnidad()));
+        }
+        List<Datos> filas = combinar(existentes, nuevas, Function.identity());
+        filas.sort(Comparator.comparing(Datos::getFecha));
+
+        long[] fechas = new long[filas.size()];
+        double[] valores = new double[filas.size()];
+        String[] unidades = new String[filas.size()];
+        for (int i = 0; i < filas.size(); i++) {
+            Datos fila = filas.get(i);
+            fechas[i] = fila.getFecha().getTime();
+            valores[i] = fila.getValor() != null ? fila.getValor() : Double.NaN;
+            unidades[i] = fila.getUnidad();
+        }
+        ArchivoColumnar.escribir(archivo, new ArchivoColumnar.Tabla(fechas, NUMEROS_DATOS, new double[][]{valores}, TEXTOS_DATOS, new String[][]{unidades}));
+        limites.merge(idSensor, finDia(dia), Math::max);
+    }
+
+    /**
+     * Metodo que permite conocer hasta donde llega el archivo de tuya_sensor_data
+     * @return inicio del dia siguiente al ultimo archivado, o null si no hay archivo
+     */
+    public LocalDateTime limiteTuya() {
+        return limiteTuya;
+    }
+
+    /**
+     * Metodo que permite recorrer los registros de tuya archivados en orden cronologico
+     * @param desde fecha inicial (incluida)
+     * @param hasta fecha final (excluida)
+     * @param consumidor recibe cada registro, sin id
+     */
+    public void recorrerTuya(LocalDateTime desde, LocalDateTime hasta, Consumer<TuyaSensorData> consumidor) {
+        for (LocalDate dia : dias(raizTuya, diaTuya(desde, zona), diaTuya(hasta, zona))) {
+            ArchivoColumnar.Tabla tabla = leer(raizTuya.resolve(dia + EXTENSION));
+            for (int i = 0; i < tabla.filas(); i++) {
+                LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(tabla.fechas()[i]), ZoneOffset.UTC);
+                if (!timestamp.isBefore(hasta)) {
+                    return;
+                }
+                if (!timestamp.isBefore(desde)) {
+                    consumidor.accept(registroTuya(tabla, i, timestamp));
+                }
+            }
+        }
+    }
+
+    /**
+     * Metodo que permite archivar los registros de tuya de un dia, combinandolos con el
+     * archivo del dia si ya existe como en archivar. Los registros se leen del cursor a
+     * columnas primitivas, sin cargar la lista de documentos del dia.
+     * @param dia dia en datos.zona-horaria
+     * @param registros registros del dia en orden de timestamp
+     * @return cantidad de registros leidos
+     * @throws IOException si no se pudo escribir
+     */
+    public synchronized long archivarTuya(LocalDate dia, Stream<TuyaSensorData> registros) throws IOException {
+        Path archivo = raizTuya.resolve(dia + EXTENSION);
+        ArchivoColumnar.Tabla existente = Files.exists(archivo) ? ArchivoColumnar.leer(archivo) : null;
+        // cada fila del archivo descarta a lo sumo un registro nuevo con su clave, como combinar
+        Map<String, Integer> archivadas = new HashMap<>();
+        if (existente != null) {
+            for (int i = 0; i < existente.filas(); i++) {
+                archivadas.merge(claveTuya(existente.texto(0, i), existente.fechas()[i]), 1, Integer::sum);
+            }
+        }
+        ColumnasTuya nuevas = new ColumnasTuya();
+        long[] leidos = new long[1];
+        registros.forEachOrdered(registro -> {
+            leidos[0]++;
+            long fecha = registro.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+            String clave = claveTuya(registro.getNombre(), fecha);
+            Integer cantidad = archivadas.get(clave);
+            if (cantidad == null) {
+                nuevas.agregar(fecha, new Double[]{registro.getPh(), registro.getOrp(), registro.getEc(),
+                        registro.getTds(), registro.getSalinidad(), registro.getTemperatura()}, registro.getNombre());
+            } else if (cantidad == 1) {
+                archivadas.remove(clave);
+            } else {
+                archivadas.put(clave, cantidad - 1);
+            }
+        });
+
+        // el archivo y el cursor vienen ordenados por timestamp: se intercalan sin ordenar
+        int filasExistentes = existente != null ? existente.filas() : 0;
+        ColumnasTuya filas = new ColumnasTuya();
+        int i = 0;
+        int j = 0;
+        while (i < filasExistentes || j < nuevas.tamano) {
+            if (j == nuevas.tamano || (i < filasExistentes && existente.fechas()[i] <= nuevas.fechas[j])) {
+                filas.copiar(existente.fechas()[i], existente.numeros(), i, existente.texto(0, i));
+                i++;
+            } else {
+                filas.copiar(nuevas.fechas[j], nuevas.numeros, j, nuevas.nombres[j]);
+                j++;
+            }
+        }
+        ArchivoColumnar.escribir(archivo, filas.tabla());
+        LocalDateTime fin = inicioDiaTuya(dia.plusDays(1), zona);
+        if (limiteTuya == null || limiteTuya.isBefore(fin)) {
+            limiteTuya = fin;
+        }
+        return leidos[0];
+    }
+
+    /**
+     * Metodo que permite conocer el dia en la zona del archivo de un timestamp de tuya, que es
+     * hora local del servidor
+     * @param timestamp timestamp del registro
+     * @param zona zona de corte de los dias
+     * @return dia del registro en la zona
+     */
+    static LocalDate diaTuya(LocalDateTime timestamp, ZoneId zona) {
+        return timestamp.atZone(ZoneId.systemDefault()).withZoneSameInstant(zona).toLocalDate();
+    }
+
+    /**
+     * Metodo que permite conocer el inicio de un dia de la zona del archivo como timestamp de
+     * tuya, en hora local del servidor
+     * @param dia dia en la zona
+     * @param zona zona de corte de los dias
+     * @return inicio del dia en hora local del servidor
+     */
+    static LocalDateTime inicioDiaTuya(LocalDate dia, ZoneId zona) {
+        return LocalDateTime.ofInstant(dia.atStartOfDay(zona).toInstant(), ZoneId.systemDefault());
+    }
+
+    /**
+     * Agrega a las filas de un archivo las nuevas que no estan en el, comparando por clave. Cada
+     * fila del archivo descarta a lo sumo una nueva con la misma clave, por lo que dos lecturas
+     * identicas que no estaban archivadas se conservan las dos.
+     */
+    private static <T> List<T> combinar(List<T> existentes, List<T> nuevas, Function<T, ?> clave) {
+        Map<Object, Integer> archivadas = new HashMap<>();
+        for (T fila : existentes) {
+            archivadas.merge(clave.apply(fila), 1, Integer::sum);
+        }
+        List<T> filas = new ArrayList<>(existentes);
+        for (T fila : nuevas) {
+            Object valor = clave.apply(fila);
+            Integer cantidad = archivadas.get(valor);
+            if (cantidad == null) {
+                filas.add(fila);
+            } else if (cantidad == 1) {
+                archivadas.remove(valor);
+            } else {
+                archivadas.put(valor, cantidad - 1);
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Clave de un registro de tuya en el archivo: nombre y timestamp truncado a ms, que es lo
+     * que conserva el archivo; mongo puede traer el timestamp con mas precision
+     */
+    private static String claveTuya(String nombre, long fecha) {
+        return nombre + "@" + fecha;
+    }
+
+    /**
+     * Columnas de un archivo de tuya en arreglos primitivos que crecen al doble, como
+     * SerieColumnas; los numeros nulos se guardan como NaN
+     */
+    private static final class ColumnasTuya {
+
+        private long[] fechas = new long[256];
+        private double[][] numeros = new double[NUMEROS_TUYA.length][256];
+        private String[] nombres = new String[256];
+        private int tamano;
+
+        void agregar(long fecha, Double[] valores, String nombre) {
+            crecer();
+            fechas[tamano] = fecha;
+            for (int c = 0; c < valores.length; c++) {
+                numeros[c][tamano] = valores[c] != null ? valores[c] : Double.NaN;
+            }
+            nombres[tamano] = nombre;
+            tamano++;
+        }
+
+        void copiar(long fecha, double[][] origen, int fila, String nombre) {
+            crecer();
+            fechas[tamano] = fecha;
+            for (int c = 0; c < numeros.length; c++) {
+                numeros[c][tamano] = origen[c][fila];
+            }
+            nombres[tamano] = nombre;
+            tamano++;
+        }
+
+        ArchivoColumnar.Tabla tabla() {
+            double[][] columnas = new double[numeros.length][];
+            for (int c = 0; c < numeros.length; c++) {
+                columnas[c] = Arrays.copyOf(numeros[c], tamano);
+            }
+            return new ArchivoColumnar.Tabla(Arrays.copyOf(fechas, tamano), NUMEROS_TUYA, columnas,
+                    TEXTOS_TUYA, new String[][]{Arrays.copyOf(nombres, tamano)});
+        }
+
+        private void crecer() {
+            if (tamano == fechas.length) {
+                fechas = Arrays.copyOf(fechas, tamano * 2);
+                for (int c = 0; c < numeros.length; c++) {
+                    numeros[c] = Arrays.copyOf(numeros[c], tamano * 2);
+                }
+                nombres = Arrays.copyOf(nombres, tamano * 2);
+            }
+        }
+
+    }
+
+    private Datos dato(String idSensor, LocalDate dia, ArchivoColumnar.Tabla tabla, int fila) {
+        Datos datos = fila(tabla.fechas()[fila], tabla.numero(0, fila), tabla.texto(0, fila));
+        datos.setId(PREFIJO_ID + dia + ":" + fila);
+        datos.setIdSensor(idSensor);
+        return datos;
+    }
+
+    private Datos fila(long fecha, Double valor, String unidad) {
+        Datos datos = new Datos();
+        datos.setFecha(new Date(fecha));
+        datos.setValor(valor);
+        datos.setUnidad(unidad);
+        datos.setVersionEsquema(Datos.VERSION_ESQUEMA);
+        return datos;
+    }
+
+    private TuyaSensorData registroTuya(ArchivoColumnar.Tabla tabla, int fila, LocalDateTime timestamp) {
+        TuyaSensorData registro = new TuyaSensorData();
+        registro.setNombre(tabla.texto(0, fila));
+        registro.setPh(tabla.numero(0, fila));
+        registro.setOrp(tabla.numero(1, fila));
+        registro.setEc(tabla.numero(2, fila));
+        registro.setTds(tabla.numero(3, fila));
+        registro.setSalinidad(tabla.numero(4, fila));
+        registro.setTemperatura(tabla.numero(5, fila));
+        registro.setTimestamp(timestamp);
+        return registro;
+    }
+
+    private ArchivoColumnar.Tabla leer(Path archivo) {
+        try {
+            return ArchivoColumnar.leer(archivo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Dias con archivo en una carpeta, dentro de [desde, hasta] y en orden
+     */
+    private List<LocalDate> dias(Path carpeta, LocalDate desde, LocalDate hasta) {
+        if (!Files.isDirectory(carpeta)) {
+            return List.of();
+        }
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            return archivos.map(archivo -> archivo.getFileName().toString())
+                    .filter(nombre -> nombre.endsWith(EXTENSION))
+                    .map(nombre -> {
+                        try {
+                            return LocalDate.parse(nombre.substring(0, nombre.length() - EXTENSION.length()));
+                        } catch (DateTimeParseException e) {
+                            return null;
+                        }
+                    })
+                    .filter(dia -> dia != null && !dia.isBefore(desde) && !dia.isAfter(hasta))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path archivoDatos(String idSensor, LocalDate dia) {
+        return carpeta(idSensor).resolve(dia + EXTENSION);
+    }
+
+    /**
+     * Carpeta de un sensor; los id con caracteres fuera de [A-Za-z0-9_] se codifican para que
+     * no puedan salir del directorio
+     */
+    private Path carpeta(String idSensor) {
+        String nombre = idSensor.matches("[A-Za-z0-9_]+") ? idSensor
+                : PREFIJO_CARPETA + Base64.getUrlEncoder().withoutPadding().encodeToString(idSensor.getBytes(StandardCharsets.UTF_8));
+        return raizDatos.resolve(nombre);
+    }
+
+    private String idSensor(String carpeta) {
+        return carpeta.startsWith(PREFIJO_CARPETA)
+                ? new String(Base64.getUrlDecoder().decode(carpeta.substring(PREFIJO_CARPETA.length())), StandardCharsets.UTF_8)
+                : carpeta;
+    }
+
+    private LocalDate dia(long fecha) {
+        return Instant.ofEpochMilli(fecha).atZone(zona).toLocalDate();
+    }
+
+    private long finDia(LocalDate dia) {
+        return dia.plusDays(1).atStartOfDay(zona).toInstant().toEpochMilli();
+    }
+
+}
@@ -0,0 +1,252 @@
+package iser.apiOrion.almacen;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.vivo.CentroDatosVivo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cola acotada de escritura diferida (write-behind) para los datos de los sensores.
+ * Un hilo dedicado agrupa los datos y los escribe en lotes cuando se alcanza el
+ * tamano del lote o vence el intervalo, lo que ocurra primero. Los datos que traen secuencia
+ * la confirman en MarcasSecuencia al escribirse, o la liberan si la escritura falla.
+ */
+@Component
+public class ColaEscrituraDatos {
+
+    /**
+     * logger :: log for ColaEscrituraDatos
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ColaEscrituraDatos.class);
+
+    /**
+     * Almacen donde se escriben los lotes
+     */
+    @Autowired
+    AlmacenDatos almacenDatos;
+
+    /**
+     * Registro de metricas
+     */
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    /**
+     * Marcas de secuencia de los datos encolados
+     */
+    @Autowired
+    MarcasSecuencia marcasSecuencia;
+
+    /**
+     * Canal en vivo, recibe los datos escritos de cada lote
+     */
+    @Autowired
+    CentroDatosVivo centroDatosVivo;
+
+    /**
+     * Cantidad maxima de datos pendientes en la cola
+     */
+    @Value("${datos.escritura.cola.capacidad:10000}")
+    private int capacidad;
+
+    /**
+     * Cantidad maxima de datos por escritura
+     */
+    @Value("${datos.escritura.cola.tamano-lote:500}")
+    private int tamanoLote;
+
+    /**
+     * Tiempo maximo que un dato espera en la cola antes de escribirse
+     */
+    @Value("${datos.escritura.cola.intervalo-ms:200}")
+    private long intervaloMs;
+
+    private BlockingQueue<Pendiente> cola;
+
+    private Thread hiloEscritura;
+
+    private volatile boolean activo;
+
+    private Timer latenciaEscritura;
+
+    private Counter rechazados;
+
+    private Counter erroresEscritura;
+
+    @PostConstruct
+    void iniciar() {
+        cola = new ArrayBlockingQueue<>(capacidad);
+        Gauge.builder("datos.escritura.cola.profundidad", cola, BlockingQueue::size)
+                .description("Datos pendientes de escribir")
+                .register(meterRegistry);
+        latenciaEscritura = Timer.builder("datos.escritura.lote.latencia")
+                .description("Tiempo de escritura de cada lote")
+                .register(meterRegistry);
+        rechazados = Counter.builder("datos.escritura.cola.rechazados")
+                .description("Datos rechazados por cola llena")
+                .register(meterRegistry);
+        erroresEscritura = Counter.builder("datos.escritura.lote.errores")
+                .description("Datos que fallaron al escribirse")
+                .register(meterRegistry);
+
+        activo = true;
+        hiloEscritura = new Thread(this::procesar, "cola-escritura-datos");
+        hiloEscritura.setDaemon(true);
+        hiloEscritura.start();
+    }
+
+    /**
+     * Dato encolado y la secuencia que reservo, o null si no trae
+     */
+    private record Pendiente(Datos datos, Long secuencia) {
+    }
+
+    /**
+     * Metodo que permite encolar un dato sin bloquear
+     * @param datos dato a escribir
+     * @return true si el dato fue aceptado, false si la cola esta llena
+     */
+    public boolean ofrecer(Datos datos) {
+        return ofrecer(datos, null);
+    }
+
+    /**
+     * Metodo que permite encolar sin bloquear un dato cuya secuencia ya se reservo. Si el dato
+     * no se acepta la reserva sigue siendo de quien llama.
+     * @param datos dato a escribir
+     * @param secuencia secuencia reservada en MarcasSecuencia, o null
+     * @return true si el dato fue aceptado, false si la cola esta llena
+     */
+    public boolean ofrecer(Datos datos, Long secuencia) {
+        if (activo && cola.offer(new Pendiente(datos, secuencia))) {
+            return true;
+        }
+        rechazados.increment();
+        return false;
+    }
+
+    /**
+     * Metodo que permite saber si la cola acepta datos
+     * @return false cuando la aplicacion se esta deteniendo
+     */
+    public boolean activa() {
+        return activo;
+    }
+
+    /**
+     * Metodo que permite conocer la cantidad de datos pendientes
+     * @return datos en cola
+     */
+    public int pendientes() {
+        return cola.size();
+    }
+
+    /**
+     * Bucle del hilo de escritura. Al detenerse vacia la cola antes de terminar.
+     */
+    private void procesar() {
+        List<Pendiente> lote = new ArrayList<>(tamanoLote);
+        while (activo || !cola.isEmpty()) {
+            try {
+                Pendiente primero = cola.poll(intervaloMs, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                lote.add(primero);
+                long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervaloMs);
+                while (lote.size() < tamanoLote) {
+                    cola.drainTo(lote, tamanoLote - lote.size());
+                    long restante = limite - System.nanoTime();
+                    if (lote.size() >= tamanoLote || restante <= 0 || !activo) {
+                        break;
+                    }
+                    Pendiente siguiente = cola.poll(restante, TimeUnit.NANOSECONDS);
+                    if (siguiente == null) {
+                        break;
+                    }
+                    lote.add(siguiente);
+                }
+                escribir(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cola.drainTo(lote);
+                escribir(lote);
+                return;
+            } catch (Exception e) {
+                logger.error("ERROR_MESSAGE: " + e.getMessage());
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    private void escribir(List<Pendiente> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        List<Datos> datos = new ArrayList<>(lote.size());
+        for (Pendiente pendiente : lote) {
+            datos.add(pendiente.datos());
+        }
+        long inicio = System.nanoTime();
+        Map<Integer, String> errores;
+        try {
+            errores = almacenDatos.escribirLote(datos);
+        } catch (RuntimeException e) {
+            errores = new HashMap<>();
+            for (int i = 0; i < lote.size(); i++) {
+                errores.put(i, e.getMessage());
+            }
+        }
+        latenciaEscritura.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        if (!errores.isEmpty()) {
+            erroresEscritura.increment(errores.size());
+            logger.error("ERROR_MESSAGE: " + errores.size() + " datos no se escribieron, primer error: "
+                    + errores.values().iterator().next());
+        }
+        if (errores.size() < datos.size()) {
+            centroDatosVivo.publicar(datos, errores);
+        }
+        for (int i = 0; i < lote.size(); i++) {
+            Pendiente pendiente = lote.get(i);
+            if (pendiente.secuencia() == null) {
+                continue;
+            }
+            if (errores.containsKey(i)) {
+                marcasSecuencia.liberar(pendiente.datos().getIdSensor(), pendiente.secuencia());
+            } else {
+                marcasSecuencia.confirmar(pendiente.datos().getIdSensor(), pendiente.secuencia());
+            }
+        }
+    }
+
+    /**
+     * Detiene la recepcion y escribe los datos pendientes antes de cerrar la aplicacion
+     */
+    @PreDestroy
+    void detener() throws InterruptedException {
+        activo = false;
+        hiloEscritura.join(TimeUnit.SECONDS.toMillis(30));
+        if (!cola.isEmpty()) {
+            logger.error("ERROR_MESSAGE: quedaron " + cola.size() + " datos sin escribir al cerrar");
+        }
+    }
+
+}
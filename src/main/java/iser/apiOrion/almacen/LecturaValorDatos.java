@@ -0,0 +1,38 @@
+package iser.apiOrion.almacen;
+
+import iser.apiOrion.collection.Datos;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lectura dual de Datos.valor: los documentos de la version 1 guardan el valor como texto y
+ * los que el migrador no pudo convertir lo dejan en valor_original. Se corrige el documento
+ * antes de mapearlo a Datos, por lo que solo afecta a esa coleccion y no a los demas Double.
+ */
+@Component
+public class LecturaValorDatos extends AbstractMongoEventListener<Datos> {
+
+    @Override
+    public void onAfterLoad(AfterLoadEvent<Datos> event) {
+        convertir(event.getDocument());
+    }
+
+    /**
+     * Metodo que permite dejar el valor de un documento de datos como numero
+     * @param documento documento leido de mongo, se modifica
+     */
+    static void convertir(Document documento) {
+        if (documento == null) {
+            return;
+        }
+        Object valor = documento.get("valor");
+        if (valor instanceof String texto) {
+            documento.put("valor", ValorDatos.parsear(texto));
+        } else if (valor == null && documento.get("valor_original") instanceof String original) {
+            documento.put("valor", ValorDatos.parsear(original));
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+package iser.apiOrion.almacen;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Marca de agua de la secuencia por sensor, para descartar los reintentos y las repeticiones
+ * de los dispositivos que envian un contador creciente de uno en uno. La fecha del dispositivo
+ * no sirve como secuencia: una lectura que llegara mas de 64 ms detras de la mayor se descartaria.
+ * <p>
+ *     Cada sensor tiene en memoria la mayor secuencia reservada y una ventana de 64 bits con
+ *     las secuencias reservadas por debajo de ella, como la ventana anti repeticion de IPsec:
+ *     una secuencia que llega desordenada pero dentro de la ventana se acepta una sola vez, y
+ *     solo se descartan las repetidas y las que quedaron mas de 64 posiciones por debajo.
+ *     La marca se lee de la coleccion secuencia_marca solo la primera vez que se ve el sensor;
+ *     esa lectura bloquea, por lo que la pila reactiva reserva fuera del event loop (AdmisionDatos
+ *     corre en boundedElastic).
+ * </p>
+ * <p>
+ *     Reservar una secuencia no la guarda: quien escribe el dato llama a confirmar cuando la
+ *     escritura termina bien, o a liberar si falla, para que el reintento se acepte. Solo las
+ *     secuencias confirmadas (la mayor y su ventana) se guardan periodicamente, sin retroceder
+ *     la que ya esta guardada. Si el proceso termina de forma abrupta se pierden las marcas del
+ *     ultimo intervalo sin guardar.
+ * </p>
+ */
+@Component
+public class MarcasSecuencia {
+
+    /**
+     * logger :: log for MarcasSecuencia
+     */
+    private static final Logger logger = LoggerFactory.getLogger(MarcasSecuencia.class);
+
+    public static final String COLECCION = "secuencia_marca";
+
+    /**
+     * Marca de un sensor que aun no envio secuencias; las secuencias validas son mayores o iguales a 0
+     */
+    private static final long SIN_MARCA = -1;
+
+    /**
+     * Cantidad de secuencias por debajo de la mayor que se aceptan fuera de orden
+     */
+    static final int VENTANA = Long.SIZE;
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    /**
+     * Registro de metricas
+     */
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final Map<String, Marca> marcas = new ConcurrentHashMap<>();
+
+    /**
+     * Sensores cuya marca confirmada cambio desde el ultimo guardado
+     */
+    private final Set<String> pendientes = ConcurrentHashMap.newKeySet();
+
+    private Counter duplicados;
+
+    @PostConstruct
+    void iniciar() {
+        duplicados = Counter.builder("datos.secuencia.duplicados")
+                .description("Datos descartados por secuencia repetida")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Metodo que permite reservar la secuencia de un dato antes de escribirlo
+     * @param idSensor id del sensor
+     * @param secuencia secuencia enviada por el dispositivo
+     * @return false si la secuencia ya se recibio o quedo fuera de la ventana
+     */
+    public boolean reservar(String idSensor, long secuencia) {
+        if (marca(idSensor).reservar(secuencia)) {
+            return true;
+        }
+        duplicados.increment();
+        return false;
+    }
+
+    /**
+     * Metodo que permite liberar una secuencia reservada cuyo dato no se escribio, para que el
+     * reintento del dispositivo se acepte
+     * @param idSensor id del sensor
+     * @param secuencia secuencia reservada
+     */
+    public void liberar(String idSensor, long secuencia) {
+        Marca marca = marcas.get(idSensor);
+        if (marca != null) {
+            marca.liberar(secuencia);
+        }
+    }
+
+    /**
+     * Metodo que permite confirmar una secuencia reservada cuyo dato ya se escribio; solo las
+     * secuencias confirmadas se guardan en la base de datos
+     * @param idSensor id del sensor
+     * @param secuencia secuencia reservada
+     */
+    public void confirmar(String idSensor, long secuencia) {
+        Marca marca = marcas.get(idSensor);
+        if (marca != null) {
+            marca.confirmar(secuencia);
+            pendientes.add(idSensor);
+        }
+    }
+
+    private Marca marca(String idSensor) {
+        Marca marca = marcas.get(idSensor);
+        if (marca != null) {
+            return marca;
+        }
+        Document guardada = mongoTemplate.getCollection(COLECCION).find(new Document("_id", idSensor)).first();
+        Marca nueva = guardada == null
+                ? new Marca(SIN_MARCA, 0)
+                // las marcas guardadas sin ventana se tratan como recibidas hasta la secuencia
+                : new Marca(guardada.get("secuencia", Number.class).longValue(),
+                        guardada.containsKey("ventana") ? guardada.get("ventana", Number.class).longValue() : -1L);
+        Marca existente = marcas.putIfAbsent(idSensor, nueva);
+        return existente != null ? existente : nueva;
+    }
+
+    /**
+     * Guarda las marcas que cambiaron desde el ultimo guardado
+     */
+    @Scheduled(fixedDelayString = "${datos.secuencia.intervalo-ms:1000}")
+    public void guardar() {
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        List<String> sensores = new ArrayList<>();
+        List<WriteModel<Document>> escrituras = new ArrayList<>();
+        for (Iterator<String> iterador = pendientes.iterator(); iterador.hasNext(); ) {
+            String idSensor = iterador.next();
+            iterador.remove();
+            sensores.add(idSensor);
+            Marca marca = marcas.get(idSensor);
+            long secuencia;
+            long ventana;
+            synchronized (marca) {
+                secuencia = marca.confirmada;
+                ventana = marca.confirmadas;
+            }
+            // la ventana solo reemplaza a la guardada si la secuencia no retrocede
+            escrituras.add(new UpdateOneModel<>(
+                    new Document("_id", idSensor),
+                    List.of(new Document("$set", new Document()
+                            .append("ventana", new Document("$cond", List.of(
+                                    new Document("$gt", List.of("$secuencia", secuencia)), "$ventana", ventana)))
+                            .append("secuencia", new Document("$max", List.of("$secuencia", secuencia))))),
+                    new UpdateOptions().upsert(true)));
+        }
+        try {
+            mongoTemplate.getCollection(COLECCION).bulkWrite(escrituras, new BulkWriteOptions().ordered(false));
+        } catch (Exception e) {
+            logger.error("ERROR_MESSAGE: " + e.getMessage());
+            pendientes.addAll(sensores);
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        guardar();
+    }
+
+    /**
+     * Secuencias de un sensor: la mayor de cada tipo y, en el bit i de la ventana, si se
+     * reservo o confirmo la secuencia i posiciones por debajo
+     */
+    static final class Marca {
+
+        private long reservada;
+        private long reservadas;
+        private long confirmada;
+        private long confirmadas;
+
+        Marca(long secuencia, long ventana) {
+            reservada = confirmada = secuencia;
+            reservadas = confirmadas = ventana;
+        }
+
+        synchronized boolean reservar(long secuencia) {
+            if (secuencia > reservada) {
+                reservadas = avanzar(reservadas, secuencia - reservada);
+                reservada = secuencia;
+                return true;
+            }
+            long distancia = reservada - secuencia;
+            if (distancia >= VENTANA || (reservadas & (1L << distancia)) != 0) {
+                return false;
+            }
+            reservadas |= 1L << distancia;
+            return true;
+        }
+
+        synchronized void liberar(long secuencia) {
+            long distancia = reservada - secuencia;
+            if (distancia >= 0 && distancia < VENTANA) {
+                reservadas &= ~(1L << distancia);
+            }
+        }
+
+        synchronized void confirmar(long secuencia) {
+            if (secuencia > confirmada) {
+                confirmadas = avanzar(confirmadas, secuencia - confirmada);
+                confirmada = secuencia;
+            } else if (confirmada - secuencia < VENTANA) {
+                confirmadas |= 1L << (confirmada - secuencia);
+            }
+        }
+
+        /**
+         * Desplaza la ventana cuando llega una secuencia mayor y marca la nueva; una distancia
+         * negativa es un desborde desde SIN_MARCA
+         */
+        private static long avanzar(long ventana, long distancia) {
+            return distancia > 0 && distancia < VENTANA ? (ventana << distancia) | 1 : 1;
+        }
+
+    }
+
+}
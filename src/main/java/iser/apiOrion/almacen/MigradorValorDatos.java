@@ -0,0 +1,143 @@
+package iser.apiOrion.almacen;
+
+import iser.apiOrion.collection.Datos;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Migra en segundo plano los documentos de datos con el valor guardado como texto
+ * (version 1) al valor numerico de la version 2. Lee por lotes ordenados por _id y
+ * convierte cada lote en paralelo con una escritura masiva.
+ */
+@Component
+public class MigradorValorDatos {
+
+    /**
+     * logger :: log for MigradorValorDatos
+     */
+    private static final Logger logger = LoggerFactory.getLogger(MigradorValorDatos.class);
+
+    /**
+     * Tipo BSON string
+     */
+    private static final int TIPO_TEXTO = 2;
+
+    /**
+     * Plantilla de mongo
+     */
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Value("${datos.migracion.valor.habilitada:false}")
+    private boolean habilitada;
+
+    @Value("${datos.migracion.valor.tamano-lote:1000}")
+    private int tamanoLote;
+
+    @Value("${datos.migracion.valor.hilos:4}")
+    private int hilos;
+
+    /**
+     * Inicia la migracion al arrancar la aplicacion si esta habilitada
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!habilitada) {
+            return;
+        }
+        Thread hilo = new Thread(this::migrar, "migrador-valor-datos");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Metodo que permite migrar todos los documentos con valor de texto
+     * @return cantidad de documentos migrados
+     */
+    public long migrar() {
+        String coleccion = mongoTemplate.getCollectionName(Datos.class);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        Semaphore lotesEnCurso = new Semaphore(hilos * 2);
+        AtomicLong convertidos = new AtomicLong();
+        AtomicLong invalidos = new AtomicLong();
+        Object ultimoId = null;
+        logger.info("Iniciando migracion de valor texto a numerico en " + coleccion);
+        try {
+            while (true) {
+                Criteria criteria = Criteria.where("valor").type(TIPO_TEXTO);
+                if (ultimoId != null) {
+                    criteria = criteria.and("_id").gt(ultimoId);
+                }
+                Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")).limit(tamanoLote);
+                query.fields().include("_id").include("valor");
+                List<Document> lote = mongoTemplate.find(query, Document.class, coleccion);
+                if (lote.isEmpty()) {
+                    break;
+                }
+                ultimoId = lote.get(lote.size() - 1).get("_id");
+                lotesEnCurso.acquire();
+                executor.execute(() -> {
+                    try {
+                        convertirLote(coleccion, lote, convertidos, invalidos);
+                    } catch (Exception e) {
+                        logger.error("ERROR_MESSAGE: " + e.getMessage());
+                    } finally {
+                        lotesEnCurso.release();
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+        logger.info("Migracion de valor terminada: " + convertidos.get() + " convertidos, "
+                + invalidos.get() + " sin valor numerico");
+        return convertidos.get() + invalidos.get();
+    }
+
+    /**
+     * Convierte un lote con una escritura masiva. El filtro incluye el texto original
+     * para no pisar un documento que haya cambiado entre la lectura y la escritura.
+     * Los textos que no son numeros se conservan en valor_original.
+     */
+    private void convertirLote(String coleccion, List<Document> lote, AtomicLong convertidos, AtomicLong invalidos) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, coleccion);
+        for (Document documento : lote) {
+            String texto = documento.getString("valor");
+            Double valor = ValorDatos.parsear(texto);
+            Query filtro = new Query(Criteria.where("_id").is(documento.get("_id")).and("valor").is(texto));
+            Update update = new Update().set("version_esquema", Datos.VERSION_ESQUEMA);
+            if (valor != null) {
+                update.set("valor", valor);
+                convertidos.incrementAndGet();
+            } else {
+                update.set("valor_original", texto).unset("valor");
+                invalidos.incrementAndGet();
+            }
+            bulk.updateOne(filtro, update);
+        }
+        bulk.execute();
+    }
+
+}
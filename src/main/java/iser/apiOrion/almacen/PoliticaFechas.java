@@ -0,0 +1,106 @@
+package iser.apiOrion.almacen;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+/**
+ * Decide la fecha que se guarda para cada lectura cuando el dispositivo envia la suya, por
+ * ejemplo al subir las lecturas acumuladas durante un corte de conexion.
+ * <p>
+ *     Correccion del reloj: si la peticion trae la hora del dispositivo al enviar (cabecera
+ *     X-Fecha-Dispositivo), la diferencia con la hora del servidor se suma a todas sus fechas,
+ *     lo que corrige placas sin hora sincronizada. Despues se aplican los limites de
+ *     plausibilidad: una fecha adelantada hasta datos.fecha.futuro-maximo-ms se ajusta a la
+ *     hora de recepcion, y las mas adelantadas o mas antiguas que datos.fecha.antiguedad-maxima-ms
+ *     se rechazan. Sin fecha del dispositivo se usa la de recepcion, como antes.
+ * </p>
+ */
+@Component
+public class PoliticaFechas {
+
+    public static final String CABECERA_RELOJ = "X-Fecha-Dispositivo";
+
+    /**
+     * Registro de metricas
+     */
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${datos.fecha.corregir-reloj:true}")
+    private boolean corregirReloj;
+
+    @Value("${datos.fecha.futuro-maximo-ms:300000}")
+    private long futuroMaximo;
+
+    @Value("${datos.fecha.antiguedad-maxima-ms:2592000000}")
+    private long antiguedadMaxima;
+
+    private Counter rechazadas;
+
+    private Counter ajustadas;
+
+    @PostConstruct
+    void iniciar() {
+        rechazadas = Counter.builder("datos.fecha.rechazadas")
+                .description("Lecturas con fecha del dispositivo fuera de los limites")
+                .register(meterRegistry);
+        ajustadas = Counter.builder("datos.fecha.ajustadas")
+                .description("Lecturas con fecha adelantada ajustada a la hora de recepcion")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Metodo que permite calcular la correccion del reloj de una peticion
+     * @param relojDispositivo hora del dispositivo al enviar en ms, o null
+     * @param recepcion fecha de recepcion
+     * @return milisegundos a sumar a las fechas del dispositivo
+     */
+    public long desfase(Long relojDispositivo, Date recepcion) {
+        if (!corregirReloj || relojDispositivo == null || relojDispositivo <= 0) {
+            return 0;
+        }
+        return recepcion.getTime() - relojDispositivo;
+    }
+
+    /**
+     * Metodo que permite resolver la fecha de una lectura
+     * @param fecha fecha del dispositivo, o null si no la envio
+     * @param desfase correccion del reloj de la peticion
+     * @param recepcion fecha de recepcion
+     * @return fecha a guardar, o null si la fecha no es plausible
+     */
+    public Date resolver(Date fecha, long desfase, Date recepcion) {
+        return fecha == null ? recepcion : resolver(fecha.getTime(), desfase, recepcion);
+    }
+
+    /**
+     * Metodo que permite resolver la fecha de una lectura binaria
+     * @param fecha fecha del dispositivo en ms, 0 o negativa si no la envio
+     * @param desfase correccion del reloj de la peticion
+     * @param recepcion fecha de recepcion
+     * @return fecha a guardar, o null si la fecha no es plausible
+     */
+    public Date resolver(long fecha, long desfase, Date recepcion) {
+        if (fecha <= 0) {
+            return recepcion;
+        }
+        long corregida = fecha + desfase;
+        long adelanto = corregida - recepcion.getTime();
+        if (adelanto > futuroMaximo || -adelanto > antiguedadMaxima) {
+            rechazadas.increment();
+            return null;
+        }
+        if (adelanto > 0) {
+            ajustadas.increment();
+            return recepcion;
+        }
+        return new Date(corregida);
+    }
+
+}
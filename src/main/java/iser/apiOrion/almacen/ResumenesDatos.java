@@ -0,0 +1,318 @@
+package iser.apiOrion.almacen;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.ReplaceOptions;
+import iser.apiOrion.DTO.PuntoAgregadoDTO;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.collection.ResumenDatos;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Mantiene los resumenes por hora (datos_hourly) y por dia (datos_daily) de cada sensor con
+ * count, sum, min, max, primero y ultimo.
+ * <p>
+ *     Es incremental: guarda como marca la ultima fecha de escritura (Datos.recibido) procesada
+ *     y en cada ejecucion solo recalcula las horas, y sus dias, que recibieron datos despues de
+ *     la marca. Un dato tardio con fecha antigua vuelve a calcular la hora a la que pertenece;
+ *     mientras tanto las lecturas lo suman desde los datos crudos, para que las lecturas
+ *     acumuladas que sube un dispositivo despues de un corte aparezcan de inmediato.
+ *     La primera ejecucion, sin marca, reconstruye todo. Solo aplica al modo documento: en modo
+ *     bucket los buckets ya son el resumen por hora.
+ * </p>
+ */
+@Component
+public class ResumenesDatos {
+
+    /**
+     * logger :: log for ResumenesDatos
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ResumenesDatos.class);
+
+    public static final String COLECCION_HORA = "datos_hourly";
+
+    public static final String COLECCION_DIA = "datos_daily";
+
+    private static final String COLECCION_MARCA = "rollup_marca";
+
+    private static final String ID_MARCA = "datos";
+
+    private static final long MILISEGUNDOS_HORA = 3_600_000L;
+
+    /**
+     * Horas recalculadas por cada pipeline
+     */
+    private static final int HORAS_POR_PIPELINE = 200;
+
+    /**
+     * Plantilla de mongo
+     */
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Value("${datos.rollup.habilitado:false}")
+    private boolean habilitado;
+
+    /**
+     * Margen para no dejar atras escrituras en curso al mover la marca
+     */
+    @Value("${datos.rollup.retraso-ms:30000}")
+    private long retrasoMs;
+
+    @Value("${datos.zona-horaria:America/Bogota}")
+    private String zonaHoraria;
+
+    @Value("${datos.almacenamiento.modo:documento}")
+    private String modoAlmacenamiento;
+
+    private volatile Date marcaActual;
+
+    /**
+     * Metodo que permite saber si los resumenes estan activos
+     * @return true si estan habilitados y el almacenamiento es por documento
+     */
+    public boolean activo() {
+        return habilitado && "documento".equals(modoAlmacenamiento);
+    }
+
+    /**
+     * Actualiza los resumenes con los datos escritos desde la ultima marca
+     */
+    @Scheduled(fixedDelayString = "${datos.rollup.intervalo-ms:60000}", initialDelayString = "${datos.rollup.intervalo-ms:60000}")
+    public void actualizar() {
+        if (!activo()) {
+            return;
+        }
+        try {
+            Date marca = marca();
+            Date hasta = new Date(System.currentTimeMillis() - retrasoMs);
+            if (marca == null) {
+                logger.info("Reconstruyendo resumenes de datos");
+                recalcularHoras(new Document(), hasta);
+                recalcularDias(new Document());
+            } else if (hasta.after(marca)) {
+                incrementar(marca, hasta);
+            } else {
+                return;
+            }
+            mongoTemplate.getCollection(COLECCION_MARCA).replaceOne(
+                    new Document("_id", ID_MARCA),
+                    new Document("_id", ID_MARCA).append("recibido", hasta),
+                    new ReplaceOptions().upsert(true));
+            marcaActual = hasta;
+        } catch (Exception e) {
+            logger.error("ERROR_MESSAGE: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Metodo que permite obtener la marca de los resumenes
+     * @return fecha de escritura hasta la que los resumenes estan al dia, o null si no existen
+     */
+    public Date marca() {
+        if (marcaActual == null) {
+            Document marca = mongoTemplate.getCollection(COLECCION_MARCA).find(new Document("_id", ID_MARCA)).first();
+            marcaActual = marca != null ? marca.getDate("recibido") : null;
+        }
+        return marcaActual;
+    }
+
+    /**
+     * Metodo que permite agregar un rango leyendo de los resumenes la parte ya resumida y
+     * agregando desde los datos crudos el tramo posterior a la marca y los datos tardios que
+     * todavia no entraron en los resumenes. Solo se usan los resumenes cuyo intervalo completo
+     * cae dentro del rango, con la misma regla que los datos crudos (inicio y fin excluidos):
+     * los intervalos parciales del principio y del final se agregan desde los datos crudos.
+     * @param idSensor id del sensor
+     * @param inicio fecha inicial
+     * @param fin fecha final
+     * @param unidad hour o day
+     * @param almacenDatos almacen para el tramo sin resumir
+     * @return un punto por intervalo
+     */
+    public List<PuntoAgregadoDTO> agregar(String idSensor, Date inicio, Date fin, String unidad, AlmacenDatos almacenDatos) {
+        Date marca = marca();
+        if (marca == null) {
+            return almacenDatos.agregar(idSensor, inicio, fin, unidad, zonaHoraria);
+        }
+        ZoneId zona = ZoneId.of(zonaHoraria);
+        ChronoUnit intervalo = "day".equals(unidad) ? ChronoUnit.DAYS : ChronoUnit.HOURS;
+        // primer intervalo que empieza despues de inicio y fin del ultimo que termina antes de fin y de la marca
+        long primero = inicio.toInstant().atZone(zona).truncatedTo(intervalo).plus(1, intervalo).toInstant().toEpochMilli();
+        long corte = Instant.ofEpochMilli(Math.min(marca.getTime(), fin.getTime())).atZone(zona).truncatedTo(intervalo)
+                .toInstant().toEpochMilli();
+        if (corte <= primero) {
+            return almacenDatos.agregar(idSensor, inicio, fin, unidad, zonaHoraria);
+        }
+
+        Date inicioResumido = new Date(primero);
+        Date finResumido = new Date(corte);
+        Query query = new Query(Criteria.where("idSensor").is(idSensor)
+                .and("inicio").gte(inicioResumido).lt(finResumido))
+                .with(Sort.by(Sort.Direction.ASC, "inicio"));
+        TreeMap<Long, PuntoAgregadoDTO> puntos = new TreeMap<>();
+        for (ResumenDatos resumen : mongoTemplate.find(query, ResumenDatos.class, "day".equals(unidad) ? COLECCION_DIA : COLECCION_HORA)) {
+            if (resumen.getCount() == null || resumen.getCount() == 0) {
+                continue;
+            }
+            PuntoAgregadoDTO punto = new PuntoAgregadoDTO();
+            punto.setT(resumen.getInicio().getTime());
+            punto.setCount(resumen.getCount());
+            punto.setSum(resumen.getSum());
+            punto.setMin(resumen.getMin());
+            punto.setMax(resumen.getMax());
+            puntos.put(punto.getT(), punto);
+        }
+        List<PuntoAgregadoDTO> crudos = new ArrayList<>(tardios(idSensor, marca, inicioResumido, finResumido, unidad));
+        // los crudos excluyen los extremos: el dato de fecha primero ya esta en el primer resumen
+        crudos.addAll(almacenDatos.agregar(idSensor, inicio, inicioResumido, unidad, zonaHoraria));
+        if (corte < fin.getTime()) {
+            crudos.addAll(almacenDatos.agregar(idSensor, new Date(corte - 1), fin, unidad, zonaHoraria));
+        }
+        for (PuntoAgregadoDTO punto : crudos) {
+            puntos.merge(punto.getT(), punto, AgregacionDatos::combinar);
+        }
+        return new ArrayList<>(puntos.values());
+    }
+
+    /**
+     * Agrega los datos del tramo resumido escritos despues de la marca, es decir los llegados
+     * desde la ultima ejecucion con fecha anterior al corte
+     */
+    private List<PuntoAgregadoDTO> tardios(String idSensor, Date marca, Date inicio, Date fin, String unidad) {
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("recibido", new Document("$gt", marca))
+                        .append("id_sensor", idSensor)
+                        .append("fecha", new Document("$gte", inicio).append("$lt", fin))),
+                new Document("$set", new Document("v", AgregacionDatos.valorNumerico("$valor"))),
+                AgregacionDatos.agruparValores("$fecha", unidad, zonaHoraria));
+        return AgregacionDatos.leer(coleccionDatos().aggregate(pipeline));
+    }
+
+    /**
+     * Recalcula las horas y los dias que recibieron datos entre la marca y hasta
+     */
+    private void incrementar(Date marca, Date hasta) {
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("recibido", new Document("$gt", marca).append("$lte", hasta))),
+                new Document("$group", new Document("_id", new Document("s", "$id_sensor")
+                        .append("h", AgregacionDatos.truncar("$fecha", "hour", zonaHoraria)))));
+        Map<String, TreeSet<Long>> horasPorSensor = new HashMap<>();
+        for (Document tocado : coleccionDatos().aggregate(pipeline).allowDiskUse(true)) {
+            Document id = tocado.get("_id", Document.class);
+            horasPorSensor.computeIfAbsent(id.getString("s"), s -> new TreeSet<>()).add(id.getDate("h").getTime());
+        }
+
+        ZoneId zona = ZoneId.of(zonaHoraria);
+        for (Map.Entry<String, TreeSet<Long>> entry : horasPorSensor.entrySet()) {
+            List<Long> horas = new ArrayList<>(entry.getValue());
+            TreeSet<Long> dias = new TreeSet<>();
+            for (int i = 0; i < horas.size(); i += HORAS_POR_PIPELINE) {
+                List<Document> rangos = new ArrayList<>();
+                for (Long hora : horas.subList(i, Math.min(horas.size(), i + HORAS_POR_PIPELINE))) {
+                    rangos.add(new Document("fecha", new Document("$gte", new Date(hora)).append("$lt", new Date(hora + MILISEGUNDOS_HORA))));
+                    dias.add(Instant.ofEpochMilli(hora).atZone(zona).truncatedTo(ChronoUnit.DAYS).toInstant().toEpochMilli());
+                }
+                recalcularHoras(new Document("id_sensor", entry.getKey()).append("$or", rangos), hasta);
+            }
+            List<Document> rangosDia = new ArrayList<>();
+            for (Long dia : dias) {
+                long finDia = Instant.ofEpochMilli(dia).atZone(zona).plusDays(1).toInstant().toEpochMilli();
+                rangosDia.add(new Document("inicio", new Document("$gte", new Date(dia)).append("$lt", new Date(finDia))));
+            }
+            recalcularDias(new Document("id_sensor", entry.getKey()).append("$or", rangosDia));
+        }
+        logger.info("Resumenes actualizados para " + horasPorSensor.size() + " sensores");
+    }
+
+    /**
+     * Recalcula desde los datos crudos las horas que cumplen el filtro y las guarda con $merge.
+     * Solo cuenta los datos escritos hasta la nueva marca: los que llegan despues, durante el
+     * retraso, los suma tardios y entran en la siguiente ejecucion, sin contarse dos veces. Los
+     * datos anteriores al campo recibido no lo tienen y se cuentan siempre.
+     */
+    private void recalcularHoras(Document filtro, Date hasta) {
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document(filtro)
+                        .append("recibido", new Document("$not", new Document("$gt", hasta)))),
+                new Document("$set", new Document("v", AgregacionDatos.valorNumerico("$valor"))),
+                new Document("$sort", new Document("fecha", 1)),
+                new Document("$group", new Document("_id", new Document("s", "$id_sensor")
+                        .append("t", AgregacionDatos.truncar("$fecha", "hour", zonaHoraria)))
+                        .append("count", new Document("$sum", new Document("$cond", List.of(new Document("$ne", Arrays.asList("$v", null)), 1, 0))))
+                        .append("sum", new Document("$sum", "$v"))
+                        .append("min", new Document("$min", "$v"))
+                        .append("max", new Document("$max", "$v"))
+                        .append("primero", new Document("$first", new Document("fecha", "$fecha").append("valor", "$v")))
+                        .append("ultimo", new Document("$last", new Document("fecha", "$fecha").append("valor", "$v")))),
+                proyectarResumen(),
+                fusionar(COLECCION_HORA));
+        coleccionDatos().aggregate(pipeline).allowDiskUse(true).toCollection();
+    }
+
+    /**
+     * Recalcula desde los resumenes por hora los dias que cumplen el filtro
+     */
+    private void recalcularDias(Document filtro) {
+        List<Document> pipeline = List.of(
+                new Document("$match", filtro),
+                new Document("$sort", new Document("inicio", 1)),
+                new Document("$group", new Document("_id", new Document("s", "$id_sensor")
+                        .append("t", AgregacionDatos.truncar("$inicio", "day", zonaHoraria)))
+                        .append("count", new Document("$sum", "$count"))
+                        .append("sum", new Document("$sum", "$sum"))
+                        .append("min", new Document("$min", "$min"))
+                        .append("max", new Document("$max", "$max"))
+                        .append("primero", new Document("$first", "$primero"))
+                        .append("ultimo", new Document("$last", "$ultimo"))),
+                proyectarResumen(),
+                fusionar(COLECCION_DIA));
+        mongoTemplate.getCollection(COLECCION_HORA).aggregate(pipeline).allowDiskUse(true).toCollection();
+    }
+
+    private Document proyectarResumen() {
+        return new Document("$project", new Document("_id", new Document("$concat", List.of(
+                        "$_id.s", ":", new Document("$toString", new Document("$toLong", "$_id.t")))))
+                .append("id_sensor", "$_id.s")
+                .append("inicio", "$_id.t")
+                .append("count", 1)
+                .append("sum", 1)
+                .append("min", 1)
+                .append("max", 1)
+                .append("primero", 1)
+                .append("ultimo", 1));
+    }
+
+    private Document fusionar(String coleccion) {
+        return new Document("$merge", new Document("into", coleccion)
+                .append("on", "_id")
+                .append("whenMatched", "replace")
+                .append("whenNotMatched", "insert"));
+    }
+
+    private MongoCollection<Document> coleccionDatos() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Datos.class));
+    }
+
+}
@@ -0,0 +1,277 @@
+package iser.apiOrion.almacen;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.collection.Estacion;
+import iser.apiOrion.collection.Sensor;
+import iser.apiOrion.collection.TuyaSensorData;
+import iser.apiOrion.repository.EstacionRepository;
+import iser.apiOrion.repository.SensorRepository;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Aplica la retencion por niveles: los datos crudos se quedan en mongo los dias de la
+ * ventana caliente y despues pasan, por dias completos, al archivo frio (ArchivoDatos), de
+ * donde las consultas por rango los siguen leyendo; los resumenes por hora y por dia se
+ * conservan mas tiempo.
+ * <p>
+ *     Los dias de datos crudos se toman del sensor (Sensor.retencionDias), si no de su
+ *     estacion (Estacion.retencionDias) y si no de datos.retencion.dias-crudos; 0 conserva
+ *     todo en mongo. La ventana nunca es menor que datos.fecha.antiguedad-maxima-ms mas un
+ *     dia, para que ninguna lectura tardia aceptada caiga en un dia ya archivado. Con
+ *     resumenes activos no se archiva nada hasta que existan, porque se calculan desde los
+ *     datos crudos. En colecciones de series de tiempo el borrado por fecha requiere
+ *     MongoDB 7.0.
+ * </p>
+ */
+@Component
+public class RetencionDatos {
+
+    /**
+     * logger :: log for RetencionDatos
+     */
+    private static final Logger logger = LoggerFactory.getLogger(RetencionDatos.class);
+
+    /**
+     * Almacen de mongo, sin el archivo: se lee y se borra solo lo que sigue en mongo
+     */
+    @Autowired
+    @Qualifier(AlmacenDatos.MONGO)
+    AlmacenDatos almacenMongo;
+
+    /**
+     * Archivo frio de datos crudos
+     */
+    @Autowired
+    ArchivoDatos archivoDatos;
+
+    /**
+     * Resumenes por hora y por dia
+     */
+    @Autowired
+    ResumenesDatos resumenesDatos;
+
+    /**
+     * Repositorio de sensores
+     */
+    @Autowired
+    SensorRepository sensorRepository;
+
+    /**
+     * Repositorio de estaciones
+     */
+    @Autowired
+    EstacionRepository estacionRepository;
+
+    /**
+     * Plantilla de mongo
+     */
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    /**
+     * Registro de metricas
+     */
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${datos.retencion.habilitada:false}")
+    private boolean habilitada;
+
+    /**
+     * Dias de datos crudos en mongo para los sensores y estaciones sin retencion propia
+     */
+    @Value("${datos.retencion.dias-crudos:90}")
+    private int diasCrudos;
+
+    /**
+     * Dias de resumenes por hora; 0 los conserva siempre
+     */
+    @Value("${datos.retencion.dias-resumen-hora:730}")
+    private int diasResumenHora;
+
+    /**
+     * Dias de resumenes por dia; 0 los conserva siempre
+     */
+    @Value("${datos.retencion.dias-resumen-dia:0}")
+    private int diasResumenDia;
+
+    /**
+     * Dias de tuya_sensor_data en mongo; 0 conserva todo
+     */
+    @Value("${datos.retencion.dias-tuya:90}")
+    private int diasTuya;
+
+    @Value("${datos.fecha.antiguedad-maxima-ms:2592000000}")
+    private long antiguedadMaxima;
+
+    @Value("${datos.zona-horaria:America/Bogota}")
+    private String zonaHoraria;
+
+    private Counter archivados;
+
+    private Counter archivadosTuya;
+
+    @PostConstruct
+    void iniciar() {
+        archivados = Counter.builder("datos.retencion.archivados")
+                .description("Datos crudos movidos al archivo frio")
+                .tag("coleccion", "datos")
+                .register(meterRegistry);
+        archivadosTuya = Counter.builder("datos.retencion.archivados")
+                .description("Datos crudos movidos al archivo frio")
+                .tag("coleccion", "tuya_sensor_data")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Archiva los dias que salieron de la ventana caliente y borra los resumenes vencidos
+     */
+    @Scheduled(fixedDelayString = "${datos.retencion.intervalo-ms:3600000}", initialDelayString = "${datos.retencion.intervalo-ms:3600000}")
+    public void aplicar() {
+        if (!habilitada) {
+            return;
+        }
+        ZoneId zona = ZoneId.of(zonaHoraria);
+        LocalDate hoy = LocalDate.now(zona);
+        if (resumenesDatos.activo() && resumenesDatos.marca() == null) {
+            logger.info("Retencion en espera de la primera ejecucion de los resumenes");
+        } else {
+            archivarDatos(hoy, zona);
+        }
+        eliminarResumenes(ResumenesDatos.COLECCION_HORA, diasResumenHora, hoy, zona);
+        eliminarResumenes(ResumenesDatos.COLECCION_DIA, diasResumenDia, hoy, zona);
+        archivarTuya(hoy, zona);
+    }
+
+    private void archivarDatos(LocalDate hoy, ZoneId zona) {
+        Map<String, Integer> porEstacion = new HashMap<>();
+        for (Estacion estacion : estacionRepository.findAll()) {
+            if (estacion.getRetencionDias() != null) {
+                porEstacion.put(estacion.getId(), estacion.getRetencionDias());
+            }
+        }
+        // los dias que todavia pueden recibir lecturas tardias no se archivan
+        LocalDate corteTardios = Instant.ofEpochMilli(System.currentTimeMillis() - antiguedadMaxima).atZone(zona).toLocalDate().minusDays(1);
+        long total = 0;
+        for (Sensor sensor : sensorRepository.findAll()) {
+            int dias = sensor.getRetencionDias() != null ? sensor.getRetencionDias()
+                    : porEstacion.getOrDefault(sensor.getIdEstacion(), diasCrudos);
+            if (dias <= 0) {
+                continue;
+            }
+            LocalDate corte = hoy.minusDays(dias);
+            if (corte.isAfter(corteTardios)) {
+                corte = corteTardios;
+            }
+            try {
+                total += archivarSensor(sensor.getId(), corte.atStartOfDay(zona).toInstant().toEpochMilli(), zona);
+            } catch (Exception e) {
+                logger.error("ERROR_MESSAGE: no se pudo archivar el sensor " + sensor.getId() + ": " + e.getMessage());
+            }
+        }
+        if (total > 0) {
+            logger.info("Retencion: " + total + " datos movidos al archivo");
+        }
+    }
+
+    /**
+     * Archiva dia por dia los datos del sensor anteriores al corte. El siguiente dia se busca
+     * con el dato mas antiguo que queda, por lo que los dias sin datos no cuestan consultas.
+     */
+    private long archivarSensor(String idSensor, long corte, ZoneId zona) throws IOException {
+        long total = 0;
+        Date fin = new Date(corte);
+        List<Datos> primero = almacenMongo.pagina(idSensor, new Date(0), fin, null, null, 1);
+        while (!primero.isEmpty()) {
+            LocalDate dia = primero.get(0).getFecha().toInstant().atZone(zona).toLocalDate();
+            Date inicioDia = Date.from(dia.atStartOfDay(zona).toInstant());
+            Date finDia = Date.from(dia.plusDays(1).atStartOfDay(zona).toInstant());
+            List<Datos> datos = new ArrayList<>();
+            almacenMongo.recorrerRango(idSensor, new Date(inicioDia.getTime() - 1), finDia, datos::add);
+            archivoDatos.archivar(idSensor, dia, datos);
+            almacenMongo.eliminarRango(idSensor, inicioDia, finDia);
+            archivados.increment(datos.size());
+            total += datos.size();
+            primero = almacenMongo.pagina(idSensor, new Date(finDia.getTime() - 1), fin, null, null, 1);
+        }
+        return total;
+    }
+
+    /**
+     * Borra los resumenes anteriores al inicio del dia de corte, para no dejar dias a medias
+     */
+    private void eliminarResumenes(String coleccion, int dias, LocalDate hoy, ZoneId zona) {
+        if (dias <= 0) {
+            return;
+        }
+        try {
+            Date corte = Date.from(hoy.minusDays(dias).atStartOfDay(zona).toInstant());
+            mongoTemplate.getCollection(coleccion).deleteMany(new Document("inicio", new Document("$lt", corte)));
+        } catch (Exception e) {
+            logger.error("ERROR_MESSAGE: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Archiva por dia de la zona configurada los registros de tuya_sensor_data anteriores a la
+     * ventana; cada dia se lee con un cursor
+     */
+    private void archivarTuya(LocalDate hoy, ZoneId zona) {
+        if (diasTuya <= 0) {
+            return;
+        }
+        try {
+            LocalDateTime corte = ArchivoDatos.inicioDiaTuya(hoy.minusDays(diasTuya), zona);
+            LocalDateTime desde = LocalDateTime.of(1970, 1, 1, 0, 0);
+            long total = 0;
+            TuyaSensorData registro;
+            while ((registro = mongoTemplate.findOne(new Query(Criteria.where("timestamp").gte(desde).lt(corte))
+                    .with(Sort.by(Sort.Direction.ASC, "timestamp")), TuyaSensorData.class)) != null) {
+                LocalDate dia = ArchivoDatos.diaTuya(registro.getTimestamp(), zona);
+                LocalDateTime finDia = ArchivoDatos.inicioDiaTuya(dia.plusDays(1), zona);
+                Criteria delDia = Criteria.where("timestamp").gte(ArchivoDatos.inicioDiaTuya(dia, zona)).lt(finDia);
+                long cantidad;
+                try (Stream<TuyaSensorData> registros = mongoTemplate.stream(
+                        new Query(delDia).with(Sort.by(Sort.Direction.ASC, "timestamp")), TuyaSensorData.class)) {
+                    cantidad = archivoDatos.archivarTuya(dia, registros);
+                }
+                mongoTemplate.remove(new Query(delDia), TuyaSensorData.class);
+                archivadosTuya.increment(cantidad);
+                total += cantidad;
+                desde = finDia;
+            }
+            if (total > 0) {
+                logger.info("Retencion: " + total + " registros de tuya movidos al archivo");
+            }
+        } catch (Exception e) {
+            logger.error("ERROR_MESSAGE: " + e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package iser.apiOrion.almacen;
+
+import java.math.BigDecimal;
+
+/**
+ * Conversion entre el valor numerico guardado y el texto que envian los sensores
+ * y que esperan las graficas.
+ */
+public class ValorDatos {
+
+    private ValorDatos() {
+    }
+
+    /**
+     * Metodo que permite convertir el texto de un sensor a numero
+     * @param texto valor recibido, admite coma o punto decimal
+     * @return valor numerico o null si el texto no es un numero finito
+     */
+    public static Double parsear(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        String limpio = texto.trim().replace(',', '.');
+        if (limpio.isEmpty()) {
+            return null;
+        }
+        try {
+            double valor = Double.parseDouble(limpio);
+            return Double.isFinite(valor) ? valor : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Metodo que permite convertir un float de la ingesta binaria al double con el decimal
+     * enviado (23.1 y no 23.100000381...), el mismo que da Double.parseDouble(Float.toString(valor))
+     * pero sin crear un String por lectura: redondea a la menor cantidad de cifras significativas,
+     * de 6 a 9, que vuelve al mismo float. Las potencias de 10 solo son exactas en double hasta
+     * 10^22, por lo que los valores fuera de ese rango (menores que 1e-13 o mayores que 1e21)
+     * usan el texto.
+     * @param valor valor finito recibido
+     * @return valor como double
+     */
+    public static double decimal(float valor) {
+        if (valor == 0 || !Float.isFinite(valor)) {
+            return valor;
+        }
+        double doble = valor;
+        int exponente = (int) Math.floor(Math.log10(Math.abs(doble)));
+        for (int cifras = 6; cifras <= 9; cifras++) {
+            int escala = cifras - 1 - exponente;
+            if (escala > 22 || escala < -22) {
+                break;
+            }
+            double potencia = Math.pow(10, Math.abs(escala));
+            double redondeado = escala >= 0
+                    ? Math.rint(doble * potencia) / potencia
+                    : Math.rint(doble / potencia) * potencia;
+            if ((float) redondeado == valor) {
+                return redondeado;
+            }
+        }
+        return Double.parseDouble(Float.toString(valor));
+    }
+
+    /**
+     * Metodo que permite convertir un valor numerico al texto de las graficas
+     * @param valor valor numerico
+     * @return texto sin ceros sobrantes (23.0 se muestra como 23)
+     */
+    public static String formatear(Double valor) {
+        if (valor == null) {
+            return null;
+        }
+        return BigDecimal.valueOf(valor).stripTrailingZeros().toPlainString();
+    }
+
+}
@@ -4,6 +4,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 
 @Configuration
 public class ConfigFilter {
@@ -14,6 +15,12 @@ public class ConfigFilter {
     @Autowired
     private CustomFilter customFilter;
 
+    /**
+     * Filtro de limite de tasa de la ingesta
+     */
+    @Autowired
+    private LimiteIngestaFilter limiteIngestaFilter;
+
     /**
      * Registra el filtro en la aplicacion
      * @return filtro registrado
@@ -27,4 +34,19 @@ public class ConfigFilter {
         return registrationBean;
     }
 
+    /**
+     * Registra el limite de tasa por IP de la ingesta antes del filtro personalizado, para
+     * rechazar sin validar la clave ni leer el cuerpo
+     * @return filtro registrado
+     */
+    @Bean
+    public FilterRegistrationBean<LimiteIngestaFilter> limiteIngestaRegistrationBean() {
+        FilterRegistrationBean<LimiteIngestaFilter> registrationBean = new FilterRegistrationBean<>();
+
+        registrationBean.setFilter(limiteIngestaFilter);
+        registrationBean.addUrlPatterns("/*");
+        registrationBean.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registrationBean;
+    }
+
 }
@@ -12,6 +12,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Enumeration;
 
 @Service
@@ -57,7 +58,7 @@ public class CustomFilter extends OncePerRequestFilter {
         System.out.println("¿No requiere token? " + this.jwtTokenProvider.requestURINoToken(request.getRequestURI()));
 
         boolean isNoTokenURI = this.jwtTokenProvider.requestURINoToken(request.getRequestURI());
-        boolean isInsertarDatosValid = request.getRequestURI().equals(insertarDatosRequestURI)
+        boolean isInsertarDatosValid = Arrays.asList(insertarDatosRequestURI.split(";")).contains(request.getRequestURI())
                 && claveValidaDatos.equals(request.getHeader("clave"));
 
         if (isNoTokenURI || isInsertarDatosValid) {
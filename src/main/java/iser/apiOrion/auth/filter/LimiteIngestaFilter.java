@@ -0,0 +1,45 @@
+package iser.apiOrion.auth.filter;
+
+import iser.apiOrion.ingesta.LimitadorIngesta;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+import static iser.apiOrion.constant.messageConstant.buildMessage;
+
+/**
+ * Limita por IP la tasa de las rutas de ingesta antes de CustomFilter y antes de leer el cuerpo;
+ * el limite por sensor se aplica al insertar, con el sensor ya autenticado
+ */
+@Service
+public class LimiteIngestaFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private LimitadorIngesta limitadorIngesta;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equalsIgnoreCase(request.getMethod()) || !limitadorIngesta.aplica(request.getRequestURI());
+    }
+
+    @Override
+    public void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        long espera = limitadorIngesta.admitir(request.getRemoteAddr());
+        if (espera > 0) {
+            response.setStatus(429);
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(espera));
+            response.setContentType("application/json");
+            response.getWriter().write(buildMessage("Limite de peticiones excedido, intente de nuevo"));
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
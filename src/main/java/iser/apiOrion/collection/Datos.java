@@ -2,6 +2,7 @@ package iser.apiOrion.collection;
 
 
 import lombok.Data;
+import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -11,13 +12,35 @@ import java.util.Date;
 @Document(collection = "datos")
 public class Datos {
 
+    /**
+     * Version del esquema de los documentos escritos por la aplicacion.
+     * Los documentos sin version (1) guardan el valor como texto.
+     */
+    public static final int VERSION_ESQUEMA = 2;
+
+    @Id
+    private String id;
+
     @Field(name = "id_sensor")
     private String idSensor;
 
     @Field(name = "valor")
-    private String valor;
+    private Double valor;
+
+    @Field(name = "unidad")
+    private String unidad;
 
     @Field(name = "fecha")
     private Date fecha;
 
+    @Field(name = "version_esquema")
+    private Integer versionEsquema;
+
+    /**
+     * Momento en que el dato se escribio en la base de datos, usado por los resumenes
+     * para detectar datos nuevos o tardios
+     */
+    @Field(name = "recibido")
+    private Date recibido;
+
 }
\ No newline at end of file
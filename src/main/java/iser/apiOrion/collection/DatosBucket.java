@@ -0,0 +1,51 @@
+package iser.apiOrion.collection;
+
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Datos de un sensor agrupados por hora. offsets[i] son los milisegundos desde
+ * el inicio de la hora del valor valores[i]; los arreglos siguen el orden de
+ * llegada, no necesariamente el cronologico.
+ */
+@Data
+@Document(collection = "datos_bucket")
+public class DatosBucket {
+
+    @Id
+    private String id;
+
+    @Field(name = "id_sensor")
+    private String idSensor;
+
+    @Field(name = "hora")
+    private Date hora;
+
+    @Field(name = "unidad")
+    private String unidad;
+
+    @Field(name = "offsets")
+    private List<Integer> offsets;
+
+    @Field(name = "valores")
+    private List<Double> valores;
+
+    @Field(name = "min")
+    private Double min;
+
+    @Field(name = "max")
+    private Double max;
+
+    @Field(name = "count")
+    private Integer count;
+
+    @Field(name = "suma")
+    private Double suma;
+
+}
\ No newline at end of file
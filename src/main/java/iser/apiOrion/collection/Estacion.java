@@ -37,4 +37,11 @@ public class Estacion {
     @Field(name = "idTipoCultivo")
     private String idTipoCultivo;
 
+    /**
+     * Dias de datos crudos en mongo de los sensores de la estacion; null usa
+     * datos.retencion.dias-crudos y 0 conserva todo
+     */
+    @Field(name = "retencionDias")
+    private Integer retencionDias;
+
 }
@@ -0,0 +1,54 @@
+package iser.apiOrion.collection;
+
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.Date;
+
+/**
+ * Resumen de los datos de un sensor en un intervalo. Se guarda en datos_hourly y datos_daily.
+ */
+@Data
+public class ResumenDatos {
+
+    @Id
+    private String id;
+
+    @Field(name = "id_sensor")
+    private String idSensor;
+
+    @Field(name = "inicio")
+    private Date inicio;
+
+    @Field(name = "count")
+    private Long count;
+
+    @Field(name = "sum")
+    private Double sum;
+
+    @Field(name = "min")
+    private Double min;
+
+    @Field(name = "max")
+    private Double max;
+
+    @Field(name = "primero")
+    private Valor primero;
+
+    @Field(name = "ultimo")
+    private Valor ultimo;
+
+    @Data
+    public static class Valor {
+
+        @Field(name = "fecha")
+        private Date fecha;
+
+        @Field(name = "valor")
+        private Double valor;
+
+    }
+
+}
\ No newline at end of file
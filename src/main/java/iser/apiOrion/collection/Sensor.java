@@ -25,4 +25,17 @@ public class Sensor {
     @Field(name = "config")
     private boolean config;
 
+    /**
+     * Indice numerico compacto que usan los dispositivos en la ingesta binaria
+     */
+    @Field(name = "indice")
+    private Integer indice;
+
+    /**
+     * Dias de datos crudos en mongo antes de pasar al archivo; null usa la retencion de la
+     * estacion y 0 conserva todo
+     */
+    @Field(name = "retencionDias")
+    private Integer retencionDias;
+
 }
@@ -0,0 +1,46 @@
+package iser.apiOrion.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ClienteHttpConfig {
+
+    /**
+     * Modo de hilos virtuales (perfil virtual)
+     */
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean hilosVirtuales;
+
+    @Value("${http.cliente.timeout-conexion-ms:5000}")
+    private long timeoutConexion;
+
+    @Value("${http.cliente.timeout-lectura-ms:15000}")
+    private long timeoutLectura;
+
+    /**
+     * Cliente HTTP para las llamadas salientes (API de Tuya), sobre el HttpClient del JDK y con
+     * tiempos limite, para que una llamada colgada no retenga el hilo indefinidamente. Con
+     * hilos virtuales el trabajo interno del cliente tambien corre en hilos virtuales.
+     * @return cliente configurado
+     */
+    @Bean
+    public RestTemplate restTemplate() {
+        HttpClient.Builder cliente = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(timeoutConexion));
+        if (hilosVirtuales) {
+            cliente.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        JdkClientHttpRequestFactory fabrica = new JdkClientHttpRequestFactory(cliente.build());
+        fabrica.setReadTimeout(Duration.ofMillis(timeoutLectura));
+        return new RestTemplate(fabrica);
+    }
+
+}
@@ -0,0 +1,148 @@
+package iser.apiOrion.config;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.mongodb.client.model.TimeSeriesOptions;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.collection.TuyaSensorData;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crea las colecciones datos y tuya_sensor_data como colecciones nativas de series de tiempo
+ * (MongoDB 5.0+) antes de que la aplicacion atienda peticiones.
+ * <p>
+ *     Si la coleccion ya existe como coleccion normal solo se convierte con
+ *     mongo.series-tiempo.migrar=true: los documentos se copian a una coleccion temporal de
+ *     series de tiempo, la original se renombra a {nombre}_legado_{millis} y la temporal toma
+ *     su nombre. Conviene ejecutar antes la migracion de Datos.valor, porque en series de
+ *     tiempo anteriores a MongoDB 7.0 solo se pueden actualizar los campos meta.
+ * </p>
+ */
+@Configuration
+public class SeriesTiempoConfig {
+
+    /**
+     * logger :: log for SeriesTiempoConfig
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SeriesTiempoConfig.class);
+
+    /**
+     * Plantilla de mongo
+     */
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Value("${mongo.series-tiempo.habilitado:false}")
+    private boolean habilitado;
+
+    @Value("${mongo.series-tiempo.granularidad:minutes}")
+    private String granularidad;
+
+    @Value("${mongo.series-tiempo.expiracion-dias:0}")
+    private long expiracionDias;
+
+    @Value("${mongo.series-tiempo.migrar:false}")
+    private boolean migrar;
+
+    @Value("${mongo.series-tiempo.tamano-lote:1000}")
+    private int tamanoLote;
+
+    @PostConstruct
+    void preparar() {
+        if (!habilitado) {
+            return;
+        }
+        preparar(mongoTemplate.getCollectionName(Datos.class), "fecha", "id_sensor");
+        preparar(mongoTemplate.getCollectionName(TuyaSensorData.class), "timestamp", "nombre");
+    }
+
+    /**
+     * Metodo que permite dejar una coleccion como serie de tiempo
+     * @param coleccion nombre de la coleccion
+     * @param campoTiempo campo con la fecha de la medicion
+     * @param campoMeta campo que identifica la serie
+     */
+    private void preparar(String coleccion, String campoTiempo, String campoMeta) {
+        MongoDatabase db = mongoTemplate.getDb();
+        Document info = db.listCollections().filter(new Document("name", coleccion)).first();
+        if (info == null) {
+            crear(db, coleccion, campoTiempo, campoMeta);
+            logger.info("Coleccion de series de tiempo creada: " + coleccion);
+            return;
+        }
+        if ("timeseries".equals(info.getString("type"))) {
+            return;
+        }
+        if (!migrar) {
+            logger.warn("La coleccion " + coleccion + " no es de series de tiempo; use mongo.series-tiempo.migrar=true para convertirla");
+            return;
+        }
+        convertir(db, coleccion, campoTiempo, campoMeta);
+    }
+
+    private void crear(MongoDatabase db, String coleccion, String campoTiempo, String campoMeta) {
+        TimeSeriesOptions serie = new TimeSeriesOptions(campoTiempo)
+                .metaField(campoMeta)
+                .granularity(TimeSeriesGranularity.valueOf(granularidad.toUpperCase()));
+        CreateCollectionOptions opciones = new CreateCollectionOptions().timeSeriesOptions(serie);
+        if (expiracionDias > 0) {
+            opciones.expireAfter(expiracionDias, TimeUnit.DAYS);
+        }
+        db.createCollection(coleccion, opciones);
+    }
+
+    /**
+     * Copia una coleccion normal a una de series de tiempo y intercambia los nombres.
+     * Los documentos sin fecha no se pueden guardar en una serie de tiempo y se quedan
+     * en la coleccion legado.
+     */
+    private void convertir(MongoDatabase db, String coleccion, String campoTiempo, String campoMeta) {
+        String temporal = coleccion + "_ts";
+        String legado = coleccion + "_legado_" + System.currentTimeMillis();
+        logger.info("Convirtiendo " + coleccion + " a serie de tiempo");
+
+        db.getCollection(temporal).drop();
+        crear(db, temporal, campoTiempo, campoMeta);
+        MongoCollection<Document> origen = db.getCollection(coleccion);
+        MongoCollection<Document> destino = db.getCollection(temporal);
+
+        long copiados = 0;
+        List<Document> lote = new ArrayList<>(tamanoLote);
+        try (MongoCursor<Document> cursor = origen.find(new Document(campoTiempo, new Document("$type", "date")))
+                .batchSize(tamanoLote).iterator()) {
+            while (cursor.hasNext()) {
+                lote.add(cursor.next());
+                if (lote.size() == tamanoLote) {
+                    destino.insertMany(lote, new InsertManyOptions().ordered(false));
+                    copiados += lote.size();
+                    lote.clear();
+                }
+            }
+        }
+        if (!lote.isEmpty()) {
+            destino.insertMany(lote, new InsertManyOptions().ordered(false));
+            copiados += lote.size();
+        }
+
+        origen.renameCollection(new MongoNamespace(db.getName(), legado));
+        destino.renameCollection(new MongoNamespace(db.getName(), coleccion));
+        logger.info("Coleccion " + coleccion + " convertida: " + copiados + " documentos, original en " + legado);
+    }
+
+}
@@ -0,0 +1,32 @@
+package iser.apiOrion.config;
+
+import iser.apiOrion.vivo.ManejadorVivoWebSocket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Registra el canal en vivo por WebSocket
+ */
+@Configuration
+@Profile("!reactivo")
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    @Autowired
+    private ManejadorVivoWebSocket manejadorVivoWebSocket;
+
+    @Value("${edu.cors.allowed-origins}")
+    private String[] origenesPermitidos;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(manejadorVivoWebSocket, "/api/v1/vivo/ws")
+                .setAllowedOrigins(origenesPermitidos);
+    }
+
+}
@@ -0,0 +1,17 @@
+package iser.apiOrion.constant;
+
+import org.springframework.http.MediaType;
+
+public class mediaTypeConstant {
+
+    /**
+     * JSON binario CBOR, lo convierte MappingJackson2CborHttpMessageConverter
+     */
+    public static final String APPLICATION_CBOR_VALUE = MediaType.APPLICATION_CBOR_VALUE;
+
+    /**
+     * JSON binario Smile, lo convierte MappingJackson2SmileHttpMessageConverter
+     */
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+}
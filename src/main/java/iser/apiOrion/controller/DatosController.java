@@ -1,7 +1,17 @@
 package iser.apiOrion.controller;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import iser.apiOrion.DTO.DatosDTO;
 import iser.apiOrion.DTO.DatosGraficaDTO;
+import iser.apiOrion.DTO.ResultadoLoteDTO;
+import iser.apiOrion.DTO.SerieSensorDTO;
+import iser.apiOrion.almacen.PoliticaFechas;
+import iser.apiOrion.ingesta.LectorLote;
 import iser.apiOrion.service.DatosService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -9,24 +19,54 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+
+import static iser.apiOrion.constant.mediaTypeConstant.APPLICATION_CBOR_VALUE;
+import static iser.apiOrion.constant.mediaTypeConstant.APPLICATION_SMILE_VALUE;
+import static iser.apiOrion.constant.messageConstant.buildMessage;
 
 @RestController
+@Profile("!reactivo")
 @RequestMapping("/api/v1/datos")   // ← Con la barra al inicio
 public class DatosController {
 
     @Autowired
     private DatosService datosService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Cantidad maxima de datos aceptados en un lote, la lectura del cuerpo se corta al superarla
+     */
+    @Value("${datos.lote.tamano-maximo:5000}")
+    private int tamanoMaximoLote;
+
+    private static final JsonFactory CBOR = new CBORFactory();
+
+    private static final JsonFactory SMILE = new SmileFactory();
+
     @Operation(
       summary     = "Rangos de fechas por sensor",
-      description = "Obtiene los datos de un sensor en un rango de fechas determinado"
+      description = "Obtiene los datos de un sensor en un rango de fechas determinado, en un solo arreglo. " +
+                    "Con limite o cursor devuelve una pagina (PaginaDatosDTO) de 'limite' datos; el campo 'siguiente' " +
+                    "de la respuesta se envia como 'cursor' para pedir la pagina siguiente. " +
+                    "Con maxPoints la serie se reduce con LTTB conservando su forma. " +
+                    "Con interval (minuto, hora, dia) y agg (min,max,avg,count,sum) devuelve un punto agregado por intervalo."
     )
     @ApiResponses({
       @ApiResponse(
@@ -50,23 +90,102 @@ public class DatosController {
     })
     @GetMapping(
       value    = "/rangoFechasporSensor",
-      produces = "application/json"
+      produces = { "application/json", APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE }
     )
     public ResponseEntity<?> rangoFechasPorSensor(
       @RequestParam("fechaInicial") String fechaInicial,
       @RequestParam("fechaFinal")   String fechafinal,
-      @RequestParam("idSensor")     String idSensor
+      @RequestParam("idSensor")     String idSensor,
+      @RequestParam(value = "maxPoints", required = false) Integer maxPoints,
+      @RequestParam(value = "interval",  required = false) String interval,
+      @RequestParam(value = "agg",       required = false) String agg,
+      @RequestParam(value = "limite",    required = false) Integer limite,
+      @RequestParam(value = "cursor",    required = false) String cursor
     ) throws ParseException {
         SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd");
         Date inicio = fmt.parse(fechaInicial);
         Date fin    = fmt.parse(fechafinal);
-        return datosService.rangofecha(inicio, fin, idSensor);
+        if (interval != null) {
+            return datosService.rangofechaAgregado(inicio, fin, idSensor, interval, agg);
+        }
+        if (maxPoints == null && (limite != null || cursor != null)) {
+            return datosService.rangofechaPagina(inicio, fin, idSensor, limite, cursor);
+        }
+        return datosService.rangofecha(inicio, fin, idSensor, maxPoints);
+    }
+
+    @Operation(
+      summary     = "Rangos de fechas de varios sensores",
+      description = "Obtiene en una sola peticion los datos de varios sensores (idSensores separados por coma) " +
+                    "o de todos los sensores de una estacion (idEstacion), agrupados por sensor. " +
+                    "Con maxPoints cada serie se reduce con LTTB."
+    )
+    @ApiResponses({
+      @ApiResponse(
+        responseCode = "200",
+        description  = "Operación exitosa",
+        content = @Content(
+          mediaType = "application/json",
+          array     = @ArraySchema(schema = @Schema(implementation = SerieSensorDTO.class))
+        )
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description  = "Petición inválida",
+        content      = @Content(
+          mediaType = "application/json",
+          examples    = @io.swagger.v3.oas.annotations.media.ExampleObject(
+            value = "{\"message\":\"petición fallida\"}"
+          )
+        )
+      )
+    })
+    @GetMapping(
+      value    = "/rangoFechasporSensores",
+      produces = { "application/json", APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE }
+    )
+    public ResponseEntity<?> rangoFechasPorSensores(
+      @RequestParam("fechaInicial") String fechaInicial,
+      @RequestParam("fechaFinal")   String fechafinal,
+      @RequestParam(value = "idSensores", required = false) List<String> idSensores,
+      @RequestParam(value = "idEstacion", required = false) String idEstacion,
+      @RequestParam(value = "maxPoints",  required = false) Integer maxPoints
+    ) throws ParseException {
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd");
+        Date inicio = fmt.parse(fechaInicial);
+        Date fin    = fmt.parse(fechafinal);
+        return datosService.rangofechaSensores(inicio, fin, idSensores, idEstacion, maxPoints);
+    }
+
+    @Operation(
+      summary     = "Rangos de fechas por sensor en streaming",
+      description = "Igual que rangoFechasporSensor, pero cada dato se escribe en la respuesta mientras se lee " +
+                    "de la base de datos. formato=ndjson (por defecto) envia un objeto por linea, formato=json " +
+                    "un arreglo enviado por partes y formato=columnas la serie compacta {\"t\":[epochMillis...],\"v\":[valor...]}, " +
+                    "que admite maxPoints para reducirla con LTTB."
+    )
+    @GetMapping(
+      value    = "/rangoFechasporSensor/stream",
+      produces = { "application/x-ndjson", "application/json" }
+    )
+    public ResponseEntity<StreamingResponseBody> rangoFechasPorSensorStream(
+      @RequestParam("fechaInicial") String fechaInicial,
+      @RequestParam("fechaFinal")   String fechafinal,
+      @RequestParam("idSensor")     String idSensor,
+      @RequestParam(value = "formato", defaultValue = "ndjson") String formato,
+      @RequestParam(value = "maxPoints", required = false) Integer maxPoints
+    ) throws ParseException {
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd");
+        Date inicio = fmt.parse(fechaInicial);
+        Date fin    = fmt.parse(fechafinal);
+        return datosService.rangofechaStream(inicio, fin, idSensor, formato, maxPoints);
     }
 
     @Operation(
       summary     = "Insertar datos de un sensor",
       description = "Inserta los datos de un sensor en la base de datos. " +
-                    "Este endpoint debe consumirlo el Arduino."
+                    "Este endpoint debe consumirlo el Arduino. Con fecha el dato conserva la hora de la lectura; " +
+                    "la cabecera X-Fecha-Dispositivo (hora del dispositivo al enviar, en ms) corrige su reloj."
     )
     @ApiResponses({
       @ApiResponse(
@@ -90,10 +209,13 @@ public class DatosController {
     })
     @PostMapping(
       value    = "/insertar",
-      consumes = "application/json",
-      produces = "application/json"
+      consumes = { "application/json", APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE },
+      produces = { "application/json", APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE }
     )
-    public ResponseEntity<?> insertar(@RequestBody DatosDTO datosDTO) {
+    public ResponseEntity<?> insertar(
+      @RequestBody DatosDTO datosDTO,
+      @RequestHeader(value = PoliticaFechas.CABECERA_RELOJ, required = false) Long relojDispositivo
+    ) {
         // Log para debug
         Date ahora = new Date();
         System.out.printf(
@@ -102,10 +224,117 @@ public class DatosController {
           datosDTO.getValor(),
           ahora
         );
-        return datosService.insertar(
-          datosDTO.getIdSensor(),
-          datosDTO.getValor(),
-          ahora
-        );
+        return datosService.insertar(datosDTO, ahora, relojDispositivo);
+    }
+
+    @Operation(
+      summary     = "Insertar un lote de datos de sensores",
+      description = "Inserta varios datos de sensores con una sola escritura masiva. " +
+                    "Acepta un arreglo JSON o NDJSON (un dato por linea) y devuelve el resultado de cada dato."
+    )
+    @ApiResponses({
+      @ApiResponse(
+        responseCode = "200",
+        description  = "Lote procesado",
+        content      = @Content(
+          mediaType = "application/json",
+          schema    = @Schema(implementation = ResultadoLoteDTO.class)
+        )
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description  = "Lote vacio o demasiado grande",
+        content      = @Content(
+          mediaType = "application/json",
+          examples = @io.swagger.v3.oas.annotations.media.ExampleObject(
+            value = "{\"message\":\"petición fallida\"}"
+          )
+        )
+      )
+    })
+    @PostMapping(
+      value    = "/insertarLote",
+      consumes = { "application/json", APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE },
+      produces = { "application/json", APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE }
+    )
+    public ResponseEntity<?> insertarLote(
+      @io.swagger.v3.oas.annotations.parameters.RequestBody(
+        content = @Content(array = @ArraySchema(schema = @Schema(implementation = DatosDTO.class)))
+      )
+      HttpServletRequest request,
+      @RequestHeader(value = PoliticaFechas.CABECERA_RELOJ, required = false) Long relojDispositivo
+    ) throws IOException {
+        MediaType tipo = MediaType.parseMediaType(request.getContentType());
+        JsonFactory formato = tipo.isCompatibleWith(MediaType.APPLICATION_CBOR) ? CBOR
+                : tipo.isCompatibleWith(MediaType.parseMediaType(APPLICATION_SMILE_VALUE)) ? SMILE
+                : objectMapper.getFactory();
+        List<DatosDTO> lote;
+        try (JsonParser parser = formato.createParser(request.getInputStream())) {
+            lote = LectorLote.leerArreglo(objectMapper.readerFor(DatosDTO.class), parser, tamanoMaximoLote);
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            return ResponseEntity.badRequest().body(buildMessage(e.getMessage()));
+        }
+        return datosService.insertarLote(lote, new Date(), relojDispositivo);
+    }
+
+    @Operation(
+      summary     = "Insertar un lote de datos de sensores en NDJSON",
+      description = "Igual que el lote JSON, pero cada linea del cuerpo es un dato. " +
+                    "Las lineas mal formadas se rechazan sin afectar al resto del lote."
+    )
+    @PostMapping(
+      value    = "/insertarLote",
+      consumes = "application/x-ndjson",
+      produces = { "application/json", APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE }
+    )
+    public ResponseEntity<?> insertarLoteNdjson(
+      HttpServletRequest request,
+      @RequestHeader(value = PoliticaFechas.CABECERA_RELOJ, required = false) Long relojDispositivo
+    ) throws IOException {
+        List<DatosDTO> lote;
+        try (BufferedReader reader = request.getReader()) {
+            lote = LectorLote.leerLineas(objectMapper.readerFor(DatosDTO.class), reader, tamanoMaximoLote);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(buildMessage(e.getMessage()));
+        }
+        return datosService.insertarLote(lote, new Date(), relojDispositivo);
+    }
+
+    @Operation(
+      summary     = "Insertar un lote binario de lecturas",
+      description = "Recibe lecturas protobuf delimitadas por longitud (esquema en proto/lecturas.proto): " +
+                    "indice del sensor, fecha del dispositivo en milisegundos y valor float. " +
+                    "Pensado para microcontroladores; devuelve el resultado de cada lectura."
+    )
+    @ApiResponses({
+      @ApiResponse(
+        responseCode = "200",
+        description  = "Lote procesado",
+        content      = @Content(
+          mediaType = "application/json",
+          schema    = @Schema(implementation = ResultadoLoteDTO.class)
+        )
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description  = "Lote vacio, mal formado o demasiado grande",
+        content      = @Content(
+          mediaType = "application/json",
+          examples = @io.swagger.v3.oas.annotations.media.ExampleObject(
+            value = "{\"message\":\"petición fallida\"}"
+          )
+        )
+      )
+    })
+    @PostMapping(
+      value    = "/insertarBinario",
+      consumes = "application/x-protobuf",
+      produces = { "application/json", APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE }
+    )
+    public ResponseEntity<?> insertarBinario(
+      HttpServletRequest request,
+      @RequestHeader(value = PoliticaFechas.CABECERA_RELOJ, required = false) Long relojDispositivo
+    ) throws IOException {
+        return datosService.insertarBinario(request.getInputStream(), new Date(), relojDispositivo);
     }
-}
\ No newline at end of file
+}
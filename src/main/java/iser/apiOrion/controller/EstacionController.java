@@ -11,10 +11,12 @@ import iser.apiOrion.collection.Estacion;
 import iser.apiOrion.service.EstacionService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
+@Profile("!reactivo")
 @RequestMapping("/api/v1/estacion")
 @CrossOrigin(origins = "*")
 public class EstacionController {
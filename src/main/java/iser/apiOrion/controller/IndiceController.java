@@ -0,0 +1,41 @@
+package iser.apiOrion.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import iser.apiOrion.service.IndiceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("api/v1/indices")
+public class IndiceController {
+
+    /**
+     * Servicio de indices
+     */
+    @Autowired
+    private IndiceService indiceService;
+
+    @Operation(summary = "Estadisticas de uso de los indices",
+            description = "Devuelve por coleccion los indices existentes, sus usos desde el ultimo reinicio de MongoDB y el estado de la verificacion al arrancar.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "operacion exitosa"),
+            @ApiResponse(responseCode = "400", description = "peticion fallida", content = { @io.swagger.v3.oas.annotations.media.Content (mediaType = "application/json",
+                    examples = @io.swagger.v3.oas.annotations.media.ExampleObject(value = "{\"message\":\"peticion fallida\"}"))}),
+    })
+    @GetMapping("/estadisticas")
+    public ResponseEntity<?> estadisticas(){
+        return indiceService.estadisticas();
+    }
+
+    @Operation(summary = "Verificar indices",
+            description = "Vuelve a verificar los indices declarados y crea los que falten.")
+    @PostMapping("/verificar")
+    public ResponseEntity<?> verificar(){
+        indiceService.verificarIndices();
+        return indiceService.estadisticas();
+    }
+
+}
@@ -2,23 +2,35 @@ package iser.apiOrion.controller;
 
 import iser.apiOrion.DTO.TuyaSensorDataDTO;
 import iser.apiOrion.collection.TuyaSensorData;
+import iser.apiOrion.grafica.SerieColumnas;
 import iser.apiOrion.service.TuyaSensorDataService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static iser.apiOrion.constant.mediaTypeConstant.APPLICATION_CBOR_VALUE;
+import static iser.apiOrion.constant.mediaTypeConstant.APPLICATION_SMILE_VALUE;
+
 /**
  * Controlador REST mejorado para el sensor Tuya
  * 
@@ -35,7 +47,8 @@ import java.util.stream.Collectors;
  * ✅ Estadísticas y análisis de tendencias
  */
 @RestController
-@RequestMapping(value = "/api/v1/tuya", produces = MediaType.APPLICATION_JSON_VALUE)
+@Profile("!reactivo")
+@RequestMapping(value = "/api/v1/tuya", produces = { MediaType.APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
 @Tag(name = "Tuya Sensor Híbrido", description = "API reducida para solo temperatura")
 @CrossOrigin(origins = "http://localhost:5173", allowCredentials = "true")
 public class TuyaSensorDataController {
@@ -43,6 +56,9 @@ public class TuyaSensorDataController {
     @Autowired
     private TuyaSensorDataService service;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Operation(summary = "Captura híbrida y devuelve sólo temperatura")
     @ApiResponses({
       @ApiResponse(responseCode = "200", description = "Temperatura obtenida"),
@@ -516,18 +532,13 @@ public class TuyaSensorDataController {
         try {
             System.out.println("📊 [Controller] Solicitando últimos registros con análisis de tendencias...");
             
-            List<TuyaSensorData> allData = service.findAll();
-            
-            // OBTENER ÚLTIMOS 10 REGISTROS
-            List<TuyaSensorData> latestData = allData.stream()
-                    .sorted((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()))
-                    .limit(10)
-                    .collect(Collectors.toList());
+            // OBTENER ÚLTIMOS 10 REGISTROS (consulta ordenada con limite, sin leer la coleccion completa)
+            List<TuyaSensorData> latestData = service.findUltimos();
             
             Map<String, Object> response = new HashMap<>();
             response.put("timestamp", LocalDateTime.now().toString());
             response.put("latest_records", latestData);
-            response.put("total_records_count", allData.size());
+            response.put("total_records_count", service.count());
             response.put("showing_latest", latestData.size());
             
             if (!latestData.isEmpty()) {
@@ -555,6 +566,71 @@ public class TuyaSensorDataController {
         }
     }
 
+    /**
+     * HISTORIAL por rango de fechas, en objetos o en columnas
+     */
+    @Operation(
+        summary = "Historial de registros en un rango de fechas",
+        description = "Devuelve los registros entre desde y hasta (ISO, por defecto las ultimas 24 horas) en orden cronologico. " +
+                      "Con formato=columnas devuelve solo el campo indicado como {\"t\":[epochMillis...],\"v\":[valor...]}."
+    )
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Historial obtenido"),
+        @ApiResponse(responseCode = "400", description = "Campo no soportado")
+    })
+    @GetMapping(value = "/historial", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getHistorial(
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(value = "campo", defaultValue = "temperatura") String campo,
+            @RequestParam(value = "formato", defaultValue = "objetos") String formato) {
+        LocalDateTime fin = hasta != null ? hasta : LocalDateTime.now();
+        LocalDateTime inicio = desde != null ? desde : fin.minusHours(24);
+        System.out.println("📈 [Controller] Historial " + inicio + " - " + fin + " (" + formato + ")");
+
+        if (!"columnas".equalsIgnoreCase(formato)) {
+            StreamingResponseBody cuerpo = salida -> {
+                try (JsonGenerator generador = objectMapper.getFactory().createGenerator(salida)) {
+                    generador.writeStartArray();
+                    service.recorrerHistorial(inicio, fin, registro -> {
+                        try {
+                            generador.writeObject(registro);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    generador.writeEndArray();
+                }
+            };
+            return ResponseEntity.ok(cuerpo);
+        }
+
+        Function<TuyaSensorData, Double> lector = switch (campo.toLowerCase()) {
+            case "temperatura" -> TuyaSensorData::getTemperatura;
+            case "ph" -> TuyaSensorData::getPh;
+            case "orp" -> TuyaSensorData::getOrp;
+            case "ec" -> TuyaSensorData::getEc;
+            case "tds" -> TuyaSensorData::getTds;
+            case "salinidad" -> TuyaSensorData::getSalinidad;
+            default -> null;
+        };
+        if (lector == null) {
+            StreamingResponseBody error = salida -> objectMapper.writeValue(salida,
+                    createErrorResponse("Campo no soportado", campo, "INVALID_FIELD"));
+            return ResponseEntity.badRequest().body(error);
+        }
+        ZoneId zona = ZoneId.systemDefault();
+        StreamingResponseBody cuerpo = salida -> {
+            SerieColumnas serie = new SerieColumnas();
+            service.recorrerHistorial(inicio, fin, registro -> serie.agregar(
+                    registro.getTimestamp().atZone(zona).toInstant().toEpochMilli(), lector.apply(registro)));
+            try (JsonGenerator generador = objectMapper.getFactory().createGenerator(salida)) {
+                serie.escribir(generador);
+            }
+        };
+        return ResponseEntity.ok(cuerpo);
+    }
+
     /**
      * OBTENER POR ID con información detallada
      */
@@ -613,7 +689,7 @@ public class TuyaSensorDataController {
         @ApiResponse(responseCode = "200", description = "Datos insertados exitosamente"),
         @ApiResponse(responseCode = "400", description = "Error en la inserción")
     })
-    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PostMapping(consumes = { MediaType.APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
     public ResponseEntity<Map<String, Object>> save(@RequestBody TuyaSensorDataDTO dto) {
         try {
             System.out.println("💾 [Controller] Insertando datos manuales...");
@@ -653,7 +729,7 @@ public class TuyaSensorDataController {
         @ApiResponse(responseCode = "200", description = "Registro actualizado exitosamente"),
         @ApiResponse(responseCode = "404", description = "Registro no encontrado")
     })
-    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PutMapping(value = "/{id}", consumes = { MediaType.APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
     public ResponseEntity<Map<String, Object>> update(@PathVariable String id, @RequestBody TuyaSensorData newData) {
         try {
             System.out.println("🔄 [Controller] Actualizando registro: " + id);
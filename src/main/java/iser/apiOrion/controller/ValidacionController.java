@@ -11,10 +11,12 @@ import iser.apiOrion.service.ValidacionService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
+@Profile("!reactivo")
 @RequestMapping("api/v1/validacion")
 public class ValidacionController {
 
@@ -0,0 +1,66 @@
+package iser.apiOrion.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import iser.apiOrion.vivo.CentroDatosVivo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@Profile("!reactivo")
+@RequestMapping("/api/v1/vivo")
+public class VivoController {
+
+    @Autowired
+    private CentroDatosVivo centroDatosVivo;
+
+    /**
+     * Duracion maxima de la conexion SSE; el navegador se reconecta solo al vencer
+     */
+    @Value("${vivo.sse.timeout-ms:1800000}")
+    private long timeoutSse;
+
+    @Operation(
+      summary     = "Datos en vivo por Server-Sent Events",
+      description = "Envia un evento 'dato' con {idSensor, fecha, valor, unidad} por cada dato nuevo de los sensores " +
+                    "indicados (idSensores separados por coma) o de los sensores de una estacion (idEstacion). " +
+                    "El mismo canal esta disponible por WebSocket en /api/v1/vivo/ws con los mismos parametros."
+    )
+    @GetMapping(value = "/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suscribir(
+      @RequestParam(value = "idSensores", required = false) List<String> idSensores,
+      @RequestParam(value = "idEstacion", required = false) String idEstacion
+    ) throws IOException {
+        SseEmitter emitter = new SseEmitter(timeoutSse);
+        CentroDatosVivo.Suscripcion suscripcion = centroDatosVivo.suscribir(idSensores, idEstacion, new CentroDatosVivo.Emisor() {
+            @Override
+            public void enviar(String mensaje) throws IOException {
+                if (mensaje == null) {
+                    emitter.send(SseEmitter.event().comment("latido"));
+                } else {
+                    emitter.send(SseEmitter.event().name("dato").data(mensaje, MediaType.APPLICATION_JSON));
+                }
+            }
+
+            @Override
+            public void cerrar() {
+                emitter.complete();
+            }
+        });
+        emitter.onCompletion(() -> centroDatosVivo.cancelar(suscripcion));
+        emitter.onTimeout(() -> centroDatosVivo.cancelar(suscripcion));
+        emitter.onError(error -> centroDatosVivo.cancelar(suscripcion));
+        emitter.send(SseEmitter.event().name("suscrito").data(suscripcion.getSensores(), MediaType.APPLICATION_JSON));
+        return emitter;
+    }
+
+}
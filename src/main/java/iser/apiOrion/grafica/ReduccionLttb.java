@@ -0,0 +1,184 @@
+package iser.apiOrion.grafica;
+
+import java.util.Arrays;
+
+/**
+ * Reduccion de una serie de tiempo con Largest-Triangle-Three-Buckets en una sola pasada.
+ * <p>
+ *     El rango [inicio, fin] se divide en maxPuntos - 2 buckets de igual duracion. El primer y
+ *     el ultimo punto se conservan siempre y de cada bucket se elige el punto que forma el
+ *     triangulo de mayor area con el punto elegido anterior y el promedio del bucket siguiente.
+ *     Solo se guardan en memoria dos buckets, y si la serie completa cabe en maxPuntos se
+ *     entrega sin reducir. Los puntos deben llegar en orden cronologico.
+ * </p>
+ */
+public class ReduccionLttb {
+
+    /**
+     * Recibe los puntos elegidos en orden cronologico
+     */
+    public interface Salida {
+        void punto(long fecha, double valor);
+    }
+
+    private final Salida salida;
+    private final long inicio;
+    private final int maxPuntos;
+    private final double ancho;
+
+    /**
+     * Puntos recibidos mientras la serie todavia cabe en maxPuntos
+     */
+    private Serie pendientes = new Serie();
+    private boolean reduciendo;
+
+    private boolean hayElegido;
+    private long elegidoFecha;
+    private double elegidoValor;
+
+    private Serie actual = new Serie();
+    private Serie siguiente = new Serie();
+    private long bucketSiguiente = -1;
+
+    /**
+     * @param inicio inicio del rango en milisegundos
+     * @param fin fin del rango en milisegundos
+     * @param maxPuntos cantidad maxima de puntos a entregar, minimo 3
+     * @param salida recibe los puntos elegidos
+     */
+    public ReduccionLttb(long inicio, long fin, int maxPuntos, Salida salida) {
+        if (maxPuntos < 3) {
+            throw new IllegalArgumentException("maxPoints debe ser mayor o igual a 3");
+        }
+        this.salida = salida;
+        this.inicio = inicio;
+        this.maxPuntos = maxPuntos;
+        this.ancho = Math.max(1.0, (double) (fin - inicio) / (maxPuntos - 2));
+    }
+
+    /**
+     * Metodo que permite agregar el siguiente punto de la serie
+     * @param fecha fecha en milisegundos
+     * @param valor valor del punto
+     */
+    public void agregar(long fecha, double valor) {
+        if (!reduciendo) {
+            if (pendientes.tamano < maxPuntos) {
+                pendientes.agregar(fecha, valor);
+                return;
+            }
+            reduciendo = true;
+            for (int i = 0; i < pendientes.tamano; i++) {
+                reducir(pendientes.fechas[i], pendientes.valores[i]);
+            }
+            pendientes = null;
+        }
+        reducir(fecha, valor);
+    }
+
+    /**
+     * Metodo que permite cerrar la serie y entregar los puntos pendientes
+     */
+    public void finalizar() {
+        if (!reduciendo) {
+            for (int i = 0; i < pendientes.tamano; i++) {
+                salida.punto(pendientes.fechas[i], pendientes.valores[i]);
+            }
+            pendientes.tamano = 0;
+            return;
+        }
+        if (siguiente.tamano == 0) {
+            return;
+        }
+        // el ultimo punto se entrega siempre y sirve de referencia para los ultimos buckets
+        siguiente.tamano--;
+        long ultimaFecha = siguiente.fechas[siguiente.tamano];
+        double ultimoValor = siguiente.valores[siguiente.tamano];
+        if (siguiente.tamano == 0) {
+            elegir(actual, ultimaFecha, ultimoValor);
+        } else {
+            elegir(actual, siguiente.promedioFecha(), siguiente.promedioValor());
+            elegir(siguiente, ultimaFecha, ultimoValor);
+        }
+        salida.punto(ultimaFecha, ultimoValor);
+    }
+
+    private void reducir(long fecha, double valor) {
+        if (!hayElegido) {
+            hayElegido = true;
+            elegidoFecha = fecha;
+            elegidoValor = valor;
+            salida.punto(fecha, valor);
+            return;
+        }
+        long bucket = Math.min(maxPuntos - 3, Math.max(0, (long) ((fecha - inicio) / ancho)));
+        if (bucketSiguiente != -1 && bucket != bucketSiguiente) {
+            elegir(actual, siguiente.promedioFecha(), siguiente.promedioValor());
+            Serie vacia = actual;
+            actual = siguiente;
+            siguiente = vacia;
+            siguiente.tamano = 0;
+        }
+        bucketSiguiente = bucket;
+        siguiente.agregar(fecha, valor);
+    }
+
+    /**
+     * Elige el punto del bucket con el triangulo de mayor area y lo entrega
+     */
+    private void elegir(Serie bucket, double siguienteFecha, double siguienteValor) {
+        if (bucket.tamano == 0) {
+            return;
+        }
+        int mejor = 0;
+        double mayorArea = -1;
+        for (int i = 0; i < bucket.tamano; i++) {
+            double area = Math.abs((elegidoFecha - siguienteFecha) * (bucket.valores[i] - elegidoValor)
+                    - (elegidoFecha - bucket.fechas[i]) * (siguienteValor - elegidoValor));
+            if (area > mayorArea) {
+                mayorArea = area;
+                mejor = i;
+            }
+        }
+        elegidoFecha = bucket.fechas[mejor];
+        elegidoValor = bucket.valores[mejor];
+        salida.punto(elegidoFecha, elegidoValor);
+        bucket.tamano = 0;
+    }
+
+    /**
+     * Puntos de un bucket en arreglos primitivos reutilizables
+     */
+    private static class Serie {
+        private long[] fechas = new long[64];
+        private double[] valores = new double[64];
+        private int tamano;
+
+        private void agregar(long fecha, double valor) {
+            if (tamano == fechas.length) {
+                fechas = Arrays.copyOf(fechas, tamano * 2);
+                valores = Arrays.copyOf(valores, tamano * 2);
+            }
+            fechas[tamano] = fecha;
+            valores[tamano] = valor;
+            tamano++;
+        }
+
+        private double promedioFecha() {
+            double suma = 0;
+            for (int i = 0; i < tamano; i++) {
+                suma += fechas[i];
+            }
+            return suma / tamano;
+        }
+
+        private double promedioValor() {
+            double suma = 0;
+            for (int i = 0; i < tamano; i++) {
+                suma += valores[i];
+            }
+            return suma / tamano;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package iser.apiOrion.grafica;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Serie de tiempo en columnas para responder {"t":[epochMillis...],"v":[valor...]}.
+ * <p>
+ *     Las fechas y los valores se guardan en arreglos primitivos que crecen al doble, sin un
+ *     objeto por punto, y se escriben con un JsonGenerator. Los valores nulos se guardan como
+ *     NaN y se escriben como null.
+ * </p>
+ */
+public class SerieColumnas implements ReduccionLttb.Salida {
+
+    private long[] fechas = new long[256];
+    private double[] valores = new double[256];
+    private int tamano;
+
+    /**
+     * Metodo que permite agregar un punto al final de la serie
+     * @param fecha fecha en milisegundos
+     * @param valor valor del punto, o null
+     */
+    public void agregar(long fecha, Double valor) {
+        punto(fecha, valor != null ? valor : Double.NaN);
+    }
+
+    @Override
+    public void punto(long fecha, double valor) {
+        if (tamano == fechas.length) {
+            fechas = Arrays.copyOf(fechas, tamano * 2);
+            valores = Arrays.copyOf(valores, tamano * 2);
+        }
+        fechas[tamano] = fecha;
+        valores[tamano] = valor;
+        tamano++;
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    /**
+     * Metodo que permite escribir la serie como un objeto {"t":[...],"v":[...]}
+     * @param generador generador donde se escribe
+     * @throws IOException si falla la escritura
+     */
+    public void escribir(JsonGenerator generador) throws IOException {
+        generador.writeStartObject();
+        generador.writeFieldName("t");
+        generador.writeArray(fechas, 0, tamano);
+        generador.writeFieldName("v");
+        generador.writeStartArray();
+        for (int i = 0; i < tamano; i++) {
+            if (Double.isNaN(valores[i])) {
+                generador.writeNull();
+            } else {
+                generador.writeNumber(valores[i]);
+            }
+        }
+        generador.writeEndArray();
+        generador.writeEndObject();
+    }
+
+}
@@ -0,0 +1,220 @@
+package iser.apiOrion.ingesta;
+
+import iser.apiOrion.DTO.DatosDTO;
+import iser.apiOrion.DTO.ResultadoItemDTO;
+import iser.apiOrion.almacen.AlmacenDatos;
+import iser.apiOrion.almacen.ColaEscrituraDatos;
+import iser.apiOrion.almacen.MarcasSecuencia;
+import iser.apiOrion.almacen.PoliticaFechas;
+import iser.apiOrion.almacen.ValorDatos;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.vivo.CentroDatosVivo;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static iser.apiOrion.constant.messageConstant.buildMessage;
+
+/**
+ * Admision y escritura de un dato recibido por /insertar, comun a la pila servlet
+ * (DatosServiceImpl) y a la reactiva (DatosReactivoController): validacion, registro de
+ * sensores, politica de fechas, limite por sensor, reserva de la secuencia y escritura por
+ * AlmacenDatos o por la cola diferida, con la publicacion en vivo de lo escrito.
+ * <p>
+ *     Puede bloquear (escritura directa y primera lectura de la marca de secuencia de un
+ *     sensor), por lo que la pila reactiva la llama fuera del event loop. Los errores de
+ *     escritura se responden con 500 y liberan la secuencia para que el reintento se acepte.
+ * </p>
+ */
+@Component
+public class AdmisionDatos {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmisionDatos.class);
+
+    /**
+     * Almacen de datos (documento por dato o bucket por hora segun datos.almacenamiento.modo)
+     */
+    @Autowired
+    AlmacenDatos almacenDatos;
+
+    /**
+     * Cola de escritura diferida
+     */
+    @Autowired
+    ColaEscrituraDatos colaEscrituraDatos;
+
+    /**
+     * Marcas de secuencia por sensor para descartar los reintentos
+     */
+    @Autowired
+    MarcasSecuencia marcasSecuencia;
+
+    /**
+     * Registro en memoria de sensores, para validar cada dato sin consultar la base de datos
+     */
+    @Autowired
+    RegistroSensores registroSensores;
+
+    /**
+     * Politica de fechas del dispositivo: correccion del reloj y limites de plausibilidad
+     */
+    @Autowired
+    PoliticaFechas politicaFechas;
+
+    /**
+     * Limite de tasa por sensor de la ingesta
+     */
+    @Autowired
+    LimitadorIngesta limitadorIngesta;
+
+    /**
+     * Canal en vivo, recibe los datos escritos
+     */
+    @Autowired
+    CentroDatosVivo centroDatosVivo;
+
+    /**
+     * Modo de escritura: directo (escritura sincrona) o diferido (cola write-behind)
+     */
+    @Value("${datos.escritura.modo:directo}")
+    private String modoEscritura;
+
+    /**
+     * Metodo que permite admitir y escribir un dato. En modo diferido el dato se encola y
+     * se responde 202 si fue aceptado o 429 si la cola esta llena. Si el dato trae
+     * secuencia y ya se recibio, se responde 200 con estado duplicado sin escribirlo.
+     * @param datosDTO dato recibido del sensor
+     * @param fecha fecha de recepcion, usada si el dato no trae fecha
+     * @param relojDispositivo hora del dispositivo al enviar, para corregir su reloj (opcional)
+     * @return dato insertado, o el rechazo con su estado
+     */
+    public ResponseEntity<?> insertar(DatosDTO datosDTO, Date fecha, Long relojDispositivo) {
+        String error = validar(datosDTO);
+        if (error == null) {
+            error = registroSensores.validar(datosDTO.getIdSensor());
+        }
+        Date fechaDato = null;
+        if (error == null) {
+            fechaDato = politicaFechas.resolver(datosDTO.getFecha(), politicaFechas.desfase(relojDispositivo, fecha), fecha);
+            if (fechaDato == null) {
+                error = "fecha fuera de rango: " + datosDTO.getFecha().getTime();
+            }
+        }
+        if (error != null) {
+            return ResponseEntity.badRequest().body(buildMessage(error));
+        }
+        long espera = limitadorIngesta.admitirSensor(datosDTO.getIdSensor());
+        if (espera > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(espera))
+                    .body(buildMessage("Limite de peticiones del sensor excedido, intente de nuevo"));
+        }
+        Datos datos = construir(datosDTO, fechaDato);
+
+        Long secuencia = datosDTO.getSecuencia();
+        try {
+            if (secuencia != null && !marcasSecuencia.reservar(datos.getIdSensor(), secuencia)) {
+                return ResponseEntity.ok(new ResultadoItemDTO(0, "duplicado", null, "secuencia ya recibida: " + secuencia));
+            }
+        } catch (RuntimeException e) {
+            logger.error("ERROR_MESSAGE: no se pudo leer la marca de secuencia de " + datos.getIdSensor() + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(buildMessage("Error al leer la secuencia, intente de nuevo"));
+        }
+        ResponseEntity<?> respuesta = null;
+        try {
+            respuesta = escribir(datos, secuencia);
+            return respuesta;
+        } catch (RuntimeException e) {
+            logger.error("ERROR_MESSAGE: no se pudo escribir el dato de " + datos.getIdSensor() + ": " + e.getMessage());
+            respuesta = ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(buildMessage("Error al escribir el dato"));
+            return respuesta;
+        } finally {
+            // si no se escribio, el reintento del dispositivo debe aceptarse
+            if (secuencia != null && !respuesta.getStatusCode().is2xxSuccessful()) {
+                marcasSecuencia.liberar(datos.getIdSensor(), secuencia);
+            }
+        }
+    }
+
+    /**
+     * Metodo que permite escribir un dato segun el modo de escritura. La secuencia reservada se
+     * confirma al escribirse; en modo diferido la confirma o libera la cola.
+     * @param datos dato a escribir
+     * @param secuencia secuencia reservada, o null
+     * @return dato insertado, 202 si se encolo o el error de la escritura
+     */
+    private ResponseEntity<?> escribir(Datos datos, Long secuencia) {
+        if ("diferido".equals(modoEscritura)) {
+            datos.setId(new ObjectId().toHexString());
+            if (!colaEscrituraDatos.ofrecer(datos, secuencia)) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(buildMessage("Cola de escritura llena, intente de nuevo"));
+            }
+            return ResponseEntity.accepted().body(new ResultadoItemDTO(0, "aceptado", datos.getId(), null));
+        }
+
+        List<Datos> lote = List.of(datos);
+        Map<Integer, String> errores = almacenDatos.escribirLote(lote);
+        if (!errores.isEmpty()) {
+            logger.error("ERROR_MESSAGE: no se pudo escribir el dato de " + datos.getIdSensor() + ": " + errores.get(0));
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(buildMessage("Error al escribir el dato"));
+        }
+        centroDatosVivo.publicar(lote, errores);
+        if (secuencia != null) {
+            marcasSecuencia.confirmar(datos.getIdSensor(), secuencia);
+        }
+        return ResponseEntity.ok(datos);
+    }
+
+    /**
+     * Metodo que permite validar un dato recibido
+     * @param datosDTO dato a validar
+     * @return mensaje de error o null si el dato es valido
+     */
+    public static String validar(DatosDTO datosDTO) {
+        if (datosDTO == null) {
+            return "Dato mal formado";
+        }
+        if (datosDTO.getIdSensor() == null || datosDTO.getIdSensor().isBlank()) {
+            return "idSensor es obligatorio";
+        }
+        if (datosDTO.getValor() == null || datosDTO.getValor().isBlank()) {
+            return "valor es obligatorio";
+        }
+        if (ValorDatos.parsear(datosDTO.getValor()) == null) {
+            return "valor no es numerico: " + datosDTO.getValor();
+        }
+        if (datosDTO.getSecuencia() != null && datosDTO.getSecuencia() < 0) {
+            return "secuencia no puede ser negativa";
+        }
+        return null;
+    }
+
+    /**
+     * Metodo que permite construir el documento a guardar a partir de un dato valido
+     * @param datosDTO dato recibido
+     * @param fecha fecha del dato
+     * @return documento con el valor numerico y la version de esquema actual
+     */
+    public static Datos construir(DatosDTO datosDTO, Date fecha) {
+        Datos datos = new Datos();
+        datos.setIdSensor(datosDTO.getIdSensor());
+        datos.setValor(ValorDatos.parsear(datosDTO.getValor()));
+        datos.setUnidad(datosDTO.getUnidad());
+        datos.setFecha(fecha);
+        datos.setVersionEsquema(Datos.VERSION_ESQUEMA);
+        return datos;
+    }
+
+}
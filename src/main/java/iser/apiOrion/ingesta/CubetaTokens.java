@@ -0,0 +1,75 @@
+package iser.apiOrion.ingesta;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cubeta de tokens sin bloqueos para limitar la tasa de una fuente.
+ * <p>
+ *     Se implementa como GCRA (generic cell rate algorithm), equivalente a una cubeta de
+ *     capacidad rafaga que se recarga a tasa tokens por segundo: todo el estado es la hora
+ *     teorica de llegada del siguiente token, guardada en un AtomicLong y actualizada con un
+ *     compareAndSet, sin locks ni hilos de recarga.
+ * </p>
+ */
+public class CubetaTokens {
+
+    /**
+     * Nanosegundos que tarda en recargarse un token
+     */
+    private final long intervalo;
+
+    /**
+     * Adelanto maximo permitido sobre la hora teorica (rafaga - 1 tokens)
+     */
+    private final long tolerancia;
+
+    private final AtomicLong horaTeorica;
+
+    private volatile long ultimoUso;
+
+    /**
+     * @param tasa tokens recargados por segundo
+     * @param rafaga tokens disponibles de una vez
+     */
+    public CubetaTokens(double tasa, int rafaga) {
+        if (tasa <= 0 || rafaga < 1) {
+            throw new IllegalArgumentException("tasa debe ser positiva y rafaga mayor o igual a 1");
+        }
+        this.intervalo = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tasa));
+        this.tolerancia = intervalo * (rafaga - 1);
+        long ahora = System.nanoTime();
+        this.horaTeorica = new AtomicLong(ahora);
+        this.ultimoUso = ahora;
+    }
+
+    /**
+     * Metodo que permite consumir un token
+     * @return 0 si se consumio, o los nanosegundos que faltan para el siguiente token
+     */
+    public long consumir() {
+        long ahora = System.nanoTime();
+        ultimoUso = ahora;
+        while (true) {
+            long actual = horaTeorica.get();
+            long base = Math.max(actual, ahora);
+            long espera = base - tolerancia - ahora;
+            if (espera > 0) {
+                return espera;
+            }
+            if (horaTeorica.compareAndSet(actual, base + intervalo)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Metodo que permite saber si la cubeta no se usa hace tiempo, para poder descartarla
+     * @param nanos tiempo sin uso
+     * @return true si no se consumio en ese tiempo
+     */
+    public boolean inactiva(long nanos) {
+        return System.nanoTime() - ultimoUso > nanos;
+    }
+
+}
@@ -0,0 +1,302 @@
+package iser.apiOrion.ingesta;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import iser.apiOrion.almacen.ColaEscrituraDatos;
+import iser.apiOrion.almacen.MarcasSecuencia;
+import iser.apiOrion.almacen.PoliticaFechas;
+import iser.apiOrion.almacen.ValorDatos;
+import iser.apiOrion.collection.Datos;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Puente de ingesta MQTT. Se suscribe a los topicos de datos (por defecto agricultor/+/datos,
+ * donde + es el idSensor) y entrega cada lectura a la cola de escritura diferida, que la
+ * escribe en lotes por el mismo almacen que usa DatosServiceImpl.
+ * <p>
+ *     El payload puede ser el valor en texto ("23.5") o un objeto JSON con valor, unidad,
+ *     secuencia y fecha (ms) opcionales, como el DatosDTO de /insertar. El callback corre en
+ *     el hilo del cliente, que tambien atiende el keepalive y las confirmaciones, por lo que
+ *     nunca espera: si la cola esta llena el mensaje se confirma, se descarta y se cuenta en
+ *     mqtt.mensajes.perdidos. Los payload mal formados, los de sensores desconocidos o
+ *     deshabilitados y los de fecha fuera de rango tambien se confirman y se descartan. Solo
+ *     cuando la aplicacion se detiene el mensaje queda sin confirmar, para que el broker lo
+ *     entregue de nuevo en la proxima sesion (con QoS 1 o 2 y sesion persistente).
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "mqtt.habilitado", havingValue = "true")
+public class IngestaMqtt implements MqttCallbackExtended {
+
+    /**
+     * logger :: log for IngestaMqtt
+     */
+    private static final Logger logger = LoggerFactory.getLogger(IngestaMqtt.class);
+
+    /**
+     * Cola de escritura diferida
+     */
+    @Autowired
+    ColaEscrituraDatos colaEscrituraDatos;
+
+    /**
+     * Marcas de secuencia por sensor, para descartar las entregas repetidas de QoS 1
+     */
+    @Autowired
+    MarcasSecuencia marcasSecuencia;
+
+    /**
+     * Registro de sensores, para descartar los topicos de sensores desconocidos o deshabilitados
+     */
+    @Autowired
+    RegistroSensores registroSensores;
+
+    /**
+     * Limites de plausibilidad de la fecha del dispositivo
+     */
+    @Autowired
+    PoliticaFechas politicaFechas;
+
+    /**
+     * Mapper de jackson para los payload JSON
+     */
+    @Autowired
+    ObjectMapper objectMapper;
+
+    /**
+     * Registro de metricas
+     */
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${mqtt.url:tcp://localhost:1883}")
+    private String url;
+
+    @Value("${mqtt.cliente-id:apiOrion-ingesta}")
+    private String clienteId;
+
+    @Value("${mqtt.usuario:}")
+    private String usuario;
+
+    @Value("${mqtt.clave:}")
+    private String clave;
+
+    /**
+     * Filtro de suscripcion; el segmento + indica la posicion del idSensor
+     */
+    @Value("${mqtt.topico:agricultor/+/datos}")
+    private String topico;
+
+    @Value("${mqtt.qos:1}")
+    private int qos;
+
+    /**
+     * Mensajes QoS 1/2 sin confirmar que el broker puede tener en vuelo hacia el cliente
+     */
+    @Value("${mqtt.max-en-vuelo:100}")
+    private int maxEnVuelo;
+
+    private MqttClient cliente;
+
+    private int segmentoSensor;
+
+    private volatile boolean activo;
+
+    private Counter recibidos;
+
+    private Counter descartados;
+
+    private Counter perdidos;
+
+    @PostConstruct
+    void iniciar() throws MqttException {
+        segmentoSensor = Arrays.asList(topico.split("/")).indexOf("+");
+        if (segmentoSensor < 0) {
+            throw new IllegalStateException("mqtt.topico debe tener un segmento + para el idSensor: " + topico);
+        }
+        recibidos = Counter.builder("mqtt.mensajes.recibidos")
+                .description("Mensajes MQTT encolados para escritura")
+                .register(meterRegistry);
+        descartados = Counter.builder("mqtt.mensajes.descartados")
+                .description("Mensajes MQTT descartados por payload mal formado")
+                .register(meterRegistry);
+        perdidos = Counter.builder("mqtt.mensajes.perdidos")
+                .description("Mensajes MQTT descartados por cola de escritura llena")
+                .register(meterRegistry);
+
+        cliente = new MqttClient(url, clienteId, new MemoryPersistence());
+        cliente.setManualAcks(true);
+        cliente.setCallback(this);
+        activo = true;
+
+        // la primera conexion se reintenta en segundo plano para no impedir el arranque sin broker;
+        // despues de conectar, el cliente se reconecta solo
+        Thread hilo = new Thread(this::conectar, "mqtt-conexion");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    private void conectar() {
+        MqttConnectOptions opciones = new MqttConnectOptions();
+        opciones.setAutomaticReconnect(true);
+        opciones.setCleanSession(false);
+        opciones.setMaxInflight(maxEnVuelo);
+        if (!usuario.isBlank()) {
+            opciones.setUserName(usuario);
+            opciones.setPassword(clave.toCharArray());
+        }
+        while (activo && !cliente.isConnected()) {
+            try {
+                cliente.connect(opciones);
+            } catch (MqttException e) {
+                logger.error("ERROR_MESSAGE: no se pudo conectar a " + url + ": " + e.getMessage());
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void connectComplete(boolean reconexion, String servidor) {
+        try {
+            cliente.subscribe(topico, qos);
+            logger.info((reconexion ? "Reconectado" : "Conectado") + " a " + servidor + ", suscrito a " + topico);
+        } catch (MqttException e) {
+            logger.error("ERROR_MESSAGE: no se pudo suscribir a " + topico + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void connectionLost(Throwable causa) {
+        logger.error("ERROR_MESSAGE: conexion MQTT perdida: " + causa.getMessage());
+    }
+
+    /**
+     * Entrega el mensaje a la cola sin esperar y lo confirma. Se ejecuta en el hilo del
+     * cliente, por lo que no debe bloquear.
+     */
+    @Override
+    public void messageArrived(String topic, MqttMessage mensaje) throws Exception {
+        Lectura lectura = decodificar(topic, mensaje.getPayload());
+        if (lectura == null) {
+            descartados.increment();
+            cliente.messageArrivedComplete(mensaje.getId(), mensaje.getQos());
+            return;
+        }
+        Datos datos = lectura.datos();
+        if (lectura.secuencia() != null && !marcasSecuencia.reservar(datos.getIdSensor(), lectura.secuencia())) {
+            cliente.messageArrivedComplete(mensaje.getId(), mensaje.getQos());
+            return;
+        }
+        if (!colaEscrituraDatos.ofrecer(datos, lectura.secuencia())) {
+            if (lectura.secuencia() != null) {
+                marcasSecuencia.liberar(datos.getIdSensor(), lectura.secuencia());
+            }
+            if (!activo || !colaEscrituraDatos.activa()) {
+                // sin confirmar: el broker lo entrega de nuevo en la proxima sesion
+                return;
+            }
+            perdidos.increment();
+        } else {
+            recibidos.increment();
+        }
+        cliente.messageArrivedComplete(mensaje.getId(), mensaje.getQos());
+    }
+
+    @Override
+    public void deliveryComplete(IMqttDeliveryToken token) {
+        // solo se reciben mensajes
+    }
+
+    /**
+     * Dato decodificado y su secuencia, si el payload la trae
+     */
+    private record Lectura(Datos datos, Long secuencia) {
+    }
+
+    /**
+     * Metodo que permite convertir un mensaje en un dato
+     * @param topic topico del mensaje
+     * @param payload valor en texto u objeto JSON {valor, unidad, secuencia, fecha}
+     * @return dato a escribir, o null si el mensaje esta mal formado
+     */
+    private Lectura decodificar(String topic, byte[] payload) {
+        List<String> segmentos = Arrays.asList(topic.split("/"));
+        if (segmentos.size() <= segmentoSensor || segmentos.get(segmentoSensor).isBlank()
+                || registroSensores.validar(segmentos.get(segmentoSensor)) != null) {
+            return null;
+        }
+        String texto = new String(payload, StandardCharsets.UTF_8).trim();
+        String valor = texto;
+        String unidad = null;
+        Long secuencia = null;
+        long fecha = 0;
+        if (texto.startsWith("{")) {
+            try {
+                JsonNode json = objectMapper.readTree(texto);
+                valor = json.path("valor").asText(null);
+                unidad = json.path("unidad").asText(null);
+                if (json.hasNonNull("secuencia")) {
+                    secuencia = json.get("secuencia").asLong(-1);
+                }
+                fecha = json.path("fecha").asLong(0);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        Double numero = ValorDatos.parsear(valor);
+        Date fechaDato = politicaFechas.resolver(fecha, 0, new Date());
+        if (numero == null || (secuencia != null && secuencia < 0) || fechaDato == null) {
+            return null;
+        }
+        Datos datos = new Datos();
+        datos.setIdSensor(segmentos.get(segmentoSensor));
+        datos.setValor(numero);
+        datos.setUnidad(unidad);
+        datos.setFecha(fechaDato);
+        datos.setVersionEsquema(Datos.VERSION_ESQUEMA);
+        return new Lectura(datos, secuencia);
+    }
+
+    /**
+     * Se desconecta antes de que la cola de escritura se vacie y se detenga
+     */
+    @PreDestroy
+    void detener() {
+        activo = false;
+        try {
+            if (cliente.isConnected()) {
+                cliente.disconnect(5000);
+            }
+            cliente.close();
+        } catch (MqttException e) {
+            logger.error("ERROR_MESSAGE: " + e.getMessage());
+        }
+    }
+
+}
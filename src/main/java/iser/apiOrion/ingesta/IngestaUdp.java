@@ -0,0 +1,309 @@
+package iser.apiOrion.ingesta;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import iser.apiOrion.almacen.ColaEscrituraDatos;
+import iser.apiOrion.almacen.MarcasSecuencia;
+import iser.apiOrion.almacen.PoliticaFechas;
+import iser.apiOrion.almacen.ValorDatos;
+import iser.apiOrion.collection.Datos;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receptor UDP para estaciones con bateria, donde un intercambio TCP+HTTP por muestra es muy
+ * costoso. Usa un DatagramChannel no bloqueante con un Selector en un solo hilo.
+ * <p>
+ *     Formato del datagrama (orden de red):
+ *     <pre>
+ *     version   1 byte   (2)
+ *     cantidad  1 byte   lecturas en el datagrama, al menos 1
+ *     contador  8 bytes  int64 creciente por estacion (un contador guardado en memoria no
+ *                        volatil o la hora del dispositivo en ms)
+ *     lecturas  16 bytes cada una: indice del sensor (uint32), fecha en ms (int64, 0 = fecha
+ *                        de recepcion) y valor (float32)
+ *     firma     8 bytes  primeros 8 bytes de HMAC-SHA256 de todo lo anterior con la clave de
+ *                        ingesta de datos (clave.valida.datos)
+ *     </pre>
+ *     Un datagrama lleva lecturas de una sola estacion, la del sensor de la primera lectura.
+ *     El contador firmado evita que un datagrama capturado se reenvie: se reserva en
+ *     MarcasSecuencia con el id de la estacion (o del sensor, si no tiene estacion), que lo
+ *     guarda en mongo, y un contador repetido o demasiado viejo descarta el datagrama.
+ * </p>
+ * <p>
+ *     Se valida en orden el formato, la firma, el contador y el limite de la IP de origen, por
+ *     lo que solo los datagramas firmados crean cubetas de tokens. El buffer de recepcion, el Mac
+ *     y el arreglo de la firma se reutilizan, por lo que la decodificacion no reserva memoria por
+ *     datagrama salvo los Datos que se escriben. Los datagramas rechazados se descartan sin
+ *     respuesta. Las lecturas van a la cola de escritura diferida, que las escribe en lotes.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "udp.habilitado", havingValue = "true")
+public class IngestaUdp {
+
+    /**
+     * logger :: log for IngestaUdp
+     */
+    private static final Logger logger = LoggerFactory.getLogger(IngestaUdp.class);
+
+    private static final int VERSION = 2;
+    private static final int CABECERA = 10;
+    private static final int LECTURA = 16;
+    private static final int FIRMA = 8;
+
+    /**
+     * Cola de escritura diferida
+     */
+    @Autowired
+    ColaEscrituraDatos colaEscrituraDatos;
+
+    /**
+     * Registro de sensores, para resolver el indice compacto y validar el sensor
+     */
+    @Autowired
+    RegistroSensores registroSensores;
+
+    /**
+     * Limites de plausibilidad de la fecha del dispositivo
+     */
+    @Autowired
+    PoliticaFechas politicaFechas;
+
+    /**
+     * Marcas del contador de cada estacion, para descartar los datagramas repetidos
+     */
+    @Autowired
+    MarcasSecuencia marcasSecuencia;
+
+    /**
+     * Registro de metricas
+     */
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${udp.puerto:5684}")
+    private int puerto;
+
+    @Value("${clave.valida.datos:total-lock}")
+    private String claveValidaDatos;
+
+    /**
+     * Datagramas por segundo permitidos a cada IP de origen
+     */
+    @Value("${udp.limite.tasa:5}")
+    private double tasa;
+
+    @Value("${udp.limite.rafaga:20}")
+    private int rafaga;
+
+    private DatagramChannel canal;
+
+    private Selector selector;
+
+    private Thread hiloRecepcion;
+
+    private volatile boolean activo;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(CABECERA + 255 * LECTURA + FIRMA);
+
+    private final byte[] firma = new byte[32];
+
+    private Mac mac;
+
+    private final Map<InetAddress, CubetaTokens> cubetas = new ConcurrentHashMap<>();
+
+    private Counter recibidos;
+    private Counter sinFirma;
+    private Counter limitados;
+    private Counter malFormados;
+    private Counter repetidos;
+    private Counter colaLlena;
+
+    @PostConstruct
+    void iniciar() throws IOException, GeneralSecurityException {
+        mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(claveValidaDatos.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        recibidos = Counter.builder("udp.lecturas.recibidas").register(meterRegistry);
+        sinFirma = contadorRechazo("firma");
+        limitados = contadorRechazo("limite");
+        malFormados = contadorRechazo("formato");
+        repetidos = contadorRechazo("repetido");
+        colaLlena = contadorRechazo("cola");
+
+        selector = Selector.open();
+        canal = DatagramChannel.open();
+        canal.configureBlocking(false);
+        canal.bind(new InetSocketAddress(puerto));
+        canal.register(selector, SelectionKey.OP_READ);
+        activo = true;
+        hiloRecepcion = new Thread(this::recibir, "ingesta-udp");
+        hiloRecepcion.setDaemon(true);
+        hiloRecepcion.start();
+        logger.info("Ingesta UDP escuchando en el puerto " + puerto);
+    }
+
+    private Counter contadorRechazo(String motivo) {
+        return Counter.builder("udp.datagramas.rechazados")
+                .description("Datagramas UDP descartados")
+                .tag("motivo", motivo)
+                .register(meterRegistry);
+    }
+
+    private void recibir() {
+        while (activo) {
+            try {
+                if (selector.select(1000) == 0) {
+                    continue;
+                }
+                selector.selectedKeys().clear();
+                SocketAddress origen;
+                while ((origen = canal.receive(buffer.clear())) != null) {
+                    buffer.flip();
+                    procesar(((InetSocketAddress) origen).getAddress());
+                }
+            } catch (IOException e) {
+                if (activo) {
+                    logger.error("ERROR_MESSAGE: " + e.getMessage());
+                }
+            } catch (Exception e) {
+                logger.error("ERROR_MESSAGE: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Valida y decodifica el datagrama que esta en el buffer
+     */
+    private void procesar(InetAddress origen) {
+        int tamano = buffer.remaining();
+        if (tamano < CABECERA + LECTURA + FIRMA || buffer.get(0) != VERSION
+                || tamano != CABECERA + (buffer.get(1) & 0xFF) * LECTURA + FIRMA) {
+            malFormados.increment();
+            return;
+        }
+        if (!firmaValida(tamano - FIRMA)) {
+            sinFirma.increment();
+            return;
+        }
+
+        long contador = buffer.getLong(2);
+        String primero = registroSensores.idSensor(buffer.getInt(CABECERA));
+        if (contador < 0 || primero == null) {
+            malFormados.increment();
+            return;
+        }
+        String emisor = emisor(primero);
+        if (!marcasSecuencia.reservar(emisor, contador)) {
+            repetidos.increment();
+            return;
+        }
+        // el contador queda usado aunque el datagrama se limite o sus datos no se escriban
+        marcasSecuencia.confirmar(emisor, contador);
+
+        CubetaTokens cubeta = cubetas.get(origen);
+        if (cubeta == null) {
+            cubeta = new CubetaTokens(tasa, rafaga);
+            cubetas.put(origen, cubeta);
+        }
+        if (cubeta.consumir() > 0) {
+            limitados.increment();
+            return;
+        }
+
+        int cantidad = buffer.get(1) & 0xFF;
+        Date ahora = new Date();
+        for (int i = 0; i < cantidad; i++) {
+            int posicion = CABECERA + i * LECTURA;
+            String idSensor = registroSensores.idSensor(buffer.getInt(posicion));
+            long fecha = buffer.getLong(posicion + 4);
+            float valor = buffer.getFloat(posicion + 12);
+            Date fechaDato = politicaFechas.resolver(fecha, 0, ahora);
+            if (idSensor == null || registroSensores.validar(idSensor) != null || !Float.isFinite(valor) || fechaDato == null
+                    || !emisor.equals(emisor(idSensor))) {
+                malFormados.increment();
+                continue;
+            }
+            Datos datos = new Datos();
+            datos.setIdSensor(idSensor);
+            datos.setValor(ValorDatos.decimal(valor));
+            datos.setFecha(fechaDato);
+            datos.setVersionEsquema(Datos.VERSION_ESQUEMA);
+            if (colaEscrituraDatos.ofrecer(datos)) {
+                recibidos.increment();
+            } else {
+                colaLlena.increment();
+            }
+        }
+    }
+
+    /**
+     * Estacion del sensor, o el propio sensor si no tiene estacion
+     */
+    private String emisor(String idSensor) {
+        String idEstacion = registroSensores.idEstacion(idSensor);
+        return idEstacion != null ? idEstacion : idSensor;
+    }
+
+    /**
+     * Compara en tiempo constante los 8 bytes de firma con el HMAC del contenido
+     */
+    private boolean firmaValida(int largoContenido) {
+        try {
+            buffer.limit(largoContenido).position(0);
+            mac.update(buffer);
+            mac.doFinal(firma, 0);
+        } catch (GeneralSecurityException e) {
+            return false;
+        } finally {
+            buffer.limit(largoContenido + FIRMA);
+        }
+        int diferencia = 0;
+        for (int i = 0; i < FIRMA; i++) {
+            diferencia |= firma[i] ^ buffer.get(largoContenido + i);
+        }
+        return diferencia == 0;
+    }
+
+    /**
+     * Descarta las cubetas de origenes inactivos
+     */
+    @Scheduled(fixedDelayString = "${udp.limpieza-ms:60000}")
+    public void limpiarCubetas() {
+        cubetas.values().removeIf(cubeta -> cubeta.inactiva(TimeUnit.MINUTES.toNanos(10)));
+    }
+
+    @PreDestroy
+    void detener() throws IOException, InterruptedException {
+        activo = false;
+        selector.wakeup();
+        hiloRecepcion.join(TimeUnit.SECONDS.toMillis(5));
+        canal.close();
+        selector.close();
+    }
+
+}
@@ -0,0 +1,78 @@
+package iser.apiOrion.ingesta;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import iser.apiOrion.DTO.DatosDTO;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lectura por partes de los lotes de datos (arreglo JSON, CBOR o Smile y NDJSON).
+ * <p>
+ *     Los datos se leen uno a uno del cuerpo y la lectura se corta en cuanto el lote supera el
+ *     maximo, sin cargar el resto del cuerpo ni construir los datos que sobran.
+ * </p>
+ */
+public final class LectorLote {
+
+    private LectorLote() {
+    }
+
+    /**
+     * Metodo que permite leer un arreglo de datos
+     * @param lector lector de DatosDTO
+     * @param parser parser del cuerpo, en cualquier formato de jackson
+     * @param maximo cantidad maxima de datos aceptados
+     * @return datos en el orden recibido
+     * @throws IOException si falla la lectura o el arreglo esta mal formado
+     * @throws IllegalArgumentException si el cuerpo no es un arreglo o supera el maximo
+     */
+    public static List<DatosDTO> leerArreglo(ObjectReader lector, JsonParser parser, int maximo) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("El lote debe ser un arreglo de datos");
+        }
+        List<DatosDTO> lote = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (lote.size() == maximo) {
+                throw new IllegalArgumentException("El lote supera el maximo de " + maximo + " datos");
+            }
+            lote.add(lector.readValue(parser));
+        }
+        return lote;
+    }
+
+    /**
+     * Metodo que permite leer un lote NDJSON. Las lineas mal formadas quedan como null para
+     * que se rechacen sin afectar al resto del lote; las lineas en blanco se ignoran.
+     * @param lector lector de DatosDTO
+     * @param reader cuerpo de la peticion
+     * @param maximo cantidad maxima de datos aceptados
+     * @return datos en el orden recibido
+     * @throws IOException si falla la lectura
+     * @throws IllegalArgumentException si el lote supera el maximo
+     */
+    public static List<DatosDTO> leerLineas(ObjectReader lector, BufferedReader reader, int maximo) throws IOException {
+        List<DatosDTO> lote = new ArrayList<>();
+        String linea;
+        while ((linea = reader.readLine()) != null) {
+            if (linea.isBlank()) {
+                continue;
+            }
+            if (lote.size() == maximo) {
+                throw new IllegalArgumentException("El lote supera el maximo de " + maximo + " datos");
+            }
+            try {
+                lote.add(lector.readValue(linea));
+            } catch (JsonProcessingException e) {
+                lote.add(null);
+            }
+        }
+        return lote;
+    }
+
+}
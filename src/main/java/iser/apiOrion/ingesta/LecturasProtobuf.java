@@ -0,0 +1,174 @@
+package iser.apiOrion.ingesta;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodificador del formato de cable de protobuf para el mensaje Lectura de
+ * resources/proto/lecturas.proto, sin depender de codigo generado.
+ * <p>
+ *     El cuerpo es una secuencia de lecturas precedidas por su longitud en varint. Los campos
+ *     desconocidos se saltan segun su tipo de cable, por lo que el esquema puede crecer sin
+ *     romper el servidor.
+ * </p>
+ */
+public final class LecturasProtobuf {
+
+    private static final int VARINT = 0;
+    private static final int FIXED64 = 1;
+    private static final int DELIMITADO = 2;
+    private static final int FIXED32 = 5;
+
+    /**
+     * Bytes por lectura con los que se acota el cuerpo: una lectura completa ocupa a lo sumo 28
+     * (prefijo de longitud, tres claves, dos varint y un fixed32), el resto deja lugar a campos
+     * nuevos del esquema
+     */
+    public static final int MAXIMO_BYTES_LECTURA = 64;
+
+    /**
+     * Lectura decodificada; fecha es 0 si el dispositivo no la envio. El sensor es obligatorio:
+     * una lectura sin el campo 1 se rechaza en lugar de tomarla como el indice 0
+     */
+    public record Lectura(int sensor, long fecha, float valor) {
+    }
+
+    private final byte[] buffer;
+    private int posicion;
+    private int limite;
+
+    private LecturasProtobuf(byte[] buffer) {
+        this.buffer = buffer;
+        this.limite = buffer.length;
+    }
+
+    /**
+     * Metodo que permite decodificar un lote de lecturas delimitadas. Del cuerpo se leen a lo
+     * sumo maximo * MAXIMO_BYTES_LECTURA bytes; si hay mas, el lote se rechaza sin leer el resto.
+     * @param entrada cuerpo de la peticion
+     * @param maximo cantidad maxima de lecturas aceptadas
+     * @return lecturas en el orden recibido
+     * @throws IOException si falla la lectura
+     * @throws IllegalArgumentException si el lote esta mal formado o supera el maximo
+     */
+    public static List<Lectura> decodificar(InputStream entrada, int maximo) throws IOException {
+        int maximoBytes = (int) Math.min(Integer.MAX_VALUE - 8, (long) maximo * MAXIMO_BYTES_LECTURA);
+        byte[] cuerpo = entrada.readNBytes(maximoBytes + 1);
+        if (cuerpo.length > maximoBytes) {
+            throw new IllegalArgumentException("El lote supera el maximo de " + maximoBytes + " bytes");
+        }
+        return decodificar(cuerpo, maximo);
+    }
+
+    /**
+     * Metodo que permite decodificar un lote de lecturas delimitadas
+     * @param cuerpo bytes del lote
+     * @param maximo cantidad maxima de lecturas aceptadas
+     * @return lecturas en el orden recibido
+     * @throws IllegalArgumentException si el lote esta mal formado o supera el maximo
+     */
+    public static List<Lectura> decodificar(byte[] cuerpo, int maximo) {
+        LecturasProtobuf lector = new LecturasProtobuf(cuerpo);
+        List<Lectura> lecturas = new ArrayList<>();
+        while (lector.posicion < cuerpo.length) {
+            if (lecturas.size() == maximo) {
+                throw new IllegalArgumentException("El lote supera el maximo de " + maximo + " lecturas");
+            }
+            int longitud = lector.longitud();
+            lector.limite = lector.posicion + longitud;
+            lecturas.add(lector.lectura());
+            lector.limite = cuerpo.length;
+        }
+        return lecturas;
+    }
+
+    private Lectura lectura() {
+        int inicio = posicion;
+        int sensor = -1;
+        long fecha = 0;
+        float valor = 0;
+        while (posicion < limite) {
+            long clave = varint();
+            int campo = (int) (clave >>> 3);
+            int tipo = (int) (clave & 7);
+            if (campo == 1 && tipo == VARINT) {
+                long indice = varint();
+                if (indice < 0 || indice > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Indice de sensor fuera de rango en el byte " + posicion);
+                }
+                sensor = (int) indice;
+            } else if (campo == 2 && tipo == VARINT) {
+                fecha = varint();
+                if (fecha < 0) {
+                    throw new IllegalArgumentException("Fecha negativa en el byte " + posicion);
+                }
+            } else if (campo == 3 && tipo == FIXED32) {
+                valor = Float.intBitsToFloat(fixed32());
+            } else {
+                saltar(tipo);
+            }
+        }
+        if (sensor < 0) {
+            throw new IllegalArgumentException("Lectura sin indice de sensor en el byte " + inicio);
+        }
+        return new Lectura(sensor, fecha, valor);
+    }
+
+    private long varint() {
+        long resultado = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            byte b = siguiente();
+            resultado |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return resultado;
+            }
+        }
+        throw new IllegalArgumentException("Varint mal formado en el byte " + posicion);
+    }
+
+    /**
+     * Lee una longitud en varint y la valida contra los bytes que quedan en el mensaje, antes de
+     * convertirla a int
+     */
+    private int longitud() {
+        long longitud = varint();
+        if (longitud < 0 || longitud > limite - posicion) {
+            throw new IllegalArgumentException("Longitud invalida en el byte " + posicion);
+        }
+        return (int) longitud;
+    }
+
+    private int fixed32() {
+        return (siguiente() & 0xFF)
+                | (siguiente() & 0xFF) << 8
+                | (siguiente() & 0xFF) << 16
+                | (siguiente() & 0xFF) << 24;
+    }
+
+    private void saltar(int tipo) {
+        switch (tipo) {
+            case VARINT -> varint();
+            case FIXED64 -> avanzar(8);
+            case DELIMITADO -> avanzar(longitud());
+            case FIXED32 -> avanzar(4);
+            default -> throw new IllegalArgumentException("Tipo de cable no soportado: " + tipo);
+        }
+    }
+
+    private void avanzar(int bytes) {
+        if (bytes < 0 || bytes > limite - posicion) {
+            throw new IllegalArgumentException("Campo fuera del mensaje en el byte " + posicion);
+        }
+        posicion += bytes;
+    }
+
+    private byte siguiente() {
+        if (posicion >= limite) {
+            throw new IllegalArgumentException("Mensaje truncado en el byte " + posicion);
+        }
+        return buffer[posicion++];
+    }
+
+}
@@ -0,0 +1,164 @@
+package iser.apiOrion.ingesta;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Control de admision de las rutas de ingesta HTTP (las de valida.insertar-datos.requestURI),
+ * con una cubeta de tokens por IP de origen y otra por sensor. La de IP se aplica en un filtro,
+ * antes de autenticar y de leer el cuerpo. La de sensor se aplica en la insercion, despues de
+ * validar la clave y de comprobar que el idSensor del cuerpo es un sensor registrado, para que
+ * un cliente sin clave no pueda agotar la cubeta de otro sensor ni crear cubetas inventando ids.
+ * Cada peticion consume un token de la IP y uno de cada sensor que trae, sea un dato o un lote.
+ * La IP tiene su propio limite porque varias placas pueden salir por la misma IP del operador
+ * movil.
+ */
+@Component
+public class LimitadorIngesta {
+
+    /**
+     * Registro de metricas
+     */
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${ingesta.limite.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${valida.insertar-datos.requestURI.igual-noToken:total-lock}")
+    private String insertarDatosRequestURI;
+
+    /**
+     * Peticiones por segundo y rafaga permitidas a cada IP
+     */
+    @Value("${ingesta.limite.ip.tasa:50}")
+    private double tasaIp;
+
+    @Value("${ingesta.limite.ip.rafaga:100}")
+    private int rafagaIp;
+
+    /**
+     * Peticiones por segundo y rafaga permitidas a cada sensor
+     */
+    @Value("${ingesta.limite.sensor.tasa:2}")
+    private double tasaSensor;
+
+    @Value("${ingesta.limite.sensor.rafaga:10}")
+    private int rafagaSensor;
+
+    /**
+     * Cantidad maxima de cubetas por sensor; por encima solo se limita por IP, para acotar la
+     * memoria aunque el registro de sensores sea muy grande
+     */
+    @Value("${ingesta.limite.max-sensores:100000}")
+    private int maxSensores;
+
+    private List<String> rutas;
+
+    private final Map<String, CubetaTokens> porIp = new ConcurrentHashMap<>();
+
+    private final Map<String, CubetaTokens> porSensor = new ConcurrentHashMap<>();
+
+    private Counter rechazadosIp;
+
+    private Counter rechazadosSensor;
+
+    @PostConstruct
+    void iniciar() {
+        rutas = Arrays.asList(insertarDatosRequestURI.split(";"));
+        rechazadosIp = contadorRechazo("ip");
+        rechazadosSensor = contadorRechazo("sensor");
+    }
+
+    private Counter contadorRechazo(String clave) {
+        return Counter.builder("ingesta.limite.rechazados")
+                .description("Peticiones de ingesta rechazadas por limite de tasa")
+                .tag("clave", clave)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Metodo que permite saber si una ruta es de ingesta
+     * @param requestURI uri de la peticion
+     * @return true si la ruta se limita
+     */
+    public boolean aplica(String requestURI) {
+        return habilitado && rutas.contains(requestURI);
+    }
+
+    /**
+     * Metodo que permite admitir una peticion de ingesta por su IP de origen
+     * @param ip IP de origen
+     * @return 0 si se admite, o los segundos que el cliente debe esperar (Retry-After)
+     */
+    public long admitir(String ip) {
+        long espera = cubeta(porIp, ip, tasaIp, rafagaIp).consumir();
+        if (espera > 0) {
+            rechazadosIp.increment();
+            return segundos(espera);
+        }
+        return 0;
+    }
+
+    /**
+     * Metodo que permite admitir los datos de un sensor ya autenticado y registrado
+     * @param idSensor id del sensor
+     * @return 0 si se admite, o los segundos que el cliente debe esperar (Retry-After)
+     */
+    public long admitirSensor(String idSensor) {
+        if (!habilitado) {
+            return 0;
+        }
+        CubetaTokens cubeta = porSensor.get(idSensor);
+        if (cubeta == null) {
+            if (porSensor.size() >= maxSensores) {
+                return 0;
+            }
+            cubeta = cubeta(porSensor, idSensor, tasaSensor, rafagaSensor);
+        }
+        long espera = cubeta.consumir();
+        if (espera > 0) {
+            rechazadosSensor.increment();
+            return segundos(espera);
+        }
+        return 0;
+    }
+
+    private static CubetaTokens cubeta(Map<String, CubetaTokens> cubetas, String clave, double tasa, int rafaga) {
+        CubetaTokens cubeta = cubetas.get(clave);
+        if (cubeta == null) {
+            CubetaTokens nueva = new CubetaTokens(tasa, rafaga);
+            cubeta = cubetas.putIfAbsent(clave, nueva);
+            if (cubeta == null) {
+                cubeta = nueva;
+            }
+        }
+        return cubeta;
+    }
+
+    private static long segundos(long nanos) {
+        return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Descarta las cubetas que no se usan hace 10 minutos
+     */
+    @Scheduled(fixedDelayString = "${ingesta.limite.limpieza-ms:60000}")
+    public void limpiar() {
+        long inactividad = TimeUnit.MINUTES.toNanos(10);
+        porIp.values().removeIf(cubeta -> cubeta.inactiva(inactividad));
+        porSensor.values().removeIf(cubeta -> cubeta.inactiva(inactividad));
+    }
+
+}
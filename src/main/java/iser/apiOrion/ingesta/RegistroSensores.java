@@ -0,0 +1,161 @@
+package iser.apiOrion.ingesta;
+
+import iser.apiOrion.collection.Sensor;
+import iser.apiOrion.repository.SensorRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registro en memoria de los sensores, para validar cada lectura de la ingesta (HTTP, MQTT,
+ * UDP y binaria) sin consultar la base de datos.
+ * <p>
+ *     Se carga de SensorRepository al iniciar, SensorServiceImpl lo actualiza al crear,
+ *     actualizar o borrar un sensor, y se recarga periodicamente para tomar los cambios hechos
+ *     por otras instancias o directamente en la base de datos. Cada recarga arma mapas nuevos y
+ *     los publica de una vez, por lo que las consultas son lecturas sin bloqueo de un HashMap.
+ *     Mientras no se haya podido cargar, no rechaza ningun sensor.
+ * </p>
+ */
+@Component
+public class RegistroSensores {
+
+    /**
+     * logger :: log for RegistroSensores
+     */
+    private static final Logger logger = LoggerFactory.getLogger(RegistroSensores.class);
+
+    /**
+     * Repositorio de sensores
+     */
+    @Autowired
+    SensorRepository sensorRepository;
+
+    /**
+     * Si es false se aceptan lecturas de cualquier idSensor, como antes del registro
+     */
+    @Value("${datos.sensores.validar:true}")
+    private boolean validar;
+
+    /**
+     * Sensores por id y por indice compacto; se reemplazan completos, nunca se modifican
+     */
+    private record Instantanea(Map<String, Sensor> porId, Map<Integer, Sensor> porIndice) {
+    }
+
+    private volatile Instantanea instantanea;
+
+    @PostConstruct
+    void iniciar() {
+        recargar();
+    }
+
+    /**
+     * Recarga todos los sensores
+     */
+    @Scheduled(fixedDelayString = "${datos.sensores.recarga-ms:300000}", initialDelayString = "${datos.sensores.recarga-ms:300000}")
+    public void recargar() {
+        try {
+            Map<String, Sensor> porId = new HashMap<>();
+            Map<Integer, Sensor> porIndice = new HashMap<>();
+            for (Sensor sensor : sensorRepository.findAll()) {
+                porId.put(sensor.getId(), sensor);
+                if (sensor.getIndice() != null) {
+                    porIndice.put(sensor.getIndice(), sensor);
+                }
+            }
+            instantanea = new Instantanea(porId, porIndice);
+        } catch (Exception e) {
+            logger.error("ERROR_MESSAGE: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Metodo que permite registrar un sensor creado o actualizado
+     * @param sensor sensor guardado
+     */
+    public synchronized void registrar(Sensor sensor) {
+        Instantanea actual = instantanea;
+        if (actual == null || sensor.getId() == null) {
+            return;
+        }
+        Map<String, Sensor> porId = new HashMap<>(actual.porId());
+        Map<Integer, Sensor> porIndice = new HashMap<>(actual.porIndice());
+        Sensor anterior = porId.put(sensor.getId(), sensor);
+        if (anterior != null && anterior.getIndice() != null) {
+            porIndice.remove(anterior.getIndice());
+        }
+        if (sensor.getIndice() != null) {
+            porIndice.put(sensor.getIndice(), sensor);
+        }
+        instantanea = new Instantanea(porId, porIndice);
+    }
+
+    /**
+     * Metodo que permite quitar un sensor borrado
+     * @param id id del sensor
+     */
+    public synchronized void quitar(String id) {
+        Instantanea actual = instantanea;
+        if (actual == null || !actual.porId().containsKey(id)) {
+            return;
+        }
+        Map<String, Sensor> porId = new HashMap<>(actual.porId());
+        Map<Integer, Sensor> porIndice = new HashMap<>(actual.porIndice());
+        Sensor anterior = porId.remove(id);
+        if (anterior.getIndice() != null) {
+            porIndice.remove(anterior.getIndice());
+        }
+        instantanea = new Instantanea(porId, porIndice);
+    }
+
+    /**
+     * Metodo que permite validar que un sensor exista y este habilitado (Sensor.config)
+     * @param idSensor id del sensor
+     * @return mensaje de error o null si el sensor puede enviar datos
+     */
+    public String validar(String idSensor) {
+        Instantanea actual = instantanea;
+        if (!validar || actual == null) {
+            return null;
+        }
+        Sensor sensor = actual.porId().get(idSensor);
+        if (sensor == null) {
+            return "sensor desconocido: " + idSensor;
+        }
+        if (!sensor.isConfig()) {
+            return "sensor deshabilitado: " + idSensor;
+        }
+        return null;
+    }
+
+    /**
+     * Metodo que permite resolver el indice compacto de un sensor
+     * @param indice indice enviado por el dispositivo
+     * @return id del sensor, o null si el indice no esta asignado
+     */
+    public String idSensor(int indice) {
+        Instantanea actual = instantanea;
+        Sensor sensor = actual != null ? actual.porIndice().get(indice) : null;
+        return sensor != null ? sensor.getId() : null;
+    }
+
+    /**
+     * Metodo que permite obtener la estacion de un sensor
+     * @param idSensor id del sensor
+     * @return id de la estacion, o null si el sensor no esta registrado o no tiene estacion
+     */
+    public String idEstacion(String idSensor) {
+        Instantanea actual = instantanea;
+        Sensor sensor = actual != null ? actual.porId().get(idSensor) : null;
+        return sensor != null ? sensor.getIdEstacion() : null;
+    }
+
+}
@@ -0,0 +1,33 @@
+package iser.apiOrion.reactivo;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+
+/**
+ * Activa los repositorios reactivos de este paquete. El cliente reactivo de mongo solo se
+ * crea con el perfil reactivo (ver spring.autoconfigure.exclude en application.properties).
+ * <p>
+ *     La consulta por rango reactiva lee la coleccion datos con DatosReactivoRepository, que
+ *     esta vacia en modo bucket, por lo que el perfil no arranca con otro modo de almacenamiento.
+ * </p>
+ */
+@Configuration
+@Profile("reactivo")
+@EnableReactiveMongoRepositories(basePackages = "iser.apiOrion.reactivo")
+public class ConfiguracionReactiva {
+
+    @Value("${datos.almacenamiento.modo:documento}")
+    private String modoAlmacenamiento;
+
+    @PostConstruct
+    void iniciar() {
+        if (!"documento".equals(modoAlmacenamiento)) {
+            throw new IllegalStateException("El perfil reactivo requiere datos.almacenamiento.modo=documento: "
+                    + "la consulta por rango lee la coleccion datos, que esta vacia en modo " + modoAlmacenamiento);
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package iser.apiOrion.reactivo;
+
+import iser.apiOrion.DTO.DatosDTO;
+import iser.apiOrion.DTO.DatosGraficaDTO;
+import iser.apiOrion.almacen.ArchivoDatos;
+import iser.apiOrion.almacen.PoliticaFechas;
+import iser.apiOrion.almacen.ValorDatos;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.ingesta.AdmisionDatos;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static iser.apiOrion.constant.mediaTypeConstant.APPLICATION_CBOR_VALUE;
+import static iser.apiOrion.constant.mediaTypeConstant.APPLICATION_SMILE_VALUE;
+
+/**
+ * Version reactiva de la ingesta y la consulta por rango de DatosController, en las mismas
+ * rutas. Solo se registra con el perfil reactivo, donde la aplicacion corre sobre Netty y
+ * unos pocos hilos de event loop atienden todas las conexiones.
+ * <p>
+ *     El rango se entrega completo (como sin limite ni cursor en la pila servlet) leyendo el cursor
+ *     de mongo con contrapresion: con application/x-ndjson cada dato se escribe en cuanto
+ *     llega, y con application/json se envia un arreglo por partes. Lee la coleccion datos,
+ *     por lo que requiere datos.almacenamiento.modo=documento (ConfiguracionReactiva no arranca
+ *     con otro modo). La insercion usa AdmisionDatos, igual que la pila servlet.
+ * </p>
+ */
+@Profile("reactivo")
+@RestController
+@RequestMapping("/api/v1/datos")
+public class DatosReactivoController {
+
+    /**
+     * Repositorio reactivo de datos
+     */
+    @Autowired
+    DatosReactivoRepository datosReactivoRepository;
+
+    /**
+     * Admision y escritura de un dato, comun con la pila servlet
+     */
+    @Autowired
+    AdmisionDatos admisionDatos;
+
+    /**
+     * Archivo frio, con los dias que la retencion saco de mongo
+     */
+    @Autowired
+    ArchivoDatos archivoDatos;
+
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    @Operation(
+      summary     = "Rangos de fechas por sensor (reactivo)",
+      description = "Obtiene todos los datos de un sensor en un rango de fechas. " +
+                    "Con Accept application/x-ndjson envia un dato por linea a medida que se leen."
+    )
+    @GetMapping(
+      value    = "/rangoFechasporSensor",
+      produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE }
+    )
+    public Flux<DatosGraficaDTO> rangoFechasPorSensor(
+      @RequestParam("fechaInicial") String fechaInicial,
+      @RequestParam("fechaFinal")   String fechafinal,
+      @RequestParam("idSensor")     String idSensor
+    ) {
+        Date inicio;
+        Date fin;
+        try {
+            inicio = fecha(fechaInicial);
+            fin    = fecha(fechafinal);
+        } catch (DateTimeParseException e) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "fecha invalida: " + e.getParsedString()));
+        }
+        DateTimeFormatter formato = FORMATO_FECHA.withZone(ZoneId.systemDefault());
+        return rango(idSensor, inicio, fin)
+                .map(dato -> {
+                    DatosGraficaDTO datosGraficaDTO = new DatosGraficaDTO();
+                    datosGraficaDTO.setTime(formato.format(dato.getFecha().toInstant()));
+                    datosGraficaDTO.setValue(ValorDatos.formatear(dato.getValor()));
+                    return datosGraficaDTO;
+                });
+    }
+
+    /**
+     * Datos de un sensor en el rango (extremos excluidos): los dias archivados se leen de disco
+     * en un hilo de boundedElastic y el resto del cursor reactivo
+     */
+    private Flux<Datos> rango(String idSensor, Date inicio, Date fin) {
+        Date limite = archivoDatos.limite(idSensor);
+        if (limite == null || !inicio.before(limite)) {
+            return datosReactivoRepository.findByIdSensorAndFechaBetweenOrderByFechaAsc(idSensor, inicio, fin);
+        }
+        Flux<Datos> archivados = Flux.defer(() -> {
+            List<Datos> datos = new ArrayList<>();
+            archivoDatos.recorrer(idSensor, inicio, fin.before(limite) ? fin : limite, datos::add);
+            return Flux.fromIterable(datos);
+        }).subscribeOn(Schedulers.boundedElastic());
+        return fin.after(limite)
+                ? archivados.concatWith(datosReactivoRepository.findByIdSensorAndFechaBetweenOrderByFechaAsc(idSensor, new Date(limite.getTime() - 1), fin))
+                : archivados;
+    }
+
+    @Operation(
+      summary     = "Insertar datos de sensores (reactivo)",
+      description = "Inserta un dato de sensor con la misma admision y escritura que la pila servlet, " +
+                    "en un hilo de boundedElastic para no bloquear el event loop"
+    )
+    @PostMapping(
+      value    = "/insertar",
+      consumes = { MediaType.APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE },
+      produces = { MediaType.APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE }
+    )
+    public Mono<ResponseEntity<?>> insertar(
+      @RequestBody Mono<DatosDTO> cuerpo,
+      @RequestHeader(value = PoliticaFechas.CABECERA_RELOJ, required = false) Long relojDispositivo
+    ) {
+        Date ahora = new Date();
+        // la escritura directa y la primera lectura de la marca de secuencia bloquean
+        return cuerpo.publishOn(Schedulers.boundedElastic())
+                .map(datosDTO -> admisionDatos.insertar(datosDTO, ahora, relojDispositivo));
+    }
+
+    /**
+     * Metodo que permite convertir una fecha yyyy-MM-dd al inicio de ese dia en la zona del
+     * servidor, como hace SimpleDateFormat en DatosController
+     */
+    private static Date fecha(String texto) {
+        return Date.from(LocalDate.parse(texto, FORMATO_FECHA).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+}
@@ -0,0 +1,19 @@
+package iser.apiOrion.reactivo;
+
+import iser.apiOrion.collection.Datos;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+import java.util.Date;
+
+/**
+ * Repositorio reactivo de datos, solo para el perfil reactivo
+ */
+public interface DatosReactivoRepository extends ReactiveMongoRepository<Datos, String> {
+
+    /**
+     * Datos de un sensor entre dos fechas (exclusivas) en orden cronologico
+     */
+    Flux<Datos> findByIdSensorAndFechaBetweenOrderByFechaAsc(String idSensor, Date inicio, Date fin);
+
+}
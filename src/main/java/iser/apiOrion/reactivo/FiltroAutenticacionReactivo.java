@@ -0,0 +1,88 @@
+package iser.apiOrion.reactivo;
+
+import iser.apiOrion.auth.dto.TokenValidationResult;
+import iser.apiOrion.auth.serviceImpl.JwtTokenProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Equivalente de CustomFilter para la pila reactiva: las mismas URI sin token, la misma clave
+ * de ingesta y el mismo token JWT renovado en la respuesta. No imprime las cabeceras de cada
+ * peticion, que en el event loop retrasaria a todas las conexiones.
+ */
+@Profile("reactivo")
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class FiltroAutenticacionReactivo implements WebFilter {
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Value("${valida.insertar-datos.requestURI.igual-noToken:total-lock}")
+    private String insertarDatosRequestURI;
+
+    @Value("${clave.valida.datos:total-lock}")
+    private String claveValidaDatos;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        ServerHttpResponse response = exchange.getResponse();
+
+        HttpHeaders headers = response.getHeaders();
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Access-Control-Allow-Methods", "POST, GET, PUT, DELETE");
+        headers.set("Access-Control-Max-Age", "3600");
+        headers.set("Access-Control-Allow-Headers", "Content-Type, Authorization");
+
+        if (HttpMethod.OPTIONS.equals(request.getMethod())) {
+            response.setStatusCode(HttpStatus.OK);
+            return response.setComplete();
+        }
+
+        // ruta completa, con spring.webflux.base-path, igual que getRequestURI en la pila servlet
+        String requestURI = request.getPath().value();
+        List<String> insertarDatos = Arrays.asList(insertarDatosRequestURI.split(";"));
+        boolean isInsertarDatosValid = insertarDatos.contains(requestURI)
+                && claveValidaDatos.equals(request.getHeaders().getFirst("clave"));
+
+        if (jwtTokenProvider.requestURINoToken(requestURI) || isInsertarDatosValid) {
+            return chain.filter(exchange);
+        }
+
+        String token = null;
+        String bearerToken = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
+            token = bearerToken.substring(7);
+        }
+        TokenValidationResult validationResult = jwtTokenProvider.resolveToken(token);
+        if (!validationResult.isValid()) {
+            System.out.println("Token inválido: " + validationResult.getMessage());
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return response.setComplete();
+        }
+        headers.add(HttpHeaders.AUTHORIZATION, jwtTokenProvider.createToken(
+                validationResult.getClaims().getSubject(),
+                validationResult.getClaims().get("idUsuario").toString()
+        ));
+        headers.add("Access-Control-Expose-Headers", "Authorization");
+        return chain.filter(exchange);
+    }
+
+}
@@ -0,0 +1,58 @@
+package iser.apiOrion.reactivo;
+
+import iser.apiOrion.ingesta.LimitadorIngesta;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static iser.apiOrion.constant.messageConstant.buildMessage;
+
+/**
+ * Equivalente de LimiteIngestaFilter para la pila reactiva: limite por IP antes de la autenticacion
+ */
+@Profile("reactivo")
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class FiltroLimiteReactivo implements WebFilter {
+
+    @Autowired
+    private LimitadorIngesta limitadorIngesta;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!HttpMethod.POST.equals(request.getMethod()) || !limitadorIngesta.aplica(request.getPath().value())) {
+            return chain.filter(exchange);
+        }
+        InetSocketAddress origen = request.getRemoteAddress();
+        String ip = origen != null && origen.getAddress() != null ? origen.getAddress().getHostAddress() : "";
+        long espera = limitadorIngesta.admitir(ip);
+        if (espera == 0) {
+            return chain.filter(exchange);
+        }
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(espera));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        DataBuffer cuerpo = response.bufferFactory().wrap(
+                buildMessage("Limite de peticiones excedido, intente de nuevo").getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(cuerpo));
+    }
+
+}
@@ -0,0 +1,165 @@
+package iser.apiOrion.reactivo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iser.apiOrion.almacen.ArchivoDatos;
+import iser.apiOrion.collection.TuyaSensorData;
+import iser.apiOrion.grafica.SerieColumnas;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Version reactiva de las consultas de TuyaSensorDataController (ultimos registros, historial
+ * y registro por id), en las mismas rutas. Solo se registra con el perfil reactivo.
+ */
+@Profile("reactivo")
+@RestController
+@RequestMapping(value = "/api/v1/tuya", produces = MediaType.APPLICATION_JSON_VALUE)
+@Tag(name = "Tuya Sensor reactivo", description = "Consultas Tuya sobre la pila reactiva")
+public class TuyaReactivoController {
+
+    /**
+     * Repositorio reactivo de las lecturas Tuya
+     */
+    @Autowired
+    TuyaSensorDataReactivoRepository repository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    /**
+     * Archivo frio, con los dias que la retencion saco de mongo
+     */
+    @Autowired
+    ArchivoDatos archivoDatos;
+
+    @Operation(summary = "Obtener los ultimos 10 registros y el total")
+    @GetMapping("/latest")
+    public Mono<ResponseEntity<Map<String, Object>>> getLatestData() {
+        return Mono.zip(repository.findTop10ByOrderByTimestampDesc().collectList(), repository.count())
+                .map(resultado -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("timestamp", LocalDateTime.now().toString());
+                    response.put("latest_records", resultado.getT1());
+                    response.put("total_records_count", resultado.getT2());
+                    response.put("showing_latest", resultado.getT1().size());
+                    return ResponseEntity.ok(response);
+                })
+                .onErrorResume(e -> {
+                    System.err.println("❌ [Reactivo] Error obteniendo datos recientes: " + e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(createErrorResponse("Error obteniendo últimos registros", e.getMessage(), "LATEST_DATA_ERROR")));
+                });
+    }
+
+    @Operation(
+        summary = "Historial de registros en un rango de fechas",
+        description = "Devuelve los registros entre desde y hasta (ISO, por defecto las ultimas 24 horas) en orden cronologico. " +
+                      "Con formato=columnas devuelve solo el campo indicado como {\"t\":[epochMillis...],\"v\":[valor...]}."
+    )
+    @GetMapping("/historial")
+    public Mono<ResponseEntity<?>> getHistorial(
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(value = "campo", defaultValue = "temperatura") String campo,
+            @RequestParam(value = "formato", defaultValue = "objetos") String formato) {
+        LocalDateTime fin = hasta != null ? hasta : LocalDateTime.now();
+        LocalDateTime inicio = desde != null ? desde : fin.minusHours(24);
+        Flux<TuyaSensorData> registros = historial(inicio, fin);
+
+        if (!"columnas".equalsIgnoreCase(formato)) {
+            return Mono.just(ResponseEntity.ok(registros));
+        }
+
+        Function<TuyaSensorData, Double> lector = switch (campo.toLowerCase()) {
+            case "temperatura" -> TuyaSensorData::getTemperatura;
+            case "ph" -> TuyaSensorData::getPh;
+            case "orp" -> TuyaSensorData::getOrp;
+            case "ec" -> TuyaSensorData::getEc;
+            case "tds" -> TuyaSensorData::getTds;
+            case "salinidad" -> TuyaSensorData::getSalinidad;
+            default -> null;
+        };
+        if (lector == null) {
+            return Mono.just(ResponseEntity.badRequest().body(createErrorResponse("Campo no soportado", campo, "INVALID_FIELD")));
+        }
+        ZoneId zona = ZoneId.systemDefault();
+        return registros
+                .reduce(new SerieColumnas(), (serie, registro) -> {
+                    serie.agregar(registro.getTimestamp().atZone(zona).toInstant().toEpochMilli(), lector.apply(registro));
+                    return serie;
+                })
+                .map(serie -> ResponseEntity.ok(columnas(serie)));
+    }
+
+    /**
+     * Registros de [inicio, fin): los dias archivados se leen de disco en un hilo de
+     * boundedElastic y el resto del cursor reactivo
+     */
+    private Flux<TuyaSensorData> historial(LocalDateTime inicio, LocalDateTime fin) {
+        LocalDateTime limite = archivoDatos.limiteTuya();
+        if (limite == null || !inicio.isBefore(limite)) {
+            return repository.findHistorial(inicio, fin);
+        }
+        Flux<TuyaSensorData> archivados = Flux.defer(() -> {
+            List<TuyaSensorData> registros = new ArrayList<>();
+            archivoDatos.recorrerTuya(inicio, fin.isBefore(limite) ? fin : limite, registros::add);
+            return Flux.fromIterable(registros);
+        }).subscribeOn(Schedulers.boundedElastic());
+        return fin.isAfter(limite) ? archivados.concatWith(repository.findHistorial(limite, fin)) : archivados;
+    }
+
+    @Operation(summary = "Obtener registro por ID")
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<TuyaSensorData>> findById(@PathVariable String id) {
+        return repository.findById(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Escribe la serie en columnas; se arma en memoria porque los arreglos t y v no se pueden
+     * enviar antes de terminar de leer
+     */
+    private byte[] columnas(SerieColumnas serie) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(serie.tamano() * 24 + 16);
+        try (JsonGenerator generador = objectMapper.getFactory().createGenerator(salida)) {
+            serie.escribir(generador);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+
+    private Map<String, Object> createErrorResponse(String title, String message, String errorCode) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("timestamp", LocalDateTime.now().toString());
+        response.put("error_title", title);
+        response.put("error_message", message);
+        response.put("error_code", errorCode);
+        return response;
+    }
+
+}
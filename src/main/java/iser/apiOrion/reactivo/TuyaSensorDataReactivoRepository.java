@@ -0,0 +1,23 @@
+package iser.apiOrion.reactivo;
+
+import iser.apiOrion.collection.TuyaSensorData;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repositorio reactivo de las lecturas Tuya, solo para el perfil reactivo
+ */
+public interface TuyaSensorDataReactivoRepository extends ReactiveMongoRepository<TuyaSensorData, String> {
+
+    Flux<TuyaSensorData> findTop10ByOrderByTimestampDesc();
+
+    /**
+     * Lecturas con desde <= timestamp < hasta en orden cronologico, igual que el historial de la pila servlet
+     */
+    @Query(value = "{ 'timestamp': { $gte: ?0, $lt: ?1 } }", sort = "{ 'timestamp': 1 }")
+    Flux<TuyaSensorData> findHistorial(LocalDateTime desde, LocalDateTime hasta);
+
+}
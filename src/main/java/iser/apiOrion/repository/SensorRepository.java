@@ -10,4 +10,6 @@ public interface SensorRepository extends MongoRepository<Sensor, String> {
 
     List<Sensor> findByIdEstacion(String idEstacion);
 
+    List<Sensor> findByIndiceIsNull();
+
 }
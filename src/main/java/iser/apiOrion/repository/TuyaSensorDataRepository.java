@@ -3,11 +3,15 @@ package iser.apiOrion.repository;
 import iser.apiOrion.collection.TuyaSensorData;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.List;
+
 
 import org.springframework.stereotype.Repository;
 @Repository
 public interface TuyaSensorDataRepository extends MongoRepository<TuyaSensorData, String> {
 
+    List<TuyaSensorData> findTop10ByOrderByTimestampDesc();
+
 }
 
 
@@ -1,14 +1,30 @@
 package iser.apiOrion.service;
 
+import iser.apiOrion.DTO.DatosDTO;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.Date;
+import java.util.List;
 
 public interface DatosService {
 
-    ResponseEntity<?> rangofecha(Date fechainicio, Date fechafin, String idSensor);
+    ResponseEntity<?> rangofecha(Date fechainicio, Date fechafin, String idSensor, Integer maxPuntos);
 
+    ResponseEntity<?> rangofechaSensores(Date fechainicio, Date fechafin, List<String> idSensores, String idEstacion, Integer maxPuntos);
 
-    ResponseEntity<?> insertar(String idSensor, String valor, Date fecha);
+    ResponseEntity<?> rangofechaPagina(Date fechainicio, Date fechafin, String idSensor, Integer limite, String cursor);
+
+    ResponseEntity<StreamingResponseBody> rangofechaStream(Date fechainicio, Date fechafin, String idSensor, String formato, Integer maxPuntos);
+
+    ResponseEntity<?> rangofechaAgregado(Date fechainicio, Date fechafin, String idSensor, String intervalo, String agregaciones);
+
+
+    ResponseEntity<?> insertar(DatosDTO datosDTO, Date fecha, Long relojDispositivo);
+
+    ResponseEntity<?> insertarLote(List<DatosDTO> lote, Date fecha, Long relojDispositivo);
+
+    ResponseEntity<?> insertarBinario(InputStream cuerpo, Date fecha, Long relojDispositivo);
 
 }
@@ -0,0 +1,11 @@
+package iser.apiOrion.service;
+
+import org.springframework.http.ResponseEntity;
+
+public interface IndiceService {
+
+    void verificarIndices();
+
+    ResponseEntity<?> estadisticas();
+
+}
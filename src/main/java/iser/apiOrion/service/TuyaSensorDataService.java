@@ -2,10 +2,15 @@ package iser.apiOrion.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import iser.apiOrion.almacen.ArchivoDatos;
 import iser.apiOrion.collection.TuyaSensorData;
 import iser.apiOrion.repository.TuyaSensorDataRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -21,6 +26,8 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Servicio Tuya con URLs CORREGIDAS
@@ -40,6 +47,12 @@ public class TuyaSensorDataService {
     @Autowired
     private TuyaSensorDataRepository repository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ArchivoDatos archivoDatos;
+
     // CONFIGURACIÓN DESDE application.properties
     @Value("${tuya.api.access-id}")
     private String clientId;
@@ -53,7 +66,8 @@ public class TuyaSensorDataService {
     @Value("${tuya.api.device-id}")
     private String deviceId;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private RestTemplate restTemplate;
     
     // CACHE INTELIGENTE DE ACCESS TOKEN
     private String cachedAccessToken = null;
@@ -642,6 +656,38 @@ public class TuyaSensorDataService {
         return repository.findAll();
     }
 
+    /**
+     * Ultimos 10 registros por fecha, leidos con el indice timestamp_desc
+     */
+    public List<TuyaSensorData> findUltimos() {
+        return repository.findTop10ByOrderByTimestampDesc();
+    }
+
+    public long count() {
+        return repository.count();
+    }
+
+    /**
+     * Recorre los registros de un rango [desde, hasta) en orden cronologico con un cursor,
+     * sin cargar la coleccion completa en memoria. Los dias que la retencion ya movio al
+     * archivo se leen de sus archivos, sin id.
+     */
+    public void recorrerHistorial(LocalDateTime desde, LocalDateTime hasta, Consumer<TuyaSensorData> consumidor) {
+        LocalDateTime limite = archivoDatos.limiteTuya();
+        if (limite != null && desde.isBefore(limite)) {
+            archivoDatos.recorrerTuya(desde, hasta.isBefore(limite) ? hasta : limite, consumidor);
+            if (!hasta.isAfter(limite)) {
+                return;
+            }
+            desde = limite;
+        }
+        Query query = new Query(Criteria.where("timestamp").gte(desde).lt(hasta))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp"));
+        try (Stream<TuyaSensorData> registros = mongoTemplate.stream(query, TuyaSensorData.class)) {
+            registros.forEach(consumidor);
+        }
+    }
+
     public Optional<TuyaSensorData> findById(String id) {
         return repository.findById(id);
     }
@@ -1,25 +1,70 @@
 package iser.apiOrion.serviceImplement;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iser.apiOrion.DTO.DatosAgregadosDTO;
+import iser.apiOrion.DTO.DatosDTO;
 import iser.apiOrion.DTO.DatosGraficaDTO;
+import iser.apiOrion.DTO.PaginaDatosDTO;
+import iser.apiOrion.DTO.PuntoAgregadoDTO;
+import iser.apiOrion.DTO.ResultadoItemDTO;
+import iser.apiOrion.DTO.ResultadoLoteDTO;
+import iser.apiOrion.DTO.SerieSensorDTO;
+import iser.apiOrion.almacen.AlmacenDatos;
+import iser.apiOrion.almacen.MarcasSecuencia;
+import iser.apiOrion.almacen.PoliticaFechas;
+import iser.apiOrion.almacen.ResumenesDatos;
+import iser.apiOrion.almacen.ValorDatos;
 import iser.apiOrion.auth.serviceImpl.JwtTokenProvider;
+import iser.apiOrion.grafica.ReduccionLttb;
+import iser.apiOrion.grafica.SerieColumnas;
+import iser.apiOrion.ingesta.AdmisionDatos;
+import iser.apiOrion.ingesta.LecturasProtobuf;
+import iser.apiOrion.ingesta.LimitadorIngesta;
+import iser.apiOrion.ingesta.RegistroSensores;
 import iser.apiOrion.collection.Datos;
+import iser.apiOrion.collection.Sensor;
 import iser.apiOrion.repository.DatosRepository;
 import iser.apiOrion.repository.SensorRepository;
 import iser.apiOrion.service.DatosService;
+import iser.apiOrion.vivo.CentroDatosVivo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static iser.apiOrion.constant.messageConstant.buildMessage;
 
 @Service
 public class DatosServiceImpl implements DatosService {
 
+    /**
+     * logger :: log for DatosServiceImpl
+     */
+    private static final Logger logger = LoggerFactory.getLogger(DatosServiceImpl.class);
+
     /**
      * Repositorio de datos
      */
@@ -38,27 +83,136 @@ public class DatosServiceImpl implements DatosService {
     @Autowired
     JwtTokenProvider jwtTokenProvider;
 
+    /**
+     * Almacen de datos (documento por dato o bucket por hora segun datos.almacenamiento.modo)
+     */
+    @Autowired
+    AlmacenDatos almacenDatos;
+
+    /**
+     * Resumenes por hora y por dia para las consultas agregadas
+     */
+    @Autowired
+    ResumenesDatos resumenesDatos;
+
+    /**
+     * Cantidad maxima de datos aceptados en un lote
+     */
+    @Value("${datos.lote.tamano-maximo:5000}")
+    private int tamanoMaximoLote;
+
+    /**
+     * Cantidad de datos por pagina cuando no se indica limite
+     */
+    @Value("${datos.pagina.tamano:1000}")
+    private int tamanoPagina;
+
+    /**
+     * Cantidad maxima de datos por pagina
+     */
+    @Value("${datos.pagina.tamano-maximo:10000}")
+    private int tamanoMaximoPagina;
+
+    /**
+     * Admision y escritura de un dato, comun con la pila reactiva
+     */
+    @Autowired
+    AdmisionDatos admisionDatos;
+
+    /**
+     * Marcas de secuencia por sensor para descartar los reintentos
+     */
+    @Autowired
+    MarcasSecuencia marcasSecuencia;
+
+    /**
+     * Registro en memoria de sensores, para validar cada dato sin consultar la base de datos
+     */
+    @Autowired
+    RegistroSensores registroSensores;
+
+    /**
+     * Politica de fechas del dispositivo: correccion del reloj y limites de plausibilidad
+     */
+    @Autowired
+    PoliticaFechas politicaFechas;
+
+    /**
+     * Limite de tasa por sensor de la ingesta
+     */
+    @Autowired
+    LimitadorIngesta limitadorIngesta;
+
+    /**
+     * Canal en vivo, recibe los datos escritos
+     */
+    @Autowired
+    CentroDatosVivo centroDatosVivo;
+
+    /**
+     * Mapper de jackson para escribir las respuestas en streaming
+     */
+    @Autowired
+    ObjectMapper objectMapper;
+
+    /**
+     * Zona horaria para agrupar por hora y por dia
+     */
+    @Value("${datos.zona-horaria:America/Bogota}")
+    private String zonaHoraria;
+
+    /**
+     * Unidades de $dateTrunc para cada intervalo aceptado
+     */
+    private static final Map<String, String> INTERVALOS = Map.of(
+            "minuto", "minute", "minute", "minute",
+            "hora", "hour", "hour", "hour",
+            "dia", "day", "day", "day");
+
+    /**
+     * Agregaciones aceptadas
+     */
+    private static final Set<String> AGREGACIONES = Set.of("min", "max", "avg", "count", "sum");
+
     /**
      * Metodo que permite obtener los datos de un sensor en un rango de fechas
      * @param fechainicio fecha de inicio
      * @param fechafin fecha final
      * @param idSensor id del sensor
+     * @param maxPuntos cantidad maxima de puntos; si se indica, la serie se reduce con LTTB
+     *                  en la misma pasada del cursor
      * @return lista de datos
      */
     @Override
-    public ResponseEntity<?> rangofecha(Date fechainicio, Date fechafin, String idSensor) {
+    public ResponseEntity<?> rangofecha(Date fechainicio, Date fechafin, String idSensor, Integer maxPuntos) {
         try {
-            List<Datos> datos = datosRepository.findByIdSensorAndFechaBetween(idSensor, fechainicio, fechafin);
+            if (maxPuntos != null && maxPuntos < 3) {
+                return ResponseEntity.badRequest().body(buildMessage("maxPoints debe ser mayor o igual a 3"));
+            }
             List<DatosGraficaDTO> datosGraficaDTOList = new ArrayList<>();
-            for(Datos dato : datos){
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            if (maxPuntos != null) {
+                ReduccionLttb reduccion = new ReduccionLttb(fechainicio.getTime(), fechafin.getTime(), maxPuntos,
+                        (fecha, valor) -> {
+                            DatosGraficaDTO datosGraficaDTO = new DatosGraficaDTO();
+                            datosGraficaDTO.setTime(dateFormat.format(new Date(fecha)));
+                            datosGraficaDTO.setValue(ValorDatos.formatear(valor));
+                            datosGraficaDTOList.add(datosGraficaDTO);
+                        });
+                almacenDatos.recorrerRango(idSensor, fechainicio, fechafin, dato -> {
+                    if (dato.getValor() != null) {
+                        reduccion.agregar(dato.getFecha().getTime(), dato.getValor());
+                    }
+                });
+                reduccion.finalizar();
+                return ResponseEntity.ok(datosGraficaDTOList);
+            }
+            almacenDatos.recorrerRango(idSensor, fechainicio, fechafin, dato -> {
                 DatosGraficaDTO datosGraficaDTO = new DatosGraficaDTO();
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-                String date = dateFormat.format(dato.getFecha());
-                System.out.println("Fecha por dato: "+date);
-                datosGraficaDTO.setTime(date);
-                datosGraficaDTO.setValue(dato.getValor());
+                datosGraficaDTO.setTime(dateFormat.format(dato.getFecha()));
+                datosGraficaDTO.setValue(ValorDatos.formatear(dato.getValor()));
                 datosGraficaDTOList.add(datosGraficaDTO);
-            }
+            });
             return ResponseEntity.ok(datosGraficaDTOList);
         }catch (Exception e){
             System.out.println("Error: "+e.getMessage());
@@ -67,26 +221,485 @@ public class DatosServiceImpl implements DatosService {
     }
 
     /**
-     * Metodo que permite insertar un dato
+     * Metodo que permite obtener en una sola consulta los datos de varios sensores, o de todos
+     * los sensores de una estacion, en un rango de fechas agrupados por sensor
+     * @param fechainicio fecha de inicio
+     * @param fechafin fecha final
+     * @param idSensores ids de los sensores
+     * @param idEstacion id de la estacion, si no se indican sensores
+     * @param maxPuntos cantidad maxima de puntos por sensor; si se indica, cada serie se reduce con LTTB
+     * @return una serie por sensor, en el orden pedido
+     */
+    @Override
+    public ResponseEntity<?> rangofechaSensores(Date fechainicio, Date fechafin, List<String> idSensores, String idEstacion, Integer maxPuntos) {
+        try {
+            if (maxPuntos != null && maxPuntos < 3) {
+                return ResponseEntity.badRequest().body(buildMessage("maxPoints debe ser mayor o igual a 3"));
+            }
+            List<String> ids;
+            if (idSensores != null && !idSensores.isEmpty()) {
+                ids = idSensores.stream().map(String::trim).filter(id -> !id.isEmpty()).distinct().toList();
+            } else if (idEstacion != null && !idEstacion.isBlank()) {
+                ids = sensorRepository.findByIdEstacion(idEstacion).stream().map(Sensor::getId).toList();
+            } else {
+                return ResponseEntity.badRequest().body(buildMessage("debe indicar idSensores o idEstacion"));
+            }
+
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            Map<String, SerieSensorDTO> series = new LinkedHashMap<>();
+            for (String id : ids) {
+                SerieSensorDTO serie = new SerieSensorDTO();
+                serie.setIdSensor(id);
+                serie.setDatos(new ArrayList<>());
+                series.put(id, serie);
+            }
+            if (ids.isEmpty()) {
+                return ResponseEntity.ok(new ArrayList<>(series.values()));
+            }
+
+            // los datos llegan ordenados por sensor, asi que solo hay una reduccion abierta a la vez
+            Map<String, ReduccionLttb> reducciones = new HashMap<>();
+            almacenDatos.recorrerRangoSensores(ids, fechainicio, fechafin, dato -> {
+                List<DatosGraficaDTO> datos = series.get(dato.getIdSensor()).getDatos();
+                if (maxPuntos == null) {
+                    DatosGraficaDTO datosGraficaDTO = new DatosGraficaDTO();
+                    datosGraficaDTO.setTime(dateFormat.format(dato.getFecha()));
+                    datosGraficaDTO.setValue(ValorDatos.formatear(dato.getValor()));
+                    datos.add(datosGraficaDTO);
+                    return;
+                }
+                if (dato.getValor() == null) {
+                    return;
+                }
+                ReduccionLttb reduccion = reducciones.get(dato.getIdSensor());
+                if (reduccion == null) {
+                    reducciones.values().forEach(ReduccionLttb::finalizar);
+                    reducciones.clear();
+                    reduccion = new ReduccionLttb(fechainicio.getTime(), fechafin.getTime(), maxPuntos,
+                            (fecha, valor) -> {
+                                DatosGraficaDTO datosGraficaDTO = new DatosGraficaDTO();
+                                datosGraficaDTO.setTime(dateFormat.format(new Date(fecha)));
+                                datosGraficaDTO.setValue(ValorDatos.formatear(valor));
+                                datos.add(datosGraficaDTO);
+                            });
+                    reducciones.put(dato.getIdSensor(), reduccion);
+                }
+                reduccion.agregar(dato.getFecha().getTime(), dato.getValor());
+            });
+            reducciones.values().forEach(ReduccionLttb::finalizar);
+            return ResponseEntity.ok(new ArrayList<>(series.values()));
+        }catch (Exception e){
+            System.out.println("Error: "+e.getMessage());
+            return ResponseEntity.badRequest().body("Error: "+e.getMessage());
+        }
+    }
+
+    /**
+     * Metodo que permite obtener los datos de un sensor en un rango de fechas por paginas.
+     * La paginacion es por keyset sobre (fecha, id): el cursor guarda el ultimo dato entregado
+     * y la pagina siguiente continua desde ahi, por lo que una pagina profunda cuesta lo mismo
+     * que la primera.
+     * @param fechainicio fecha de inicio
+     * @param fechafin fecha final
+     * @param idSensor id del sensor
+     * @param limite cantidad de datos por pagina
+     * @param cursor cursor devuelto en la pagina anterior, o null para la primera pagina
+     * @return pagina de datos con el cursor de la siguiente
+     */
+    @Override
+    public ResponseEntity<?> rangofechaPagina(Date fechainicio, Date fechafin, String idSensor, Integer limite, String cursor) {
+        try {
+            int tamano = limite != null ? limite : tamanoPagina;
+            if (tamano < 1 || tamano > tamanoMaximoPagina) {
+                return ResponseEntity.badRequest().body(buildMessage("limite debe estar entre 1 y " + tamanoMaximoPagina));
+            }
+            Date despuesFecha = null;
+            String despuesId = null;
+            if (cursor != null && !cursor.isBlank()) {
+                String[] partes;
+                try {
+                    partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+                    despuesFecha = new Date(Long.parseLong(partes[0]));
+                    despuesId = partes[1];
+                } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                    return ResponseEntity.badRequest().body(buildMessage("cursor invalido"));
+                }
+            }
+
+            // se pide un dato de mas para saber si hay pagina siguiente sin contar
+            List<Datos> datos = almacenDatos.pagina(idSensor, fechainicio, fechafin, despuesFecha, despuesId, tamano + 1);
+            boolean haySiguiente = datos.size() > tamano;
+            if (haySiguiente) {
+                datos = datos.subList(0, tamano);
+            }
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            List<DatosGraficaDTO> datosGraficaDTOList = new ArrayList<>(datos.size());
+            for (Datos dato : datos) {
+                DatosGraficaDTO datosGraficaDTO = new DatosGraficaDTO();
+                datosGraficaDTO.setTime(dateFormat.format(dato.getFecha()));
+                datosGraficaDTO.setValue(ValorDatos.formatear(dato.getValor()));
+                datosGraficaDTOList.add(datosGraficaDTO);
+            }
+            PaginaDatosDTO pagina = new PaginaDatosDTO();
+            pagina.setDatos(datosGraficaDTOList);
+            if (haySiguiente) {
+                Datos ultimo = datos.get(datos.size() - 1);
+                String clave = ultimo.getFecha().getTime() + ":" + ultimo.getId();
+                pagina.setSiguiente(Base64.getUrlEncoder().withoutPadding().encodeToString(clave.getBytes(StandardCharsets.UTF_8)));
+            }
+            return ResponseEntity.ok(pagina);
+        }catch (Exception e){
+            System.out.println("Error: "+e.getMessage());
+            return ResponseEntity.badRequest().body("Error: "+e.getMessage());
+        }
+    }
+
+    /**
+     * Metodo que permite obtener los datos de un sensor en un rango de fechas escribiendo cada
+     * dato directamente en la respuesta mientras se recorre el cursor de mongo, de modo que la
+     * memoria usada no depende del tamano del rango.
+     * @param fechainicio fecha de inicio
+     * @param fechafin fecha final
      * @param idSensor id del sensor
-     * @param valor valor del sensor
-     * @param fecha fecha del dato
+     * @param formato ndjson (un objeto por linea), json (un arreglo enviado por partes) o
+     *                columnas ({"t":[...],"v":[...]})
+     * @param maxPuntos cantidad maxima de puntos en formato columnas; si se indica, la serie se
+     *                  reduce con LTTB
+     * @return cuerpo que escribe los datos en la respuesta
+     */
+    @Override
+    public ResponseEntity<StreamingResponseBody> rangofechaStream(Date fechainicio, Date fechafin, String idSensor, String formato, Integer maxPuntos) {
+        if ("columnas".equalsIgnoreCase(formato)) {
+            return rangofechaColumnas(fechainicio, fechafin, idSensor, maxPuntos);
+        }
+        boolean ndjson = !"json".equalsIgnoreCase(formato);
+        StreamingResponseBody cuerpo = salida -> {
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            try (JsonGenerator generador = objectMapper.getFactory().createGenerator(salida)) {
+                if (ndjson) {
+                    generador.setRootValueSeparator(new SerializedString("\n"));
+                } else {
+                    generador.writeStartArray();
+                }
+                almacenDatos.recorrerRango(idSensor, fechainicio, fechafin, dato -> {
+                    try {
+                        generador.writeStartObject();
+                        generador.writeStringField("time", dateFormat.format(dato.getFecha()));
+                        generador.writeStringField("value", ValorDatos.formatear(dato.getValor()));
+                        generador.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (ndjson) {
+                    generador.writeRaw('\n');
+                } else {
+                    generador.writeEndArray();
+                }
+            } catch (UncheckedIOException e) {
+                System.out.println("Error: conexion cerrada durante el streaming de " + idSensor + ": " + e.getMessage());
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(cuerpo);
+    }
+
+    /**
+     * Metodo que permite obtener los datos de un sensor como dos arreglos paralelos
+     * {"t":[epochMillis...],"v":[valor...]}. El cursor se recorre una vez y los puntos se
+     * guardan en los arreglos primitivos de SerieColumnas, sin un DTO por punto; con maxPuntos
+     * la serie guardada no pasa de ese tamano.
+     * @param fechainicio fecha de inicio
+     * @param fechafin fecha final
+     * @param idSensor id del sensor
+     * @param maxPuntos cantidad maxima de puntos; si se indica, la serie se reduce con LTTB
+     * @return cuerpo que escribe la serie en la respuesta
+     */
+    private ResponseEntity<StreamingResponseBody> rangofechaColumnas(Date fechainicio, Date fechafin, String idSensor, Integer maxPuntos) {
+        if (maxPuntos != null && maxPuntos < 3) {
+            StreamingResponseBody error = salida -> salida.write(buildMessage("maxPoints debe ser mayor o igual a 3").getBytes(StandardCharsets.UTF_8));
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(error);
+        }
+        StreamingResponseBody cuerpo = salida -> {
+            try (JsonGenerator generador = objectMapper.getFactory().createGenerator(salida)) {
+                SerieColumnas serie = new SerieColumnas();
+                if (maxPuntos != null) {
+                    ReduccionLttb reduccion = new ReduccionLttb(fechainicio.getTime(), fechafin.getTime(), maxPuntos, serie);
+                    almacenDatos.recorrerRango(idSensor, fechainicio, fechafin, dato -> {
+                        if (dato.getValor() != null) {
+                            reduccion.agregar(dato.getFecha().getTime(), dato.getValor());
+                        }
+                    });
+                    reduccion.finalizar();
+                } else {
+                    almacenDatos.recorrerRango(idSensor, fechainicio, fechafin,
+                            dato -> serie.agregar(dato.getFecha().getTime(), dato.getValor()));
+                }
+                serie.escribir(generador);
+            } catch (UncheckedIOException e) {
+                System.out.println("Error: conexion cerrada durante el streaming de " + idSensor + ": " + e.getMessage());
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(cuerpo);
+    }
+
+    /**
+     * Metodo que permite obtener los datos de un sensor agregados por intervalo. La agregacion
+     * se hace en mongo, los datos crudos no se cargan en memoria.
+     * @param fechainicio fecha de inicio
+     * @param fechafin fecha final
+     * @param idSensor id del sensor
+     * @param intervalo minuto, hora o dia
+     * @param agregaciones lista separada por comas de min, max, avg, count y sum (todas si es null)
+     * @return datos agregados
+     */
+    @Override
+    public ResponseEntity<?> rangofechaAgregado(Date fechainicio, Date fechafin, String idSensor, String intervalo, String agregaciones) {
+        try {
+            String unidad = INTERVALOS.get(intervalo.toLowerCase());
+            if (unidad == null) {
+                return ResponseEntity.badRequest().body(buildMessage("interval debe ser minuto, hora o dia"));
+            }
+            List<String> solicitadas = agregaciones == null || agregaciones.isBlank()
+                    ? List.of("min", "max", "avg", "count")
+                    : Arrays.stream(agregaciones.split(",")).map(String::trim).map(String::toLowerCase).distinct().toList();
+            for (String agregacion : solicitadas) {
+                if (!AGREGACIONES.contains(agregacion)) {
+                    return ResponseEntity.badRequest().body(buildMessage("agg no soportada: " + agregacion));
+                }
+            }
+
+            List<PuntoAgregadoDTO> puntos = resumenesDatos.activo() && !"minute".equals(unidad)
+                    ? resumenesDatos.agregar(idSensor, fechainicio, fechafin, unidad, almacenDatos)
+                    : almacenDatos.agregar(idSensor, fechainicio, fechafin, unidad, zonaHoraria);
+            for (PuntoAgregadoDTO punto : puntos) {
+                if (solicitadas.contains("avg")) {
+                    punto.setAvg(punto.getSum() / punto.getCount());
+                }
+                if (!solicitadas.contains("sum")) {
+                    punto.setSum(null);
+                }
+                if (!solicitadas.contains("count")) {
+                    punto.setCount(null);
+                }
+                if (!solicitadas.contains("min")) {
+                    punto.setMin(null);
+                }
+                if (!solicitadas.contains("max")) {
+                    punto.setMax(null);
+                }
+            }
+
+            DatosAgregadosDTO datosAgregadosDTO = new DatosAgregadosDTO();
+            datosAgregadosDTO.setIdSensor(idSensor);
+            datosAgregadosDTO.setIntervalo(intervalo.toLowerCase());
+            datosAgregadosDTO.setAgregaciones(solicitadas);
+            datosAgregadosDTO.setPuntos(puntos);
+            return ResponseEntity.ok(datosAgregadosDTO);
+        }catch (Exception e){
+            System.out.println("Error: "+e.getMessage());
+            return ResponseEntity.badRequest().body("Error: "+e.getMessage());
+        }
+    }
+
+    /**
+     * Metodo que permite insertar un dato con el flujo de admision de AdmisionDatos. En modo
+     * diferido el dato se encola y se responde 202 si fue aceptado o 429 si la cola esta llena.
+     * Si el dato trae secuencia y ya se recibio, se responde 200 con estado duplicado sin escribirlo.
+     * @param datosDTO dato recibido del sensor
+     * @param fecha fecha de recepcion, usada si el dato no trae fecha
+     * @param relojDispositivo hora del dispositivo al enviar, para corregir su reloj (opcional)
      * @return dato insertado
      */
     @Override
-    public ResponseEntity<?> insertar(String idSensor, String valor, Date fecha) {
+    public ResponseEntity<?> insertar(DatosDTO datosDTO, Date fecha, Long relojDispositivo) {
+        return admisionDatos.insertar(datosDTO, fecha, relojDispositivo);
+    }
+
+    /**
+     * Metodo que permite insertar un lote de datos en una sola escritura masiva
+     * @param lote datos recibidos, un elemento nulo representa un dato mal formado
+     * @param fecha fecha de recepcion, usada para los datos sin fecha
+     * @param relojDispositivo hora del dispositivo al enviar, para corregir su reloj (opcional)
+     * @return resultado de cada dato del lote
+     */
+    @Override
+    public ResponseEntity<?> insertarLote(List<DatosDTO> lote, Date fecha, Long relojDispositivo) {
         try {
-            Datos datos = new Datos();
-            datos.setIdSensor(idSensor);
-            datos.setValor(valor);
-            datos.setFecha(fecha);
+            if (lote == null || lote.isEmpty()) {
+                return ResponseEntity.badRequest().body(buildMessage("El lote esta vacio"));
+            }
+            if (lote.size() > tamanoMaximoLote) {
+                return ResponseEntity.badRequest().body(buildMessage("El lote supera el maximo de " + tamanoMaximoLote + " datos"));
+            }
 
-            return ResponseEntity.ok(datosRepository.save(datos));
+            ResultadoItemDTO[] resultados = new ResultadoItemDTO[lote.size()];
+            List<Datos> validos = new ArrayList<>(lote.size());
+            List<Integer> posiciones = new ArrayList<>(lote.size());
+            Map<String, Long> esperas = new HashMap<>();
+            long desfase = politicaFechas.desfase(relojDispositivo, fecha);
+            for (int i = 0; i < lote.size(); i++) {
+                DatosDTO datosDTO = lote.get(i);
+                String error = AdmisionDatos.validar(datosDTO);
+                if (error == null) {
+                    error = registroSensores.validar(datosDTO.getIdSensor());
+                }
+                if (error == null) {
+                    error = limite(esperas, datosDTO.getIdSensor());
+                }
+                Date fechaDato = null;
+                if (error == null) {
+                    fechaDato = politicaFechas.resolver(datosDTO.getFecha(), desfase, fecha);
+                    if (fechaDato == null) {
+                        error = "fecha fuera de rango: " + datosDTO.getFecha().getTime();
+                    }
+                }
+                if (error != null) {
+                    resultados[i] = new ResultadoItemDTO(i, "rechazado", null, error);
+                    continue;
+                }
+                if (datosDTO.getSecuencia() != null && !marcasSecuencia.reservar(datosDTO.getIdSensor(), datosDTO.getSecuencia())) {
+                    resultados[i] = new ResultadoItemDTO(i, "duplicado", null, "secuencia ya recibida: " + datosDTO.getSecuencia());
+                    continue;
+                }
+                validos.add(AdmisionDatos.construir(datosDTO, fechaDato));
+                posiciones.add(i);
+            }
+
+            ResultadoLoteDTO resultadoLoteDTO = null;
+            try {
+                resultadoLoteDTO = escribir(resultados, validos, posiciones);
+                return ResponseEntity.ok(resultadoLoteDTO);
+            } finally {
+                for (int i : posiciones) {
+                    DatosDTO datosDTO = lote.get(i);
+                    if (datosDTO.getSecuencia() == null) {
+                        continue;
+                    }
+                    if (resultadoLoteDTO == null || "rechazado".equals(resultados[i].getEstado())) {
+                        marcasSecuencia.liberar(datosDTO.getIdSensor(), datosDTO.getSecuencia());
+                    } else {
+                        marcasSecuencia.confirmar(datosDTO.getIdSensor(), datosDTO.getSecuencia());
+                    }
+                }
+            }
         }catch (Exception e){
             System.out.println("Error: "+e.getMessage());
             return ResponseEntity.badRequest().body("Error: "+e.getMessage());
         }
     }
 
+    /**
+     * Metodo que permite insertar un lote binario de lecturas (protobuf delimitado, ver
+     * resources/proto/lecturas.proto). Cada lectura identifica al sensor por su indice compacto,
+     * que se resuelve en el registro de sensores en memoria, y puede traer la fecha del dispositivo.
+     * @param cuerpo cuerpo de la peticion
+     * @param fecha fecha de recepcion, usada para las lecturas sin fecha
+     * @param relojDispositivo hora del dispositivo al enviar, para corregir su reloj (opcional)
+     * @return resultado de cada lectura del lote
+     */
+    @Override
+    public ResponseEntity<?> insertarBinario(InputStream cuerpo, Date fecha, Long relojDispositivo) {
+        try {
+            List<LecturasProtobuf.Lectura> lecturas;
+            try {
+                lecturas = LecturasProtobuf.decodificar(cuerpo, tamanoMaximoLote);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(buildMessage(e.getMessage()));
+            }
+            if (lecturas.isEmpty()) {
+                return ResponseEntity.badRequest().body(buildMessage("El lote esta vacio"));
+            }
+
+            ResultadoItemDTO[] resultados = new ResultadoItemDTO[lecturas.size()];
+            List<Datos> validos = new ArrayList<>(lecturas.size());
+            List<Integer> posiciones = new ArrayList<>(lecturas.size());
+            Map<String, Long> esperas = new HashMap<>();
+            long desfase = politicaFechas.desfase(relojDispositivo, fecha);
+            for (int i = 0; i < lecturas.size(); i++) {
+                LecturasProtobuf.Lectura lectura = lecturas.get(i);
+                String idSensor = registroSensores.idSensor(lectura.sensor());
+                String error = idSensor == null ? "sensor desconocido: " + lectura.sensor() : registroSensores.validar(idSensor);
+                if (error == null) {
+                    error = limite(esperas, idSensor);
+                }
+                if (error != null) {
+                    resultados[i] = new ResultadoItemDTO(i, "rechazado", null, error);
+                    continue;
+                }
+                if (!Float.isFinite(lectura.valor())) {
+                    resultados[i] = new ResultadoItemDTO(i, "rechazado", null, "valor no es numerico");
+                    continue;
+                }
+                Date fechaLectura = politicaFechas.resolver(lectura.fecha(), desfase, fecha);
+                if (fechaLectura == null) {
+                    resultados[i] = new ResultadoItemDTO(i, "rechazado", null, "fecha fuera de rango: " + lectura.fecha());
+                    continue;
+                }
+                Datos datos = new Datos();
+                datos.setIdSensor(idSensor);
+                datos.setValor(ValorDatos.decimal(lectura.valor()));
+                datos.setFecha(fechaLectura);
+                datos.setVersionEsquema(Datos.VERSION_ESQUEMA);
+                validos.add(datos);
+                posiciones.add(i);
+            }
+            return ResponseEntity.ok(escribir(resultados, validos, posiciones));
+        }catch (Exception e){
+            System.out.println("Error: "+e.getMessage());
+            return ResponseEntity.badRequest().body("Error: "+e.getMessage());
+        }
+    }
+
+    /**
+     * Metodo que permite aplicar el limite por sensor de un lote, un token por sensor y peticion
+     * @param esperas espera de cada sensor ya consultado en la peticion
+     * @param idSensor id de un sensor registrado
+     * @return null si se admite, o el error del dato
+     */
+    private String limite(Map<String, Long> esperas, String idSensor) {
+        long espera = esperas.computeIfAbsent(idSensor, limitadorIngesta::admitirSensor);
+        return espera > 0 ? "limite de peticiones del sensor excedido, intente de nuevo en " + espera + " s" : null;
+    }
+
+    /**
+     * Metodo que permite escribir los datos validos de un lote y completar el resultado
+     * @param resultados resultado por posicion, ya contiene los rechazados por validacion
+     * @param validos datos a escribir
+     * @param posiciones posicion en el lote de cada dato valido
+     * @return resultado del lote
+     */
+    private ResultadoLoteDTO escribir(ResultadoItemDTO[] resultados, List<Datos> validos, List<Integer> posiciones) {
+        Map<Integer, String> errores = almacenDatos.escribirLote(validos);
+        centroDatosVivo.publicar(validos, errores);
+        for (int j = 0; j < validos.size(); j++) {
+            int i = posiciones.get(j);
+            String error = errores.get(j);
+            resultados[i] = error == null
+                    ? new ResultadoItemDTO(i, "insertado", validos.get(j).getId(), null)
+                    : new ResultadoItemDTO(i, "rechazado", null, error);
+        }
+
+        int duplicados = 0;
+        for (ResultadoItemDTO resultado : resultados) {
+            if ("duplicado".equals(resultado.getEstado())) {
+                duplicados++;
+            }
+        }
+
+        ResultadoLoteDTO resultadoLoteDTO = new ResultadoLoteDTO();
+        resultadoLoteDTO.setTotal(resultados.length);
+        resultadoLoteDTO.setInsertados(validos.size() - errores.size());
+        resultadoLoteDTO.setDuplicados(duplicados);
+        resultadoLoteDTO.setRechazados(resultados.length - resultadoLoteDTO.getInsertados() - duplicados);
+        resultadoLoteDTO.setResultados(List.of(resultados));
+        logger.debug("Lote procesado: " + resultadoLoteDTO.getInsertados() + "/" + resultados.length + " insertados");
+        return resultadoLoteDTO;
+    }
 
 }
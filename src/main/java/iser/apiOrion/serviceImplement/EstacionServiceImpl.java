@@ -73,6 +73,7 @@ public class EstacionServiceImpl implements EstacionService {
                 estacionDTO.setEncargado(estacion.getEncargado());
                 estacionDTO.setEstado(estacion.getEstado());
                 estacionDTO.setIdTipoCultivo(estacion.getIdTipoCultivo());
+                estacionDTO.setRetencionDias(estacion.getRetencionDias());
                 descripcionTipoCultivo = tipoCultivoRepository.findById(estacion.getIdTipoCultivo()).get().getNombre();
                 estacionDTO.setDescripcionTipoCultivo((!Objects.equals(descripcionTipoCultivo, "") && descripcionTipoCultivo != null) ? descripcionTipoCultivo : "No se encontro el tipo de cultivo");
                 estacionDTO.setNumero_Asociados(usuarioEstacionRepository.countByIdEstacion(estacion.getId()));
@@ -115,6 +116,7 @@ public class EstacionServiceImpl implements EstacionService {
             estacionDTO.setEncargado(estacion.get().getEncargado());
             estacionDTO.setEstado(estacion.get().getEstado());
             estacionDTO.setIdTipoCultivo(estacion.get().getIdTipoCultivo());
+            estacionDTO.setRetencionDias(estacion.get().getRetencionDias());
             estacionDTO.setDescripcionTipoCultivo(tipoCultivoRepository.findById(estacion.get().getIdTipoCultivo()).get().getNombre());
             estacionDTO.setNumero_Asociados(usuarioEstacionRepository.countByIdEstacion(estacion.get().getId()));
             String usuarioEncargado = estacion
@@ -214,6 +216,7 @@ public class EstacionServiceImpl implements EstacionService {
                 estacionDTO.setEncargado(estacion.getEncargado());
                 estacionDTO.setEstado(estacion.getEstado());
                 estacionDTO.setIdTipoCultivo(estacion.getIdTipoCultivo());
+                estacionDTO.setRetencionDias(estacion.getRetencionDias());
                 estacionDTO.setDescripcionTipoCultivo(tipoCultivoRepository.findById(estacion.getIdTipoCultivo()).get().getNombre());
                 estacionDTO.setNumero_Asociados(usuarioEstacionRepository.countByIdEstacion(estacion.getId()));
                 String usuarioEncargado = estacion.getEncargado() == null
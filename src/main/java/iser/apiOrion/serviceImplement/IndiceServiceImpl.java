@@ -0,0 +1,207 @@
+package iser.apiOrion.serviceImplement;
+
+import iser.apiOrion.almacen.ResumenesDatos;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.collection.DatosBucket;
+import iser.apiOrion.collection.Estacion;
+import iser.apiOrion.collection.Sensor;
+import iser.apiOrion.collection.TuyaSensorData;
+import iser.apiOrion.collection.Usuario;
+import iser.apiOrion.collection.UsuarioEstacion;
+import iser.apiOrion.collection.Validacion;
+import iser.apiOrion.service.IndiceService;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+@Service
+public class IndiceServiceImpl implements IndiceService {
+
+    /**
+     * logger :: log for IndiceServiceImpl
+     */
+    private static final Logger logger = LoggerFactory.getLogger(IndiceServiceImpl.class);
+
+    /**
+     * Plantilla de mongo
+     */
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    /**
+     * Modo de almacenamiento de datos, define si se indexa datos_bucket
+     */
+    @Value("${datos.almacenamiento.modo:documento}")
+    private String modoAlmacenamiento;
+
+    /**
+     * Resumenes por hora y por dia
+     */
+    @Autowired
+    ResumenesDatos resumenesDatos;
+
+    /**
+     * Estado de cada indice declarado (coleccion.nombre -> presente, creado o error)
+     */
+    private final Map<String, String> estadoIndices = new ConcurrentHashMap<>();
+
+    /**
+     * Indice declarado para una coleccion
+     */
+    private record Declaracion(String coleccion, Index indice) {
+    }
+
+    /**
+     * Metodo que permite obtener los indices que la aplicacion necesita para sus consultas
+     * @return indices declarados
+     */
+    private List<Declaracion> declaraciones() {
+        List<Declaracion> declaraciones = new ArrayList<>();
+        // DatosRepository.findByIdSensorAndFechaBetween, recorridos por rango y paginas por keyset (fecha, _id)
+        declaraciones.add(new Declaracion(coleccion(Datos.class), new Index()
+                .on("id_sensor", Sort.Direction.ASC).on("fecha", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                .named("id_sensor_fecha_id")));
+        if ("bucket".equals(modoAlmacenamiento)) {
+            declaraciones.add(new Declaracion(coleccion(DatosBucket.class), new Index()
+                    .on("id_sensor", Sort.Direction.ASC).on("hora", Sort.Direction.ASC).named("id_sensor_hora")));
+        }
+        // Actualizacion incremental de los resumenes por fecha de escritura
+        declaraciones.add(new Declaracion(coleccion(Datos.class), new Index()
+                .on("recibido", Sort.Direction.ASC).named("recibido")));
+        if (resumenesDatos.activo()) {
+            declaraciones.add(new Declaracion(ResumenesDatos.COLECCION_HORA, new Index()
+                    .on("id_sensor", Sort.Direction.ASC).on("inicio", Sort.Direction.ASC).named("id_sensor_inicio")));
+            declaraciones.add(new Declaracion(ResumenesDatos.COLECCION_DIA, new Index()
+                    .on("id_sensor", Sort.Direction.ASC).on("inicio", Sort.Direction.ASC).named("id_sensor_inicio")));
+        }
+        // SensorRepository.findByIdEstacion
+        declaraciones.add(new Declaracion(coleccion(Sensor.class), new Index()
+                .on("idEstacion", Sort.Direction.ASC).named("idEstacion")));
+        // el indice de la ingesta binaria (RegistroSensores) es unico
+        declaraciones.add(new Declaracion(coleccion(Sensor.class), new Index()
+                .on("indice", Sort.Direction.ASC).unique().sparse().named("indice_unico")));
+        // UsuarioEstacionRepository.countByIdEstacion / findByIdEstacion / findByIdUsuario
+        declaraciones.add(new Declaracion(coleccion(UsuarioEstacion.class), new Index()
+                .on("idEstacion", Sort.Direction.ASC).named("idEstacion")));
+        declaraciones.add(new Declaracion(coleccion(UsuarioEstacion.class), new Index()
+                .on("id_usuario", Sort.Direction.ASC).named("id_usuario")));
+        // UsuarioRepository.findByUsuario, el nombre de usuario es unico
+        declaraciones.add(new Declaracion(coleccion(Usuario.class), new Index()
+                .on("usuario", Sort.Direction.ASC).unique().named("usuario_unico")));
+        // ValidacionRepository.findByUsuarioAndCodigo
+        declaraciones.add(new Declaracion(coleccion(Validacion.class), new Index()
+                .on("usuario", Sort.Direction.ASC).on("codigo", Sort.Direction.ASC).named("usuario_codigo")));
+        // EstacionRepository.findAllByEncargado
+        declaraciones.add(new Declaracion(coleccion(Estacion.class), new Index()
+                .on("encargado", Sort.Direction.ASC).named("encargado")));
+        // Ultimos registros de Tuya
+        declaraciones.add(new Declaracion(coleccion(TuyaSensorData.class), new Index()
+                .on("timestamp", Sort.Direction.DESC).named("timestamp_desc")));
+        return declaraciones;
+    }
+
+    private String coleccion(Class<?> entidad) {
+        return mongoTemplate.getCollectionName(entidad);
+    }
+
+    /**
+     * Verifica los indices en segundo plano al arrancar para no retrasar el inicio
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        Thread hilo = new Thread(this::verificarIndices, "verificacion-indices");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Metodo que permite verificar los indices declarados y crear los que falten
+     */
+    @Override
+    public void verificarIndices() {
+        for (Declaracion declaracion : declaraciones()) {
+            String coleccion = declaracion.coleccion();
+            String nombre = declaracion.indice().getIndexOptions().getString("name");
+            String clave = coleccion + "." + nombre;
+            try {
+                String claves = claves(declaracion.indice().getIndexKeys());
+                boolean presente = mongoTemplate.indexOps(coleccion).getIndexInfo().stream()
+                        .anyMatch(info -> claves.equals(claves(info)));
+                if (presente) {
+                    estadoIndices.put(clave, "presente");
+                    continue;
+                }
+                logger.info("Creando indice " + clave + " (" + claves + ")");
+                mongoTemplate.indexOps(coleccion).ensureIndex(declaracion.indice());
+                estadoIndices.put(clave, "creado");
+            } catch (Exception e) {
+                logger.error("ERROR_MESSAGE: no se pudo crear el indice " + clave + ": " + e.getMessage());
+                estadoIndices.put(clave, "error: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Metodo que permite obtener el uso de los indices de cada coleccion ($indexStats)
+     * @return estadisticas de uso por coleccion
+     */
+    @Override
+    public ResponseEntity<?> estadisticas() {
+        try {
+            Map<String, Object> respuesta = new LinkedHashMap<>();
+            List<String> colecciones = declaraciones().stream()
+                    .map(declaracion -> declaracion.coleccion())
+                    .distinct()
+                    .collect(Collectors.toList());
+            for (String coleccion : colecciones) {
+                List<Map<String, Object>> indices = new ArrayList<>();
+                for (Document stats : mongoTemplate.getCollection(coleccion)
+                        .aggregate(List.of(new Document("$indexStats", new Document())))) {
+                    Document accesos = stats.get("accesses", Document.class);
+                    Map<String, Object> indice = new LinkedHashMap<>();
+                    indice.put("nombre", stats.getString("name"));
+                    indice.put("claves", stats.get("key"));
+                    indice.put("usos", accesos != null ? accesos.get("ops") : null);
+                    indice.put("desde", accesos != null ? accesos.get("since") : null);
+                    indice.put("estado", estadoIndices.get(coleccion + "." + stats.getString("name")));
+                    indices.add(indice);
+                }
+                respuesta.put(coleccion, indices);
+            }
+            return ResponseEntity.ok(respuesta);
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    private static String claves(Document claves) {
+        return claves.entrySet().stream()
+                .map(entry -> entry.getKey() + ":" + ((Number) entry.getValue()).intValue())
+                .collect(Collectors.joining(","));
+    }
+
+    private static String claves(IndexInfo info) {
+        return info.getIndexFields().stream()
+                .map(field -> field.getKey() + ":" + (field.getDirection() == Sort.Direction.DESC ? -1 : 1))
+                .collect(Collectors.joining(","));
+    }
+
+}
@@ -3,10 +3,20 @@ package iser.apiOrion.serviceImplement;
 import iser.apiOrion.DTO.SensorDTO;
 import iser.apiOrion.collection.Estacion;
 import iser.apiOrion.collection.Sensor;
+import iser.apiOrion.ingesta.RegistroSensores;
 import iser.apiOrion.repository.EstacionRepository;
 import iser.apiOrion.repository.SensorRepository;
 import iser.apiOrion.service.SensorService;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
@@ -32,6 +42,24 @@ public class SensorServiceImpl implements SensorService {
     @Autowired
     EstacionRepository estacionRepository;
 
+    /**
+     * Plantilla de mongo
+     */
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    /**
+     * Registro en memoria de sensores que usa la ingesta
+     */
+    @Autowired
+    RegistroSensores registroSensores;
+
+    /**
+     * Coleccion de contadores y contador del indice de sensores
+     */
+    private static final String COLECCION_CONTADORES = "contadores";
+    private static final String CONTADOR_INDICE = "sensor_indice";
+
 
     /**
      * Metodo que permite obtener todos los sensores
@@ -53,6 +81,8 @@ public class SensorServiceImpl implements SensorService {
                 sensorDTO.setNombre(sensor.getNombre());
                 sensorDTO.setDescripcion(sensor.getDescripcion());
                 sensorDTO.setConfig(sensor.isConfig());
+                sensorDTO.setIndice(sensor.getIndice());
+                sensorDTO.setRetencionDias(sensor.getRetencionDias());
                 if (sensor.getIdEstacion() != null) {
                     Optional<Estacion> estacion = estacionRepository.findById(sensor.getIdEstacion());
                     ubicacion = estacion.map(value -> value.getCiudad() + " - " + value.getDepartamento()).orElse("No se encontro la ubicacion");
@@ -88,6 +118,8 @@ public class SensorServiceImpl implements SensorService {
             sensorDTO.setNombre(sensor.get().getNombre());
             sensorDTO.setDescripcion(sensor.get().getDescripcion());
             sensorDTO.setConfig(sensor.get().isConfig());
+            sensorDTO.setIndice(sensor.get().getIndice());
+            sensorDTO.setRetencionDias(sensor.get().getRetencionDias());
             if (sensor.get().getIdEstacion() == null) {
                 Optional<Estacion> estacion = estacionRepository.findById(sensor.get().getIdEstacion());
                 String ubicacion = estacion.map(value -> value.getCiudad() + " - " + value.getDepartamento()).orElse("No se encontro la ubicacion");
@@ -109,7 +141,9 @@ public class SensorServiceImpl implements SensorService {
     @Override
     public ResponseEntity<?> crearSensor(Sensor sensor) {
         try {
+            sensor.setIndice(siguienteIndice());
             sensorRepository.save(sensor);
+            registroSensores.registrar(sensor);
             return ResponseEntity.ok(sensor);
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
@@ -126,7 +160,15 @@ public class SensorServiceImpl implements SensorService {
     @Override
     public ResponseEntity<?> actualizarSensor(Sensor sensor) {
         try {
+            // el indice lo asigna el servidor, se conserva aunque el cliente no lo envie
+            if (sensor.getId() != null) {
+                sensorRepository.findById(sensor.getId()).ifPresent(actual -> sensor.setIndice(actual.getIndice()));
+            }
+            if (sensor.getIndice() == null) {
+                sensor.setIndice(siguienteIndice());
+            }
             sensorRepository.save(sensor);
+            registroSensores.registrar(sensor);
             return ResponseEntity.ok(sensor);
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
@@ -144,6 +186,7 @@ public class SensorServiceImpl implements SensorService {
     public ResponseEntity<?> borrarSensor(String id) {
         try {
             sensorRepository.deleteById(id);
+            registroSensores.quitar(id);
             return ResponseEntity.ok(buildMessage("Sensor borrado"));
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
@@ -170,6 +213,8 @@ public class SensorServiceImpl implements SensorService {
                 sensorDTO.setNombre(sensor.getNombre());
                 sensorDTO.setDescripcion(sensor.getDescripcion());
                 sensorDTO.setConfig(sensor.isConfig());
+                sensorDTO.setIndice(sensor.getIndice());
+                sensorDTO.setRetencionDias(sensor.getRetencionDias());
                 if (sensor.getIdEstacion() != null) {
                     Optional<Estacion> estacion = estacionRepository.findById(sensor.getIdEstacion());
                     ubicacion = estacion.map(value -> value.getCiudad() + " - " + value.getDepartamento()).orElse("No se encontro la ubicacion");
@@ -205,6 +250,8 @@ public class SensorServiceImpl implements SensorService {
                     sensorDTO.setNombre(sensor.getNombre());
                     sensorDTO.setDescripcion(sensor.getDescripcion());
                     sensorDTO.setConfig(sensor.isConfig());
+                    sensorDTO.setIndice(sensor.getIndice());
+                    sensorDTO.setRetencionDias(sensor.getRetencionDias());
                     if (sensor.getIdEstacion() != null) {
                         Optional<Estacion> estacion1 = estacionRepository.findById(sensor.getIdEstacion());
                         ubicacion = estacion1.map(value -> value.getCiudad() + " - " + value.getDepartamento()).orElse("No se encontro la ubicacion");
@@ -219,4 +266,48 @@ public class SensorServiceImpl implements SensorService {
             return ResponseEntity.badRequest().body("Error: " + e.getMessage());
         }
     }
+
+    /**
+     * Asigna un indice a los sensores creados antes de que existiera el campo
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void asignarIndicesFaltantes() {
+        try {
+            List<Sensor> sinIndice = sensorRepository.findByIndiceIsNull();
+            if (sinIndice.isEmpty()) {
+                return;
+            }
+            // el contador arranca por encima del mayor indice ya asignado
+            Query mayor = new Query(Criteria.where("indice").ne(null)).with(Sort.by(Sort.Direction.DESC, "indice")).limit(1);
+            Sensor ultimo = mongoTemplate.findOne(mayor, Sensor.class);
+            if (ultimo != null) {
+                mongoTemplate.upsert(new Query(Criteria.where("_id").is(CONTADOR_INDICE)),
+                        new Update().max("valor", ultimo.getIndice()), COLECCION_CONTADORES);
+            }
+            for (Sensor sensor : sinIndice) {
+                sensor.setIndice(siguienteIndice());
+                sensorRepository.save(sensor);
+                registroSensores.registrar(sensor);
+            }
+            System.out.println("Indices asignados a " + sinIndice.size() + " sensores");
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Metodo que permite obtener el siguiente indice de sensor con un incremento atomico
+     *
+     * @return indice sin usar
+     */
+    private int siguienteIndice() {
+        Document contador = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(CONTADOR_INDICE)),
+                new Update().inc("valor", 1),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Document.class,
+                COLECCION_CONTADORES);
+        return ((Number) contador.get("valor")).intValue();
+    }
+
 }
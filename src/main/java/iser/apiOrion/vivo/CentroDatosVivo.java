@@ -0,0 +1,297 @@
+package iser.apiOrion.vivo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import iser.apiOrion.DTO.DatoVivoDTO;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.collection.Sensor;
+import iser.apiOrion.repository.SensorRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Distribuye los datos recien escritos a los clientes suscritos (SSE o WebSocket) por sensor
+ * o por estacion.
+ * <p>
+ *     Publicar nunca bloquea la escritura: cada dato se serializa una vez y se deja en la cola
+ *     acotada de cada suscripcion interesada; un pool pequeno de hilos vacia las colas y escribe
+ *     en las conexiones. Si un cliente es lento se descartan sus mensajes mas viejos. Las
+ *     conexiones inactivas no ocupan hilos de Tomcat porque son peticiones asincronas. Los
+ *     datos con fecha anterior al ultimo publicado del sensor se marcan como tardios, para que
+ *     el cliente los inserte en su lugar de la grafica en vez de agregarlos al final.
+ * </p>
+ */
+@Component
+public class CentroDatosVivo {
+
+    /**
+     * logger :: log for CentroDatosVivo
+     */
+    private static final Logger logger = LoggerFactory.getLogger(CentroDatosVivo.class);
+
+    /**
+     * Destino de los mensajes de una suscripcion
+     */
+    public interface Emisor {
+
+        /**
+         * Escribe un mensaje en la conexion
+         * @param mensaje dato en JSON, o null para un latido
+         * @throws IOException si la conexion se cerro
+         */
+        void enviar(String mensaje) throws IOException;
+
+        void cerrar();
+    }
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    /**
+     * Repositorio de sensores, para resolver las suscripciones por estacion
+     */
+    @Autowired
+    SensorRepository sensorRepository;
+
+    /**
+     * Registro de metricas
+     */
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    /**
+     * Mensajes pendientes por cliente antes de descartar los mas viejos
+     */
+    @Value("${vivo.cola-por-cliente:256}")
+    private int capacidadCliente;
+
+    @Value("${vivo.hilos-envio:4}")
+    private int hilosEnvio;
+
+    /**
+     * Con hilos virtuales cada envio usa su propio hilo y un cliente lento no retiene a los demas
+     */
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean hilosVirtuales;
+
+    private final Map<String, Set<Suscripcion>> porSensor = new ConcurrentHashMap<>();
+
+    private final Set<Suscripcion> suscripciones = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Fecha del ultimo dato publicado de cada sensor con suscriptores
+     */
+    private final Map<String, Long> ultimaFecha = new ConcurrentHashMap<>();
+
+    private ExecutorService envio;
+
+    private Counter descartados;
+
+    @PostConstruct
+    void iniciar() {
+        if (hilosVirtuales) {
+            envio = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("vivo-envio-", 1).factory());
+        } else {
+            AtomicInteger numero = new AtomicInteger();
+            envio = Executors.newFixedThreadPool(hilosEnvio, tarea -> {
+                Thread hilo = new Thread(tarea, "vivo-envio-" + numero.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+        Gauge.builder("vivo.suscripciones", suscripciones, Set::size)
+                .description("Clientes conectados al canal en vivo")
+                .register(meterRegistry);
+        descartados = Counter.builder("vivo.mensajes.descartados")
+                .description("Mensajes descartados por clientes lentos")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Metodo que permite suscribir un cliente a sensores o a los sensores de una estacion
+     * @param idSensores ids de los sensores
+     * @param idEstacion id de la estacion
+     * @param emisor conexion del cliente
+     * @return suscripcion, para cancelarla al cerrar la conexion
+     */
+    public Suscripcion suscribir(Collection<String> idSensores, String idEstacion, Emisor emisor) {
+        Set<String> sensores = new HashSet<>();
+        if (idSensores != null) {
+            idSensores.stream().map(String::trim).filter(id -> !id.isEmpty()).forEach(sensores::add);
+        }
+        if (idEstacion != null && !idEstacion.isBlank()) {
+            sensorRepository.findByIdEstacion(idEstacion).stream().map(Sensor::getId).forEach(sensores::add);
+        }
+        Suscripcion suscripcion = new Suscripcion(sensores, emisor);
+        suscripciones.add(suscripcion);
+        // el alta se hace dentro de compute, atomica con la baja de cancelar; si la suscripcion ya
+        // se cancelo (por ejemplo, un latido fallido) no se vuelve a agregar
+        for (String idSensor : sensores) {
+            porSensor.compute(idSensor, (id, interesados) -> {
+                if (suscripcion.cerrada) {
+                    return interesados;
+                }
+                Set<Suscripcion> conjunto = interesados != null ? interesados : ConcurrentHashMap.newKeySet();
+                conjunto.add(suscripcion);
+                return conjunto;
+            });
+        }
+        return suscripcion;
+    }
+
+    /**
+     * Metodo que permite cancelar una suscripcion
+     * @param suscripcion suscripcion a cancelar
+     */
+    public void cancelar(Suscripcion suscripcion) {
+        if (!suscripciones.remove(suscripcion)) {
+            return;
+        }
+        suscripcion.cerrada = true;
+        for (String idSensor : suscripcion.sensores) {
+            porSensor.computeIfPresent(idSensor, (id, interesados) -> {
+                interesados.remove(suscripcion);
+                if (interesados.isEmpty()) {
+                    ultimaFecha.remove(id);
+                    return null;
+                }
+                return interesados;
+            });
+        }
+        suscripcion.emisor.cerrar();
+    }
+
+    /**
+     * Metodo que permite publicar los datos escritos de un lote. Sin suscriptores no hace nada.
+     * @param lote datos del lote
+     * @param errores posiciones que no se escribieron
+     */
+    public void publicar(List<Datos> lote, Map<Integer, String> errores) {
+        if (porSensor.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < lote.size(); i++) {
+            Datos datos = lote.get(i);
+            Set<Suscripcion> interesados = porSensor.get(datos.getIdSensor());
+            if (interesados == null || errores.containsKey(i)) {
+                continue;
+            }
+            long fecha = datos.getFecha().getTime();
+            // lectura y actualizacion atomicas: el dato es tardio si compute deja una fecha posterior
+            long ultima = ultimaFecha.compute(datos.getIdSensor(),
+                    (id, anterior) -> anterior == null || fecha >= anterior ? fecha : anterior);
+            boolean tardio = ultima != fecha;
+            String mensaje;
+            try {
+                mensaje = objectMapper.writeValueAsString(new DatoVivoDTO(datos.getIdSensor(),
+                        fecha, datos.getValor(), datos.getUnidad(), tardio ? Boolean.TRUE : null));
+            } catch (IOException e) {
+                logger.error("ERROR_MESSAGE: " + e.getMessage());
+                continue;
+            }
+            for (Suscripcion suscripcion : interesados) {
+                suscripcion.encolar(mensaje);
+            }
+        }
+    }
+
+    /**
+     * Envia un latido para detectar y liberar las conexiones cerradas por el cliente
+     */
+    @Scheduled(fixedDelayString = "${vivo.latido-ms:30000}")
+    public void latido() {
+        for (Suscripcion suscripcion : suscripciones) {
+            suscripcion.latido = true;
+            suscripcion.programar();
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        suscripciones.forEach(this::cancelar);
+        envio.shutdownNow();
+    }
+
+    /**
+     * Suscripcion de un cliente con su cola de mensajes pendientes
+     */
+    public class Suscripcion {
+
+        private final Set<String> sensores;
+        private final Emisor emisor;
+        private final ArrayBlockingQueue<String> pendientes;
+        private final AtomicBoolean programada = new AtomicBoolean();
+        private volatile boolean cerrada;
+        private volatile boolean latido;
+
+        private Suscripcion(Set<String> sensores, Emisor emisor) {
+            this.sensores = sensores;
+            this.emisor = emisor;
+            this.pendientes = new ArrayBlockingQueue<>(capacidadCliente);
+        }
+
+        public Set<String> getSensores() {
+            return sensores;
+        }
+
+        private void encolar(String mensaje) {
+            while (!pendientes.offer(mensaje)) {
+                if (pendientes.poll() != null) {
+                    descartados.increment();
+                }
+            }
+            programar();
+        }
+
+        /**
+         * Solo un hilo del pool escribe en cada conexion a la vez
+         */
+        private void programar() {
+            if (!cerrada && programada.compareAndSet(false, true)) {
+                envio.execute(this::vaciar);
+            }
+        }
+
+        private void vaciar() {
+            try {
+                if (latido) {
+                    latido = false;
+                    emisor.enviar(null);
+                }
+                String mensaje;
+                while (!cerrada && (mensaje = pendientes.poll()) != null) {
+                    emisor.enviar(mensaje);
+                }
+            } catch (Exception e) {
+                cancelar(this);
+            } finally {
+                programada.set(false);
+                if (!pendientes.isEmpty()) {
+                    programar();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package iser.apiOrion.vivo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Canal en vivo por WebSocket (/api/v1/vivo/ws?idSensores=a,b o ?idEstacion=x). Cada dato nuevo
+ * se envia como un mensaje de texto con {idSensor, fecha, valor, unidad}.
+ */
+@Component
+public class ManejadorVivoWebSocket extends TextWebSocketHandler {
+
+    private static final String SUSCRIPCION = "suscripcion";
+
+    @Autowired
+    CentroDatosVivo centroDatosVivo;
+
+    /**
+     * Tiempo maximo de un envio antes de cerrar una sesion lenta
+     */
+    @Value("${vivo.ws.limite-envio-ms:10000}")
+    private int limiteEnvioMs;
+
+    /**
+     * Bytes pendientes maximos por sesion antes de cerrarla
+     */
+    @Value("${vivo.ws.limite-buffer:524288}")
+    private int limiteBuffer;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        var parametros = UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams();
+        List<String> idSensores = parametros.getOrDefault("idSensores", List.of()).stream()
+                .flatMap(valor -> Arrays.stream(valor.split(",")))
+                .toList();
+        String idEstacion = parametros.getFirst("idEstacion");
+        WebSocketSession sesion = new ConcurrentWebSocketSessionDecorator(session, limiteEnvioMs, limiteBuffer);
+        CentroDatosVivo.Suscripcion suscripcion = centroDatosVivo.suscribir(idSensores, idEstacion, new CentroDatosVivo.Emisor() {
+            @Override
+            public void enviar(String mensaje) throws IOException {
+                sesion.sendMessage(mensaje == null ? new PingMessage() : new TextMessage(mensaje));
+            }
+
+            @Override
+            public void cerrar() {
+                try {
+                    sesion.close();
+                } catch (IOException e) {
+                    // la sesion ya estaba cerrada
+                }
+            }
+        });
+        session.getAttributes().put(SUSCRIPCION, suscripcion);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Object suscripcion = session.getAttributes().get(SUSCRIPCION);
+        if (suscripcion != null) {
+            centroDatosVivo.cancelar((CentroDatosVivo.Suscripcion) suscripcion);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package iser.apiOrion.almacen;
+
+import iser.apiOrion.DTO.PuntoAgregadoDTO;
+import iser.apiOrion.collection.Datos;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import static iser.apiOrion.almacen.ArchivoDatosTest.dato;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Prueba el corte de las lecturas en el limite del archivo, con un ArchivoDatos real en un
+ * directorio temporal y el almacen de mongo simulado en memoria.
+ */
+class AlmacenDatosArchivoTest {
+
+    private static final LocalDate DIA = LocalDate.of(2024, 3, 10);
+
+    @TempDir
+    Path directorio;
+
+    private AlmacenDatosArchivo almacen;
+    private ArchivoDatos archivo;
+    private AlmacenDatos mongo;
+
+    /**
+     * Datos que siguen en mongo, despues del ultimo dia archivado
+     */
+    private final List<Datos> enMongo = new ArrayList<>();
+
+    @BeforeEach
+    void iniciar() throws Exception {
+        archivo = new ArchivoDatos();
+        ReflectionTestUtils.setField(archivo, "directorio", directorio.toString());
+        ReflectionTestUtils.setField(archivo, "zonaHoraria", "UTC");
+        archivo.iniciar();
+
+        mongo = mock(AlmacenDatos.class);
+        // misma semantica que AlmacenDatosDocumento.pagina: (inicio, fin) y despues de (fecha, id)
+        when(mongo.pagina(eq("s1"), any(), any(), any(), any(), anyInt())).thenAnswer(invocacion -> {
+            Date inicio = invocacion.getArgument(1);
+            Date fin = invocacion.getArgument(2);
+            Date despuesFecha = invocacion.getArgument(3);
+            String despuesId = invocacion.getArgument(4);
+            int limite = invocacion.getArgument(5);
+            return enMongo.stream()
+                    .filter(d -> d.getFecha().after(inicio) && d.getFecha().before(fin))
+                    .filter(d -> despuesFecha == null || d.getFecha().after(despuesFecha)
+                            || (d.getFecha().equals(despuesFecha) && d.getId().compareTo(despuesId) > 0))
+                    .sorted(Comparator.comparing(Datos::getFecha).thenComparing(Datos::getId))
+                    .limit(limite)
+                    .toList();
+        });
+
+        almacen = new AlmacenDatosArchivo();
+        almacen.archivoDatos = archivo;
+        almacen.almacenMongo = mongo;
+    }
+
+    @Test
+    void laPaginaContinuaDelArchivoAMongo() throws Exception {
+        List<Double> esperados = new ArrayList<>();
+        for (int d = 0; d < 2; d++) {
+            LocalDate dia = DIA.plusDays(d);
+            archivo.archivar("s1", dia, List.of(dato(dia, 10, d), dato(dia, 20, d + 0.1), dato(dia, 86_399, d + 0.2)));
+            esperados.addAll(List.of((double) d, d + 0.1, d + 0.2));
+        }
+        // el primero cae justo en el limite del archivo, que mongo debe entregar
+        LocalDate siguiente = DIA.plusDays(2);
+        enMongo.add(enMongo("m1", dato(siguiente, 0, 10)));
+        enMongo.add(enMongo("m2", dato(siguiente, 0, 11)));
+        enMongo.add(enMongo("m3", dato(siguiente, 60, 12)));
+        esperados.addAll(List.of(10.0, 11.0, 12.0));
+        Date inicio = Date.from(DIA.atStartOfDay(ZoneOffset.UTC).toInstant());
+        Date fin = Date.from(DIA.plusDays(5).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        for (int limite = 1; limite <= 7; limite++) {
+            List<Datos> leidos = new ArrayList<>();
+            List<Datos> pagina = almacen.pagina("s1", inicio, fin, null, null, limite);
+            while (!pagina.isEmpty()) {
+                assertThat(pagina.size()).isLessThanOrEqualTo(limite);
+                leidos.addAll(pagina);
+                Datos ultimo = pagina.get(pagina.size() - 1);
+                pagina = almacen.pagina("s1", inicio, fin, ultimo.getFecha(), ultimo.getId(), limite);
+            }
+            assertThat(leidos).extracting(Datos::getValor).containsExactlyElementsOf(esperados);
+        }
+    }
+
+    @Test
+    void agregarCombinaElIntervaloQueCruzaElLimite() throws Exception {
+        archivo.archivar("s1", DIA, List.of(dato(DIA, 10 * 3600, 1.0), dato(DIA, 20 * 3600, 3.0)));
+        Date limite = archivo.limite("s1");
+        // el dia de Bogota (UTC-5) va de las 05:00 a las 05:00 UTC y cruza el limite de las 00:00
+        ZoneId bogota = ZoneId.of("America/Bogota");
+        long diaBogota = DIA.atStartOfDay(bogota).toInstant().toEpochMilli();
+        Date inicio = new Date(diaBogota - 1);
+        Date fin = Date.from(DIA.plusDays(2).atStartOfDay(bogota).toInstant());
+        PuntoAgregadoDTO deMongo = new PuntoAgregadoDTO();
+        deMongo.setT(diaBogota);
+        deMongo.setCount(2L);
+        deMongo.setSum(10.0);
+        deMongo.setMin(4.0);
+        deMongo.setMax(6.0);
+        PuntoAgregadoDTO siguiente = new PuntoAgregadoDTO();
+        siguiente.setT(DIA.plusDays(1).atStartOfDay(bogota).toInstant().toEpochMilli());
+        siguiente.setCount(1L);
+        siguiente.setSum(7.0);
+        siguiente.setMin(7.0);
+        siguiente.setMax(7.0);
+        when(mongo.agregar("s1", new Date(limite.getTime() - 1), fin, "day", "America/Bogota"))
+                .thenReturn(List.of(deMongo, siguiente));
+
+        List<PuntoAgregadoDTO> puntos = almacen.agregar("s1", inicio, fin, "day", "America/Bogota");
+
+        assertThat(puntos).extracting(PuntoAgregadoDTO::getT).containsExactly(diaBogota, siguiente.getT());
+        PuntoAgregadoDTO combinado = puntos.get(0);
+        assertThat(combinado.getCount()).isEqualTo(4);
+        assertThat(combinado.getSum()).isEqualTo(14.0);
+        assertThat(combinado.getMin()).isEqualTo(1.0);
+        assertThat(combinado.getMax()).isEqualTo(6.0);
+        assertThat(puntos.get(1).getCount()).isEqualTo(1);
+    }
+
+    private static Datos enMongo(String id, Datos datos) {
+        datos.setId(id);
+        datos.setIdSensor("s1");
+        return datos;
+    }
+
+}
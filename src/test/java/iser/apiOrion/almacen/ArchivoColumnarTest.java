@@ -0,0 +1,110 @@
+package iser.apiOrion.almacen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ArchivoColumnarTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void conservaNulosYNaN() throws IOException {
+        ArchivoColumnar.Tabla tabla = new ArchivoColumnar.Tabla(
+                new long[] { 1000, 2000, 3000 },
+                new String[] { "valor", "otro" },
+                new double[][] { { 1.5, Double.NaN, -0.0 }, { Double.NaN, Double.NaN, Double.MAX_VALUE } },
+                new String[] { "unidad" },
+                new String[][] { { null, "C", null } });
+
+        ArchivoColumnar.Tabla leida = escribirYLeer(tabla);
+
+        assertThat(leida.nombresNumero()).containsExactly("valor", "otro");
+        assertThat(leida.numero(0, 0)).isEqualTo(1.5);
+        assertThat(leida.numero(0, 1)).isNull();
+        assertThat(Double.doubleToRawLongBits(leida.numero(0, 2))).isEqualTo(Double.doubleToRawLongBits(-0.0));
+        assertThat(leida.numero(1, 0)).isNull();
+        assertThat(leida.numero(1, 2)).isEqualTo(Double.MAX_VALUE);
+        assertThat(leida.textos()[0]).containsExactly(null, "C", null);
+    }
+
+    @Test
+    void lasColumnasDeTextoSeGuardanComoDiccionario() throws IOException {
+        int filas = 10_000;
+        long[] fechas = new long[filas];
+        double[] valores = new double[filas];
+        String[] unidades = new String[filas];
+        String[] nombres = new String[filas];
+        for (int i = 0; i < filas; i++) {
+            fechas[i] = 1_700_000_000_000L + i * 10_000L;
+            valores[i] = i % 7;
+            unidades[i] = i % 3 == 0 ? "C" : i % 3 == 1 ? "°F" : null;
+            nombres[i] = "sensor-" + (i % 50);
+        }
+        ArchivoColumnar.Tabla tabla = new ArchivoColumnar.Tabla(fechas, new String[] { "valor" }, new double[][] { valores },
+                new String[] { "unidad", "nombre" }, new String[][] { unidades, nombres });
+
+        ArchivoColumnar.Tabla leida = escribirYLeer(tabla);
+
+        assertThat(leida.nombresTexto()).containsExactly("unidad", "nombre");
+        assertThat(leida.textos()[0]).containsExactly(unidades);
+        assertThat(leida.textos()[1]).containsExactly(nombres);
+        assertThat(leida.fechas()).containsExactly(fechas);
+        // cada fila guarda un indice de un byte, no el texto
+        assertThat(Files.size(directorio.resolve("tabla.col.gz"))).isLessThan(filas);
+    }
+
+    @Test
+    void conservaDiferenciasDeFechaGrandesYRepetidas() throws IOException {
+        long[] fechas = { -86_400_000L, -1, 0, 0, 1, 1L << 35, (1L << 35) + 1, Long.MAX_VALUE / 2, Long.MAX_VALUE - 1 };
+        double[] valores = new double[fechas.length];
+        Arrays.fill(valores, 1);
+        ArchivoColumnar.Tabla tabla = new ArchivoColumnar.Tabla(fechas, new String[] { "valor" }, new double[][] { valores },
+                new String[0], new String[0][]);
+
+        ArchivoColumnar.Tabla leida = escribirYLeer(tabla);
+
+        assertThat(leida.fechas()).containsExactly(fechas);
+        assertThat(leida.numeros()[0]).containsExactly(valores);
+    }
+
+    @Test
+    void tablaVacia() throws IOException {
+        ArchivoColumnar.Tabla tabla = new ArchivoColumnar.Tabla(new long[0], new String[] { "valor" }, new double[][] { {} },
+                new String[] { "unidad" }, new String[][] { {} });
+
+        ArchivoColumnar.Tabla leida = escribirYLeer(tabla);
+
+        assertThat(leida.filas()).isZero();
+        assertThat(leida.nombresNumero()).containsExactly("valor");
+    }
+
+    @Test
+    void rechazaArchivosDeOtroFormato() throws IOException {
+        Path archivo = directorio.resolve("otro.col.gz");
+        try (GZIPOutputStream salida = new GZIPOutputStream(Files.newOutputStream(archivo))) {
+            salida.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        }
+
+        assertThatThrownBy(() -> ArchivoColumnar.leer(archivo))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("formato desconocido");
+    }
+
+    private ArchivoColumnar.Tabla escribirYLeer(ArchivoColumnar.Tabla tabla) throws IOException {
+        Path archivo = directorio.resolve("tabla.col.gz");
+        ArchivoColumnar.escribir(archivo, tabla);
+        assertThat(directorio.resolve("tabla.col.gz.tmp")).doesNotExist();
+        return ArchivoColumnar.leer(archivo);
+    }
+
+}
@@ -0,0 +1,173 @@
+package iser.apiOrion.almacen;
+
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.collection.TuyaSensorData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ArchivoDatosTest {
+
+    private static final LocalDate DIA = LocalDate.of(2024, 3, 10);
+
+    @TempDir
+    Path directorio;
+
+    private ArchivoDatos archivo;
+
+    @BeforeEach
+    void iniciar() throws Exception {
+        archivo = nuevoArchivo();
+    }
+
+    @Test
+    void archivarConservaLecturasIdenticasNuevas() throws Exception {
+        archivo.archivar("s1", DIA, List.of(dato(DIA, 60, 1.0), dato(DIA, 60, 1.0), dato(DIA, 120, 2.0)));
+
+        assertThat(todos("s1")).extracting(Datos::getValor).containsExactly(1.0, 1.0, 2.0);
+    }
+
+    @Test
+    void archivarDeNuevoNoDuplicaLoYaArchivado() throws Exception {
+        archivo.archivar("s1", DIA, List.of(dato(DIA, 60, 1.0), dato(DIA, 60, 1.0), dato(DIA, 120, 2.0)));
+
+        // reintento tras un corte entre archivar y borrar de mongo, con una lectura nueva
+        archivo.archivar("s1", DIA, List.of(dato(DIA, 30, 0.5), dato(DIA, 60, 1.0), dato(DIA, 60, 1.0), dato(DIA, 120, 2.0)));
+        archivo.archivar("s1", DIA, List.of(dato(DIA, 120, 2.0), dato(DIA, 120, 2.0)));
+
+        assertThat(todos("s1")).extracting(Datos::getValor).containsExactly(0.5, 1.0, 1.0, 2.0, 2.0);
+    }
+
+    @Test
+    void archivarTuyaDeNuevoNoDuplicaLosTimestampsConMasPrecision() throws Exception {
+        LocalDateTime timestamp = DIA.atTime(10, 0, 0, 123_456_789);
+        archivo.archivarTuya(DIA, Stream.of(tuya("m1", timestamp, 7.0), tuya("m2", timestamp.plusSeconds(1), 7.1)));
+
+        // reintento tras un corte: mongo devuelve los mismos registros, con id y sin truncar
+        archivo.archivarTuya(DIA, Stream.of(tuya("m1", timestamp, 7.0), tuya("m2", timestamp.plusSeconds(1), 7.1)));
+
+        assertThat(todosTuya()).extracting(TuyaSensorData::getPh).containsExactly(7.0, 7.1);
+        assertThat(todosTuya()).extracting(TuyaSensorData::getTimestamp)
+                .containsExactly(DIA.atTime(10, 0, 0, 123_000_000), DIA.atTime(10, 0, 1, 123_000_000));
+    }
+
+    @Test
+    void archivarTuyaIntercalaLoNuevoConElArchivoPorTimestamp() throws Exception {
+        archivo.archivarTuya(DIA, Stream.of(tuya("m1", DIA.atTime(1, 0), 1.0), tuya("m3", DIA.atTime(3, 0), 3.0)));
+
+        long leidos = archivo.archivarTuya(DIA, Stream.of(tuya("m0", DIA.atTime(0, 30), 0.5),
+                tuya("m1", DIA.atTime(1, 0), 1.0), tuya("m2", DIA.atTime(2, 0), 2.0), tuya("m4", DIA.atTime(4, 0), 4.0)));
+
+        assertThat(leidos).isEqualTo(4);
+        assertThat(todosTuya()).extracting(TuyaSensorData::getPh).containsExactly(0.5, 1.0, 2.0, 3.0, 4.0);
+    }
+
+    @Test
+    void losDiasDeTuyaSeCortanEnLaZonaConfigurada() {
+        ZoneId bogota = ZoneId.of("America/Bogota");
+        // 03:00 UTC del 10 de marzo son las 22:00 del 9 en Bogota
+        LocalDateTime local = LocalDateTime.ofInstant(Instant.parse("2024-03-10T03:00:00Z"), ZoneId.systemDefault());
+
+        assertThat(ArchivoDatos.diaTuya(local, bogota)).isEqualTo(DIA.minusDays(1));
+        assertThat(ArchivoDatos.inicioDiaTuya(DIA, bogota))
+                .isEqualTo(LocalDateTime.ofInstant(Instant.parse("2024-03-10T05:00:00Z"), ZoneId.systemDefault()));
+    }
+
+    @Test
+    void laPaginaContinuaEntreArchivosDeDias() throws Exception {
+        List<Datos> esperados = new ArrayList<>();
+        for (int d = 0; d < 3; d++) {
+            LocalDate dia = DIA.plusDays(d);
+            // dos lecturas con la misma fecha, para cortar paginas entre ellas
+            List<Datos> datos = List.of(dato(dia, 0, d), dato(dia, 3600, d + 0.1), dato(dia, 3600, d + 0.2), dato(dia, 86_399, d + 0.3));
+            archivo.archivar("s1", dia, datos);
+            esperados.addAll(datos);
+        }
+
+        for (int limite = 1; limite <= 5; limite++) {
+            List<Datos> leidos = new ArrayList<>();
+            List<Datos> pagina = archivo.pagina("s1", inicio(), fin(), null, null, limite);
+            while (!pagina.isEmpty()) {
+                assertThat(pagina.size()).isLessThanOrEqualTo(limite);
+                leidos.addAll(pagina);
+                Datos ultimo = pagina.get(pagina.size() - 1);
+                pagina = archivo.pagina("s1", inicio(), fin(), ultimo.getFecha(), ultimo.getId(), limite);
+            }
+            assertThat(leidos).extracting(Datos::getValor).containsExactlyElementsOf(esperados.stream().map(Datos::getValor).toList());
+            assertThat(leidos).extracting(Datos::getId).doesNotHaveDuplicates();
+        }
+    }
+
+    @Test
+    void recuperaLosLimitesAlIniciar() throws Exception {
+        archivo.archivar("s1", DIA, List.of(dato(DIA, 0, 1.0)));
+        archivo.archivar("sensor/raro", DIA.plusDays(1), List.of(dato(DIA.plusDays(1), 0, 1.0)));
+
+        ArchivoDatos reiniciado = nuevoArchivo();
+
+        assertThat(reiniciado.limite("s1")).isEqualTo(Date.from(DIA.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant()));
+        assertThat(reiniciado.limite("sensor/raro")).isEqualTo(Date.from(DIA.plusDays(2).atStartOfDay(ZoneOffset.UTC).toInstant()));
+        assertThat(reiniciado.limite("s2")).isNull();
+    }
+
+    private ArchivoDatos nuevoArchivo() throws Exception {
+        ArchivoDatos nuevo = new ArchivoDatos();
+        ReflectionTestUtils.setField(nuevo, "directorio", directorio.toString());
+        ReflectionTestUtils.setField(nuevo, "zonaHoraria", "UTC");
+        nuevo.iniciar();
+        return nuevo;
+    }
+
+    private List<Datos> todos(String idSensor) {
+        List<Datos> datos = new ArrayList<>();
+        archivo.recorrer(idSensor, inicio(), fin(), datos::add);
+        return datos;
+    }
+
+    private List<TuyaSensorData> todosTuya() {
+        List<TuyaSensorData> registros = new ArrayList<>();
+        archivo.recorrerTuya(ArchivoDatos.inicioDiaTuya(DIA.minusDays(1), ZoneOffset.UTC),
+                ArchivoDatos.inicioDiaTuya(DIA.plusDays(2), ZoneOffset.UTC), registros::add);
+        return registros;
+    }
+
+    private static Date inicio() {
+        return Date.from(DIA.minusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    private static Date fin() {
+        return Date.from(DIA.plusDays(10).atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    private static TuyaSensorData tuya(String id, LocalDateTime timestamp, double ph) {
+        TuyaSensorData registro = new TuyaSensorData();
+        registro.setId(id);
+        registro.setNombre("Sensor Tuya");
+        registro.setTimestamp(timestamp);
+        registro.setPh(ph);
+        return registro;
+    }
+
+    static Datos dato(LocalDate dia, int segundo, double valor) {
+        Datos datos = new Datos();
+        datos.setFecha(Date.from(dia.atStartOfDay(ZoneOffset.UTC).plusSeconds(segundo).toInstant()));
+        datos.setValor(valor);
+        datos.setUnidad("C");
+        return datos;
+    }
+
+}
@@ -0,0 +1,90 @@
+package iser.apiOrion.almacen;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.vivo.CentroDatosVivo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ColaEscrituraDatosTest {
+
+    private ColaEscrituraDatos cola;
+    private AlmacenDatos almacen;
+    private MarcasSecuencia marcas;
+    private CentroDatosVivo vivo;
+
+    @BeforeEach
+    void iniciar() {
+        almacen = mock(AlmacenDatos.class);
+        marcas = mock(MarcasSecuencia.class);
+        cola = new ColaEscrituraDatos();
+        cola.almacenDatos = almacen;
+        cola.marcasSecuencia = marcas;
+        vivo = mock(CentroDatosVivo.class);
+        cola.centroDatosVivo = vivo;
+        cola.meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(cola, "capacidad", 10);
+        ReflectionTestUtils.setField(cola, "tamanoLote", 3);
+        ReflectionTestUtils.setField(cola, "intervaloMs", 50L);
+    }
+
+    @AfterEach
+    void detener() throws Exception {
+        cola.detener();
+    }
+
+    @Test
+    void confirmaLasSecuenciasEscritasYLiberaLasFallidas() {
+        when(almacen.escribirLote(anyList())).thenReturn(Map.of(1, "error de escritura"));
+        cola.iniciar();
+
+        cola.ofrecer(dato("s1"), 1L);
+        cola.ofrecer(dato("s2"), 2L);
+        cola.ofrecer(dato("s3"));
+
+        verify(marcas, timeout(5000)).confirmar("s1", 1L);
+        verify(marcas, timeout(5000)).liberar("s2", 2L);
+        verify(marcas, never()).confirmar("s2", 2L);
+        verify(marcas, never()).liberar("s1", 1L);
+        verify(vivo).publicar(anyList(), eq(Map.of(1, "error de escritura")));
+    }
+
+    @Test
+    void unaExcepcionDelAlmacenLiberaTodoElLote() {
+        when(almacen.escribirLote(anyList())).thenThrow(new IllegalStateException("sin conexion"));
+        cola.iniciar();
+
+        cola.ofrecer(dato("s1"), 1L);
+        cola.ofrecer(dato("s1"), 2L);
+        cola.ofrecer(dato("s1"), 3L);
+
+        verify(marcas, timeout(5000)).liberar("s1", 1L);
+        verify(marcas, timeout(5000)).liberar("s1", 2L);
+        verify(marcas, timeout(5000)).liberar("s1", 3L);
+        verify(marcas, never()).confirmar(anyString(), anyLong());
+        verify(vivo, never()).publicar(anyList(), any());
+    }
+
+    private Datos dato(String idSensor) {
+        Datos datos = new Datos();
+        datos.setIdSensor(idSensor);
+        datos.setValor(1.0);
+        return datos;
+    }
+
+}
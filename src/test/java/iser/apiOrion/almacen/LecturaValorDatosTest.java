@@ -0,0 +1,41 @@
+package iser.apiOrion.almacen;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LecturaValorDatosTest {
+
+    @Test
+    void convierteElTextoDeLaVersionUno() {
+        Document documento = new Document("valor", "23,5");
+
+        LecturaValorDatos.convertir(documento);
+
+        assertThat(documento.get("valor")).isEqualTo(23.5);
+    }
+
+    @Test
+    void elTextoNoNumericoQuedaNulo() {
+        Document texto = new Document("valor", "error");
+        Document migrado = new Document("valor_original", "error");
+
+        LecturaValorDatos.convertir(texto);
+        LecturaValorDatos.convertir(migrado);
+
+        assertThat(texto.get("valor")).isNull();
+        assertThat(migrado.get("valor")).isNull();
+        assertThat(migrado.getString("valor_original")).isEqualTo("error");
+    }
+
+    @Test
+    void noTocaLosValoresNumericos() {
+        Document documento = new Document("valor", 7.25).append("valor_original", "7,25");
+
+        LecturaValorDatos.convertir(documento);
+
+        assertThat(documento.get("valor")).isEqualTo(7.25);
+    }
+
+}
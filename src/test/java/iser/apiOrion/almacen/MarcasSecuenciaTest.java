@@ -0,0 +1,118 @@
+package iser.apiOrion.almacen;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MarcasSecuenciaTest {
+
+    private MarcasSecuencia marcas;
+    private MongoCollection<Document> coleccion;
+    private FindIterable<Document> busqueda;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void iniciar() {
+        coleccion = mock(MongoCollection.class);
+        busqueda = mock(FindIterable.class);
+        when(coleccion.find(any(Document.class))).thenReturn(busqueda);
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getCollection(MarcasSecuencia.COLECCION)).thenReturn(coleccion);
+
+        marcas = new MarcasSecuencia();
+        marcas.mongoTemplate = mongoTemplate;
+        marcas.meterRegistry = new SimpleMeterRegistry();
+        marcas.iniciar();
+    }
+
+    @Test
+    void aceptaUnaVezLasSecuenciasDesordenadasDentroDeLaVentana() {
+        assertThat(marcas.reservar("s1", 100)).isTrue();
+        assertThat(marcas.reservar("s1", 98)).isTrue();
+        assertThat(marcas.reservar("s1", 99)).isTrue();
+        assertThat(marcas.reservar("s1", 98)).isFalse();
+        assertThat(marcas.reservar("s1", 100)).isFalse();
+        assertThat(marcas.reservar("s1", 100 - MarcasSecuencia.VENTANA + 1)).isTrue();
+        assertThat(marcas.reservar("s1", 100 - MarcasSecuencia.VENTANA)).isFalse();
+
+        assertThat(marcas.reservar("s1", 1000)).isTrue();
+        assertThat(marcas.reservar("s1", 999)).isTrue();
+        assertThat(marcas.reservar("s1", 100)).isFalse();
+    }
+
+    @Test
+    void liberarPermiteElReintento() {
+        assertThat(marcas.reservar("s1", 5)).isTrue();
+        assertThat(marcas.reservar("s1", 6)).isTrue();
+        marcas.liberar("s1", 6);
+        marcas.liberar("s1", 5);
+
+        assertThat(marcas.reservar("s1", 5)).isTrue();
+        assertThat(marcas.reservar("s1", 6)).isTrue();
+        assertThat(marcas.reservar("s1", 6)).isFalse();
+    }
+
+    @Test
+    void guardaSoloLasSecuenciasConfirmadas() {
+        marcas.reservar("s1", 5);
+        marcas.liberar("s1", 5);
+        marcas.reservar("s2", 7);
+        marcas.guardar();
+        verify(coleccion, never()).bulkWrite(any(), any(BulkWriteOptions.class));
+
+        marcas.reservar("s1", 3);
+        marcas.confirmar("s1", 3);
+        marcas.guardar();
+
+        Document actualizacion = actualizacionGuardada();
+        Document campos = actualizacion.get("$set", Document.class);
+        assertThat(campos.get("secuencia", Document.class).getList("$max", Object.class)).containsExactly("$secuencia", 3L);
+        assertThat(campos.get("ventana", Document.class).getList("$cond", Object.class).get(2)).isEqualTo(1L);
+    }
+
+    @Test
+    void continuaDesdeLaVentanaGuardada() {
+        when(busqueda.first()).thenReturn(new Document("_id", "s1").append("secuencia", 10L).append("ventana", 0b101L));
+
+        assertThat(marcas.reservar("s1", 10)).isFalse();
+        assertThat(marcas.reservar("s1", 8)).isFalse();
+        assertThat(marcas.reservar("s1", 9)).isTrue();
+        assertThat(marcas.reservar("s1", 11)).isTrue();
+    }
+
+    @Test
+    void lasMarcasGuardadasSinVentanaDescartanLasSecuenciasAnteriores() {
+        when(busqueda.first()).thenReturn(new Document("_id", "s1").append("secuencia", 10));
+
+        assertThat(marcas.reservar("s1", 9)).isFalse();
+        assertThat(marcas.reservar("s1", 11)).isTrue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Document actualizacionGuardada() {
+        ArgumentCaptor<List<WriteModel<Document>>> escrituras = ArgumentCaptor.forClass(List.class);
+        verify(coleccion).bulkWrite(escrituras.capture(), any(BulkWriteOptions.class));
+        assertThat(escrituras.getValue()).hasSize(1);
+        UpdateOneModel<Document> escritura = (UpdateOneModel<Document>) escrituras.getValue().get(0);
+        assertThat(escritura.getFilter()).isEqualTo(new Document("_id", "s1"));
+        return (Document) escritura.getUpdatePipeline().get(0);
+    }
+
+}
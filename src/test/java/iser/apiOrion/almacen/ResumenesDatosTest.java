@@ -0,0 +1,203 @@
+package iser.apiOrion.almacen;
+
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.ReplaceOptions;
+import iser.apiOrion.DTO.PuntoAgregadoDTO;
+import iser.apiOrion.collection.Datos;
+import iser.apiOrion.collection.ResumenDatos;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Prueba con mongo simulado que el recalculo de los resumenes y la suma de tardios se reparten
+ * los datos por la misma marca, sin contar dos veces un dato escrito durante el retraso.
+ */
+class ResumenesDatosTest {
+
+    private static final long HORA = 3_600_000L;
+
+    private ResumenesDatos resumenes;
+    private MongoTemplate mongoTemplate;
+    private MongoCollection<Document> datos;
+    private MongoCollection<Document> marcas;
+    private FindIterable<Document> marcaGuardada;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void iniciar() {
+        mongoTemplate = mock(MongoTemplate.class);
+        datos = mock(MongoCollection.class);
+        marcas = mock(MongoCollection.class);
+        MongoCollection<Document> horas = mock(MongoCollection.class);
+        marcaGuardada = mock(FindIterable.class);
+        when(mongoTemplate.getCollectionName(Datos.class)).thenReturn("datos");
+        when(mongoTemplate.getCollection("datos")).thenReturn(datos);
+        when(mongoTemplate.getCollection("rollup_marca")).thenReturn(marcas);
+        when(mongoTemplate.getCollection(ResumenesDatos.COLECCION_HORA)).thenReturn(horas);
+        when(marcas.find(any(Document.class))).thenReturn(marcaGuardada);
+        AggregateIterable<Document> vacio = resultado(List.of());
+        when(horas.aggregate(anyList())).thenReturn(vacio);
+
+        resumenes = new ResumenesDatos();
+        resumenes.mongoTemplate = mongoTemplate;
+        ReflectionTestUtils.setField(resumenes, "habilitado", true);
+        ReflectionTestUtils.setField(resumenes, "retrasoMs", 30_000L);
+        ReflectionTestUtils.setField(resumenes, "zonaHoraria", "America/Bogota");
+        ReflectionTestUtils.setField(resumenes, "modoAlmacenamiento", "documento");
+    }
+
+    @Test
+    void unDatoTardioEscritoDuranteElRetrasoSeSumaUnaSolaVez() {
+        Date marca = new Date(System.currentTimeMillis() - 10 * 60_000L);
+        when(marcaGuardada.first()).thenReturn(new Document("_id", "datos").append("recibido", marca));
+        // hora antigua de un sensor que subio lecturas acumuladas despues de un corte
+        Date hora = new Date((marca.getTime() / HORA - 5) * HORA);
+        AggregateIterable<Document> tocadas = resultado(List.of(
+                new Document("_id", new Document("s", "s1").append("h", hora))));
+        AggregateIterable<Document> recalculo = resultado(List.of());
+        // el dato que llego durante el retraso, despues de la nueva marca
+        AggregateIterable<Document> tardio = resultado(List.of(new Document("_id", hora)
+                .append("count", 1).append("sum", 5.0).append("min", 5.0).append("max", 5.0)));
+        when(datos.aggregate(anyList())).thenReturn(tocadas, recalculo, tardio);
+
+        resumenes.actualizar();
+
+        List<List<Document>> pipelines = pipelines(2);
+        Document rangoTocadas = filtro(pipelines.get(0)).get("recibido", Document.class);
+        Date hasta = rangoTocadas.getDate("$lte");
+        assertThat(rangoTocadas.getDate("$gt")).isEqualTo(marca);
+        Document filtroRecalculo = filtro(pipelines.get(1));
+        assertThat(filtroRecalculo.getString("id_sensor")).isEqualTo("s1");
+        assertThat(filtroRecalculo.get("recibido")).isEqualTo(new Document("$not", new Document("$gt", hasta)));
+        verify(marcas).replaceOne(any(Document.class), eq(new Document("_id", "datos").append("recibido", hasta)), any(ReplaceOptions.class));
+        assertThat(resumenes.marca()).isEqualTo(hasta);
+
+        ResumenDatos resumen = new ResumenDatos();
+        resumen.setInicio(hora);
+        resumen.setCount(2L);
+        resumen.setSum(3.0);
+        resumen.setMin(1.0);
+        resumen.setMax(2.0);
+        when(mongoTemplate.find(any(Query.class), eq(ResumenDatos.class), anyString())).thenReturn(List.of(resumen));
+
+        List<PuntoAgregadoDTO> puntos = resumenes.agregar("s1", new Date(hora.getTime() - 1), new Date(hora.getTime() + HORA), "hour", mock(AlmacenDatos.class));
+
+        assertThat(filtro(pipelines(3).get(2)).get("recibido")).isEqualTo(new Document("$gt", hasta));
+        assertThat(puntos).hasSize(1);
+        assertThat(puntos.get(0).getCount()).isEqualTo(3);
+        assertThat(puntos.get(0).getSum()).isEqualTo(8.0);
+        assertThat(puntos.get(0).getMax()).isEqualTo(5.0);
+    }
+
+    @Test
+    void laReconstruccionCompletaTambienSeCortaEnLaMarca() {
+        AggregateIterable<Document> vacio = resultado(List.of());
+        when(datos.aggregate(anyList())).thenReturn(vacio);
+
+        resumenes.actualizar();
+
+        Document filtro = filtro(pipelines(1).get(0));
+        Date hasta = resumenes.marca();
+        assertThat(filtro).isEqualTo(new Document("recibido", new Document("$not", new Document("$gt", hasta))));
+    }
+
+    @Test
+    void losIntervalosParcialesDelRangoSalenDeLosDatosCrudos() {
+        Date marca = new Date(System.currentTimeMillis() - 10 * 60_000L);
+        when(marcaGuardada.first()).thenReturn(new Document("_id", "datos").append("recibido", marca));
+        AggregateIterable<Document> vacio = resultado(List.of());
+        when(datos.aggregate(anyList())).thenReturn(vacio);
+        // America/Bogota no tiene horario de verano: sus horas coinciden con las de UTC
+        long hora = (marca.getTime() / HORA - 10) * HORA;
+        Date inicio = new Date(hora + 30 * 60_000L);
+        Date fin = new Date(hora + 3 * HORA + 15 * 60_000L);
+        ResumenDatos resumen = new ResumenDatos();
+        resumen.setInicio(new Date(hora + HORA));
+        resumen.setCount(4L);
+        resumen.setSum(8.0);
+        when(mongoTemplate.find(any(Query.class), eq(ResumenDatos.class), eq(ResumenesDatos.COLECCION_HORA))).thenReturn(List.of(resumen));
+        AlmacenDatos almacen = mock(AlmacenDatos.class);
+        when(almacen.agregar("s1", inicio, new Date(hora + HORA), "hour", "America/Bogota")).thenReturn(List.of(punto(hora, 1)));
+        when(almacen.agregar("s1", new Date(hora + 3 * HORA - 1), fin, "hour", "America/Bogota")).thenReturn(List.of(punto(hora + 3 * HORA, 2)));
+
+        List<PuntoAgregadoDTO> puntos = resumenes.agregar("s1", inicio, fin, "hour", almacen);
+
+        ArgumentCaptor<Query> consulta = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(consulta.capture(), eq(ResumenDatos.class), eq(ResumenesDatos.COLECCION_HORA));
+        assertThat(consulta.getValue().getQueryObject().get("inicio"))
+                .isEqualTo(new Document("$gte", new Date(hora + HORA)).append("$lt", new Date(hora + 3 * HORA)));
+        assertThat(puntos).extracting(PuntoAgregadoDTO::getT).containsExactly(hora, hora + HORA, hora + 3 * HORA);
+        assertThat(puntos).extracting(PuntoAgregadoDTO::getCount).containsExactly(1L, 4L, 2L);
+    }
+
+    @Test
+    void unRangoDentroDeUnSoloIntervaloNoUsaResumenes() {
+        Date marca = new Date(System.currentTimeMillis() - 10 * 60_000L);
+        when(marcaGuardada.first()).thenReturn(new Document("_id", "datos").append("recibido", marca));
+        long hora = (marca.getTime() / HORA - 10) * HORA;
+        Date inicio = new Date(hora + 60_000L);
+        Date fin = new Date(hora + 2 * HORA - 60_000L);
+        AlmacenDatos almacen = mock(AlmacenDatos.class);
+
+        resumenes.agregar("s1", inicio, fin, "hour", almacen);
+
+        verify(almacen).agregar("s1", inicio, fin, "hour", "America/Bogota");
+        verify(mongoTemplate, times(0)).find(any(Query.class), eq(ResumenDatos.class), anyString());
+    }
+
+    private static PuntoAgregadoDTO punto(long t, long count) {
+        PuntoAgregadoDTO punto = new PuntoAgregadoDTO();
+        punto.setT(t);
+        punto.setCount(count);
+        punto.setSum((double) count);
+        return punto;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private List<List<Document>> pipelines(int cantidad) {
+        ArgumentCaptor<List> pipelines = ArgumentCaptor.forClass(List.class);
+        verify(datos, times(cantidad)).aggregate(pipelines.capture());
+        return (List<List<Document>>) (List) pipelines.getAllValues();
+    }
+
+    private static Document filtro(List<Document> pipeline) {
+        return pipeline.get(0).get("$match", Document.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AggregateIterable<Document> resultado(List<Document> documentos) {
+        AggregateIterable<Document> resultado = mock(AggregateIterable.class);
+        when(resultado.allowDiskUse(true)).thenReturn(resultado);
+        when(resultado.iterator()).thenAnswer(invocacion -> {
+            Iterator<Document> iterador = documentos.iterator();
+            MongoCursor<Document> cursor = mock(MongoCursor.class);
+            when(cursor.hasNext()).thenAnswer(i -> iterador.hasNext());
+            when(cursor.next()).thenAnswer(i -> iterador.next());
+            return cursor;
+        });
+        return resultado;
+    }
+
+}
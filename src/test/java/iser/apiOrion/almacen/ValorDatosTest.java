@@ -0,0 +1,38 @@
+package iser.apiOrion.almacen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValorDatosTest {
+
+    @Test
+    void decimalConservaElValorEnviado() {
+        assertThat(ValorDatos.decimal(23.1f)).isEqualTo(23.1);
+        assertThat(ValorDatos.decimal(-0.05f)).isEqualTo(-0.05);
+        assertThat(ValorDatos.decimal(1013.25f)).isEqualTo(1013.25);
+        assertThat(ValorDatos.decimal(16777215f)).isEqualTo(16777215.0);
+        assertThat(ValorDatos.decimal(0f)).isEqualTo(0.0);
+    }
+
+    @Test
+    void decimalCoincideConFloatToString() {
+        Random aleatorio = new Random(11);
+        for (int i = 0; i < 1_000_000; i++) {
+            float valor = Float.intBitsToFloat(aleatorio.nextInt());
+            if (!Float.isFinite(valor)) {
+                continue;
+            }
+            double esperado = Double.parseDouble(Float.toString(valor));
+            assertThat(ValorDatos.decimal(valor)).as("float %s", valor).isEqualTo(esperado);
+        }
+        for (int i = 0; i < 1_000_000; i++) {
+            // valores de sensores: pocos decimales en rangos habituales
+            float valor = (float) (Math.round((aleatorio.nextDouble() * 2000 - 1000) * 100) / 100.0);
+            assertThat(ValorDatos.decimal(valor)).as("float %s", valor).isEqualTo(Double.parseDouble(Float.toString(valor)));
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package iser.apiOrion.grafica;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReduccionLttbTest {
+
+    /**
+     * Guarda los puntos entregados por la reduccion
+     */
+    private static class Puntos implements ReduccionLttb.Salida {
+        private final List<Long> fechas = new ArrayList<>();
+        private final List<Double> valores = new ArrayList<>();
+
+        @Override
+        public void punto(long fecha, double valor) {
+            fechas.add(fecha);
+            valores.add(valor);
+        }
+    }
+
+    @Test
+    void serieQueCabeSeEntregaSinReducir() {
+        Puntos puntos = new Puntos();
+        ReduccionLttb reduccion = new ReduccionLttb(0, 1000, 10, puntos);
+        for (int i = 0; i < 10; i++) {
+            reduccion.agregar(i * 100L, i);
+        }
+        reduccion.finalizar();
+
+        assertThat(puntos.fechas).containsExactly(0L, 100L, 200L, 300L, 400L, 500L, 600L, 700L, 800L, 900L);
+        assertThat(puntos.valores).containsExactly(0.0, 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0);
+    }
+
+    @Test
+    void serieLargaSeReduceConservandoExtremosYOrden() {
+        Puntos puntos = new Puntos();
+        ReduccionLttb reduccion = new ReduccionLttb(0, 9999, 100, puntos);
+        for (int i = 0; i < 10_000; i++) {
+            reduccion.agregar(i, Math.sin(i / 50.0));
+        }
+        reduccion.finalizar();
+
+        assertThat(puntos.fechas).hasSize(100);
+        assertThat(puntos.fechas.get(0)).isEqualTo(0L);
+        assertThat(puntos.fechas.get(puntos.fechas.size() - 1)).isEqualTo(9999L);
+        assertThat(puntos.fechas).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void conservaUnPicoAislado() {
+        Puntos puntos = new Puntos();
+        ReduccionLttb reduccion = new ReduccionLttb(0, 9999, 20, puntos);
+        for (int i = 0; i < 10_000; i++) {
+            reduccion.agregar(i, i == 4321 ? 500.0 : 1.0);
+        }
+        reduccion.finalizar();
+
+        assertThat(puntos.fechas).contains(4321L);
+        assertThat(puntos.valores).contains(500.0);
+    }
+
+    @Test
+    void bucketsVaciosNoEntreganPuntos() {
+        Puntos puntos = new Puntos();
+        ReduccionLttb reduccion = new ReduccionLttb(0, 10_000, 10, puntos);
+        // dos rafagas separadas por un hueco que cubre varios buckets
+        for (int i = 0; i < 100; i++) {
+            reduccion.agregar(i, i);
+        }
+        for (int i = 9_900; i < 10_000; i++) {
+            reduccion.agregar(i, i);
+        }
+        reduccion.finalizar();
+
+        assertThat(puntos.fechas.size()).isLessThanOrEqualTo(10);
+        assertThat(puntos.fechas).isSorted().startsWith(0L).endsWith(9_999L);
+    }
+
+    @Test
+    void serieVaciaNoEntregaPuntos() {
+        Puntos puntos = new Puntos();
+        new ReduccionLttb(0, 1000, 5, puntos).finalizar();
+
+        assertThat(puntos.fechas).isEmpty();
+    }
+
+    @Test
+    void rechazaMenosDeTresPuntos() {
+        assertThatThrownBy(() -> new ReduccionLttb(0, 1000, 2, new Puntos()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
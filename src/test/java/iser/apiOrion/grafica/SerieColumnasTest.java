@@ -0,0 +1,60 @@
+package iser.apiOrion.grafica;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SerieColumnasTest {
+
+    @Test
+    void escribeFechasYValoresEnColumnas() throws Exception {
+        SerieColumnas serie = new SerieColumnas();
+        serie.agregar(1000L, 1.5);
+        serie.agregar(2000L, null);
+        serie.punto(3000L, -2.0);
+
+        assertThat(escribir(serie)).isEqualTo("{\"t\":[1000,2000,3000],\"v\":[1.5,null,-2.0]}");
+    }
+
+    @Test
+    void serieVacia() throws Exception {
+        assertThat(escribir(new SerieColumnas())).isEqualTo("{\"t\":[],\"v\":[]}");
+    }
+
+    @Test
+    void creceMasAllaDeLaCapacidadInicial() throws Exception {
+        SerieColumnas serie = new SerieColumnas();
+        for (int i = 0; i < 1000; i++) {
+            serie.punto(i, i);
+        }
+
+        assertThat(serie.tamano()).isEqualTo(1000);
+        assertThat(escribir(serie)).startsWith("{\"t\":[0,1,2,").endsWith(",998.0,999.0]}");
+    }
+
+    @Test
+    void recibeLaSalidaDeLaReduccion() throws Exception {
+        SerieColumnas serie = new SerieColumnas();
+        ReduccionLttb reduccion = new ReduccionLttb(0, 4, 3, serie);
+        for (int i = 0; i < 5; i++) {
+            reduccion.agregar(i, i == 2 ? 10 : 0);
+        }
+        reduccion.finalizar();
+
+        assertThat(escribir(serie)).isEqualTo("{\"t\":[0,2,4],\"v\":[0.0,10.0,0.0]}");
+    }
+
+    private static String escribir(SerieColumnas serie) throws IOException {
+        StringWriter salida = new StringWriter();
+        try (JsonGenerator generador = new JsonFactory().createGenerator(salida)) {
+            serie.escribir(generador);
+        }
+        return salida.toString();
+    }
+
+}
@@ -0,0 +1,107 @@
+package iser.apiOrion.ingesta;
+
+import iser.apiOrion.DTO.DatosDTO;
+import iser.apiOrion.almacen.AlmacenDatos;
+import iser.apiOrion.almacen.ColaEscrituraDatos;
+import iser.apiOrion.almacen.MarcasSecuencia;
+import iser.apiOrion.almacen.PoliticaFechas;
+import iser.apiOrion.vivo.CentroDatosVivo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AdmisionDatosTest {
+
+    private AdmisionDatos admision;
+    private AlmacenDatos almacen;
+    private MarcasSecuencia marcas;
+    private CentroDatosVivo vivo;
+
+    @BeforeEach
+    void iniciar() {
+        almacen = mock(AlmacenDatos.class);
+        marcas = mock(MarcasSecuencia.class);
+        vivo = mock(CentroDatosVivo.class);
+        PoliticaFechas politica = mock(PoliticaFechas.class);
+        when(politica.resolver(any(), anyLong(), any(Date.class))).thenAnswer(invocacion -> invocacion.getArgument(2));
+        when(marcas.reservar(anyString(), anyLong())).thenReturn(true);
+
+        admision = new AdmisionDatos();
+        admision.almacenDatos = almacen;
+        admision.marcasSecuencia = marcas;
+        admision.centroDatosVivo = vivo;
+        admision.politicaFechas = politica;
+        admision.registroSensores = mock(RegistroSensores.class);
+        admision.limitadorIngesta = mock(LimitadorIngesta.class);
+        admision.colaEscrituraDatos = mock(ColaEscrituraDatos.class);
+        ReflectionTestUtils.setField(admision, "modoEscritura", "directo");
+    }
+
+    @Test
+    void escribePublicaYConfirmaLaSecuencia() {
+        when(almacen.escribirLote(anyList())).thenReturn(Map.of());
+
+        ResponseEntity<?> respuesta = admision.insertar(dato(5L), new Date(), null);
+
+        assertThat(respuesta.getStatusCode()).isEqualTo(HttpStatus.OK);
+        verify(vivo).publicar(anyList(), any());
+        verify(marcas).confirmar("s1", 5L);
+    }
+
+    @Test
+    void unErrorDelAlmacenResponde500YLiberaLaSecuencia() {
+        when(almacen.escribirLote(anyList())).thenThrow(new IllegalStateException("sin conexion"));
+
+        ResponseEntity<?> respuesta = admision.insertar(dato(5L), new Date(), null);
+
+        assertThat(respuesta.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        verify(marcas).liberar("s1", 5L);
+        verify(marcas, never()).confirmar(anyString(), anyLong());
+        verify(vivo, never()).publicar(anyList(), any());
+    }
+
+    @Test
+    void unDatoNoEscritoResponde500() {
+        when(almacen.escribirLote(anyList())).thenReturn(Map.of(0, "error de escritura"));
+
+        ResponseEntity<?> respuesta = admision.insertar(dato(5L), new Date(), null);
+
+        assertThat(respuesta.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        verify(marcas).liberar("s1", 5L);
+    }
+
+    @Test
+    void unDatoInvalidoResponde400SinReservar() {
+        DatosDTO datosDTO = dato(5L);
+        datosDTO.setValor("abc");
+
+        ResponseEntity<?> respuesta = admision.insertar(datosDTO, new Date(), null);
+
+        assertThat(respuesta.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(marcas, never()).reservar(anyString(), anyLong());
+    }
+
+    private static DatosDTO dato(Long secuencia) {
+        DatosDTO datosDTO = new DatosDTO();
+        datosDTO.setIdSensor("s1");
+        datosDTO.setValor("21.5");
+        datosDTO.setSecuencia(secuencia);
+        return datosDTO;
+    }
+
+}
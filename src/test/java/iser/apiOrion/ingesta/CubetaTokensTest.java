@@ -0,0 +1,99 @@
+package iser.apiOrion.ingesta;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CubetaTokensTest {
+
+    @Test
+    void entregaLaRafagaYDespuesPideEsperar() {
+        // un token cada 1000 s: durante la prueba no se recarga ninguno
+        CubetaTokens cubeta = new CubetaTokens(0.001, 5);
+        for (int i = 0; i < 5; i++) {
+            assertThat(cubeta.consumir()).isZero();
+        }
+
+        long espera = cubeta.consumir();
+        assertThat(espera).isPositive().isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1000));
+    }
+
+    @Test
+    void recargaUnTokenDespuesDeLaEsperaIndicada() throws InterruptedException {
+        CubetaTokens cubeta = new CubetaTokens(50, 1);
+        assertThat(cubeta.consumir()).isZero();
+
+        long espera = cubeta.consumir();
+        assertThat(espera).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+
+        TimeUnit.NANOSECONDS.sleep(espera + TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(cubeta.consumir()).isZero();
+    }
+
+    @Test
+    void lasPeticionesRechazadasNoConsumenTokens() throws InterruptedException {
+        CubetaTokens cubeta = new CubetaTokens(50, 1);
+        assertThat(cubeta.consumir()).isZero();
+        for (int i = 0; i < 100; i++) {
+            assertThat(cubeta.consumir()).isPositive();
+        }
+
+        TimeUnit.MILLISECONDS.sleep(25);
+        assertThat(cubeta.consumir()).isZero();
+    }
+
+    @Test
+    void hilosConcurrentesNoSuperanLaRafaga() throws InterruptedException {
+        CubetaTokens cubeta = new CubetaTokens(0.001, 50);
+        AtomicInteger consumidos = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Thread> hilos = new ArrayList<>();
+        for (int h = 0; h < 8; h++) {
+            Thread hilo = new Thread(() -> {
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    if (cubeta.consumir() == 0) {
+                        consumidos.incrementAndGet();
+                    }
+                }
+            });
+            hilo.start();
+            hilos.add(hilo);
+        }
+        salida.countDown();
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+
+        assertThat(consumidos.get()).isEqualTo(50);
+    }
+
+    @Test
+    void inactivaSegunElUltimoUso() throws InterruptedException {
+        CubetaTokens cubeta = new CubetaTokens(10, 1);
+        assertThat(cubeta.inactiva(TimeUnit.SECONDS.toNanos(60))).isFalse();
+
+        TimeUnit.MILLISECONDS.sleep(5);
+        assertThat(cubeta.inactiva(TimeUnit.MILLISECONDS.toNanos(1))).isTrue();
+        cubeta.consumir();
+        assertThat(cubeta.inactiva(TimeUnit.SECONDS.toNanos(60))).isFalse();
+    }
+
+    @Test
+    void rechazaParametrosInvalidos() {
+        assertThatThrownBy(() -> new CubetaTokens(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CubetaTokens(1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
@@ -0,0 +1,165 @@
+package iser.apiOrion.ingesta;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.IConfig;
+import io.moquette.broker.config.MemoryConfig;
+import iser.apiOrion.almacen.ColaEscrituraDatos;
+import iser.apiOrion.almacen.MarcasSecuencia;
+import iser.apiOrion.almacen.PoliticaFechas;
+import iser.apiOrion.collection.Datos;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Prueba de IngestaMqtt contra un broker Moquette embebido. El primer mensaje de cada prueba se
+ * publica retenido, para que llegue aunque la suscripcion termine despues de publicarlo.
+ */
+class IngestaMqttTest {
+
+    private Server broker;
+    private String url;
+    private MqttClient publicador;
+
+    private IngestaMqtt ingesta;
+    private ColaEscrituraDatos cola;
+    private MarcasSecuencia marcas;
+    private MeterRegistry metricas;
+
+    @BeforeEach
+    void iniciar() throws Exception {
+        int puerto;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            puerto = socket.getLocalPort();
+        }
+        Properties propiedades = new Properties();
+        propiedades.setProperty(IConfig.HOST_PROPERTY_NAME, "127.0.0.1");
+        propiedades.setProperty(IConfig.PORT_PROPERTY_NAME, Integer.toString(puerto));
+        propiedades.setProperty(IConfig.WEB_SOCKET_PORT_PROPERTY_NAME, "disabled");
+        propiedades.setProperty(IConfig.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+        propiedades.setProperty(IConfig.PERSISTENCE_ENABLED_PROPERTY_NAME, "false");
+        broker = new Server();
+        broker.startServer(new MemoryConfig(propiedades));
+        url = "tcp://127.0.0.1:" + puerto;
+
+        publicador = new MqttClient(url, "prueba-publicador", new MemoryPersistence());
+        publicador.connect();
+
+        cola = mock(ColaEscrituraDatos.class);
+        marcas = mock(MarcasSecuencia.class);
+        when(marcas.reservar(anyString(), anyLong())).thenReturn(true);
+        RegistroSensores registro = mock(RegistroSensores.class);
+        metricas = new SimpleMeterRegistry();
+        PoliticaFechas politicaFechas = new PoliticaFechas();
+        ReflectionTestUtils.setField(politicaFechas, "meterRegistry", metricas);
+        ReflectionTestUtils.invokeMethod(politicaFechas, "iniciar");
+
+        ingesta = new IngestaMqtt();
+        ingesta.colaEscrituraDatos = cola;
+        ingesta.marcasSecuencia = marcas;
+        ingesta.registroSensores = registro;
+        ingesta.politicaFechas = politicaFechas;
+        ingesta.objectMapper = new ObjectMapper();
+        ingesta.meterRegistry = metricas;
+        ReflectionTestUtils.setField(ingesta, "url", url);
+        ReflectionTestUtils.setField(ingesta, "clienteId", "prueba-ingesta");
+        ReflectionTestUtils.setField(ingesta, "usuario", "");
+        ReflectionTestUtils.setField(ingesta, "clave", "");
+        ReflectionTestUtils.setField(ingesta, "topico", "agricultor/+/datos");
+        ReflectionTestUtils.setField(ingesta, "qos", 1);
+        ReflectionTestUtils.setField(ingesta, "maxEnVuelo", 10);
+    }
+
+    @AfterEach
+    void detener() throws Exception {
+        ingesta.detener();
+        publicador.disconnect();
+        publicador.close();
+        broker.stopServer();
+    }
+
+    @Test
+    void entregaLosMensajesALaCola() throws Exception {
+        when(cola.ofrecer(any(), any())).thenReturn(true);
+        ingesta.iniciar();
+
+        publicador.publish("agricultor/s1/datos", "23.5".getBytes(StandardCharsets.UTF_8), 1, true);
+        verify(cola, timeout(10_000)).ofrecer(any(), any());
+        publicador.publish("agricultor/s2/datos", "{\"valor\":\"7.25\",\"unidad\":\"C\",\"secuencia\":5}".getBytes(StandardCharsets.UTF_8), 1, false);
+        publicador.publish("agricultor/s3/datos", "no es un numero".getBytes(StandardCharsets.UTF_8), 1, false);
+
+        ArgumentCaptor<Datos> datos = ArgumentCaptor.forClass(Datos.class);
+        verify(cola, timeout(10_000).times(2)).ofrecer(datos.capture(), any());
+        List<Datos> recibidos = datos.getAllValues();
+        assertThat(recibidos).extracting(Datos::getIdSensor).containsExactly("s1", "s2");
+        assertThat(recibidos).extracting(Datos::getValor).containsExactly(23.5, 7.25);
+        assertThat(recibidos.get(1).getUnidad()).isEqualTo("C");
+        verify(marcas).reservar("s2", 5);
+        esperarContador("mqtt.mensajes.descartados", 1);
+        assertThat(metricas.counter("mqtt.mensajes.recibidos").count()).isEqualTo(2);
+    }
+
+    @Test
+    void colaLlenaDescartaSinBloquearElCliente() throws Exception {
+        when(cola.ofrecer(any(), any())).thenReturn(false);
+        when(cola.activa()).thenReturn(true);
+        ingesta.iniciar();
+
+        publicador.publish("agricultor/s1/datos", "1".getBytes(StandardCharsets.UTF_8), 1, true);
+        verify(cola, timeout(10_000)).ofrecer(any(), any());
+        for (int i = 1; i <= 50; i++) {
+            publicador.publish("agricultor/s1/datos", ("{\"valor\":\"" + i + "\",\"secuencia\":" + i + "}").getBytes(StandardCharsets.UTF_8), 1, false);
+        }
+
+        // con el cliente bloqueado en la cola llena solo se procesaria el primer mensaje
+        esperarContador("mqtt.mensajes.perdidos", 51);
+        verify(cola, times(51)).ofrecer(any(), any());
+        verify(marcas, times(50)).liberar(eq("s1"), anyLong());
+        assertThat(metricas.counter("mqtt.mensajes.recibidos").count()).isZero();
+    }
+
+    @Test
+    void alDetenerseNoConfirmaNiCuentaComoPerdido() throws Exception {
+        when(cola.ofrecer(any(), any())).thenReturn(false);
+        when(cola.activa()).thenReturn(false);
+        ingesta.iniciar();
+
+        publicador.publish("agricultor/s1/datos", "{\"valor\":\"1\",\"secuencia\":9}".getBytes(StandardCharsets.UTF_8), 1, true);
+
+        verify(cola, timeout(10_000)).ofrecer(any(), any());
+        verify(marcas, timeout(10_000)).liberar(anyString(), eq(9L));
+        assertThat(metricas.counter("mqtt.mensajes.perdidos").count()).isZero();
+    }
+
+    private void esperarContador(String nombre, double valor) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (metricas.counter(nombre).count() < valor && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+        }
+        assertThat(metricas.counter(nombre).count()).isEqualTo(valor);
+    }
+
+}
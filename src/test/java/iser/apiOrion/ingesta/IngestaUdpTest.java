@@ -0,0 +1,174 @@
+package iser.apiOrion.ingesta;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iser.apiOrion.almacen.ColaEscrituraDatos;
+import iser.apiOrion.almacen.MarcasSecuencia;
+import iser.apiOrion.almacen.PoliticaFechas;
+import iser.apiOrion.collection.Datos;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IngestaUdpTest {
+
+    private static final String CLAVE = "clave-prueba";
+
+    private IngestaUdp ingesta;
+    private ColaEscrituraDatos cola;
+    private MeterRegistry metricas;
+    private DatagramSocket socket;
+    private int puerto;
+
+    @BeforeEach
+    void iniciar() throws Exception {
+        try (DatagramSocket libre = new DatagramSocket(0)) {
+            puerto = libre.getLocalPort();
+        }
+        metricas = new SimpleMeterRegistry();
+        cola = mock(ColaEscrituraDatos.class);
+        when(cola.ofrecer(any())).thenReturn(true);
+
+        RegistroSensores registro = mock(RegistroSensores.class);
+        when(registro.idSensor(1)).thenReturn("s1");
+        when(registro.idSensor(2)).thenReturn("s2");
+        when(registro.idSensor(3)).thenReturn("s3");
+        when(registro.idEstacion("s1")).thenReturn("e1");
+        when(registro.idEstacion("s2")).thenReturn("e1");
+        when(registro.idEstacion("s3")).thenReturn("e2");
+
+        // marca de agua en memoria, como la de MarcasSecuencia sin mongo
+        Map<String, Long> marcas = new HashMap<>();
+        MarcasSecuencia marcasSecuencia = mock(MarcasSecuencia.class);
+        when(marcasSecuencia.reservar(anyString(), anyLong())).thenAnswer(invocacion -> {
+            String emisor = invocacion.getArgument(0);
+            long contador = invocacion.getArgument(1);
+            long anterior = marcas.getOrDefault(emisor, -1L);
+            if (contador <= anterior) {
+                return false;
+            }
+            marcas.put(emisor, contador);
+            return true;
+        });
+
+        PoliticaFechas politicaFechas = new PoliticaFechas();
+        ReflectionTestUtils.setField(politicaFechas, "meterRegistry", metricas);
+        ReflectionTestUtils.invokeMethod(politicaFechas, "iniciar");
+
+        ingesta = new IngestaUdp();
+        ingesta.colaEscrituraDatos = cola;
+        ingesta.registroSensores = registro;
+        ingesta.politicaFechas = politicaFechas;
+        ingesta.marcasSecuencia = marcasSecuencia;
+        ingesta.meterRegistry = metricas;
+        ReflectionTestUtils.setField(ingesta, "puerto", puerto);
+        ReflectionTestUtils.setField(ingesta, "claveValidaDatos", CLAVE);
+        ReflectionTestUtils.setField(ingesta, "tasa", 100.0);
+        ReflectionTestUtils.setField(ingesta, "rafaga", 100);
+        ingesta.iniciar();
+        socket = new DatagramSocket();
+    }
+
+    @AfterEach
+    void detener() throws Exception {
+        socket.close();
+        ingesta.detener();
+    }
+
+    @Test
+    void aceptaUnDatagramaFirmadoConElDecimalEnviado() throws Exception {
+        enviar(datagrama(1, CLAVE, new int[] { 1, 2 }, new float[] { 23.1f, -0.3f }));
+
+        ArgumentCaptor<Datos> datos = ArgumentCaptor.forClass(Datos.class);
+        verify(cola, timeout(5000).times(2)).ofrecer(datos.capture());
+        List<Datos> recibidos = datos.getAllValues();
+        assertThat(recibidos).extracting(Datos::getIdSensor).containsExactly("s1", "s2");
+        assertThat(recibidos).extracting(Datos::getValor).containsExactly(23.1, -0.3);
+    }
+
+    @Test
+    void descartaDatagramasRepetidosOViejos() throws Exception {
+        byte[] original = datagrama(5, CLAVE, new int[] { 1 }, new float[] { 1f });
+        enviar(original);
+        verify(cola, timeout(5000)).ofrecer(any());
+
+        enviar(original);
+        enviar(datagrama(4, CLAVE, new int[] { 2 }, new float[] { 2f }));
+        esperarRechazos("repetido", 2);
+
+        enviar(datagrama(6, CLAVE, new int[] { 2 }, new float[] { 3f }));
+        verify(cola, timeout(5000).times(2)).ofrecer(any());
+    }
+
+    @Test
+    void losDatagramasSinFirmaNoCreanCubetas() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            enviar(datagrama(i, "otra-clave", new int[] { 1 }, new float[] { 1f }));
+        }
+        esperarRechazos("firma", 10);
+
+        Map<?, ?> cubetas = (Map<?, ?>) ReflectionTestUtils.getField(ingesta, "cubetas");
+        assertThat(cubetas).isEmpty();
+        verify(cola, times(0)).ofrecer(any());
+    }
+
+    @Test
+    void descartaLecturasDeOtraEstacion() throws Exception {
+        enviar(datagrama(1, CLAVE, new int[] { 1, 3, 2 }, new float[] { 1f, 2f, 3f }));
+
+        ArgumentCaptor<Datos> datos = ArgumentCaptor.forClass(Datos.class);
+        verify(cola, timeout(5000).times(2)).ofrecer(datos.capture());
+        assertThat(datos.getAllValues()).extracting(Datos::getIdSensor).containsExactly("s1", "s2");
+        esperarRechazos("formato", 1);
+    }
+
+    private byte[] datagrama(long contador, String clave, int[] sensores, float[] valores) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(10 + sensores.length * 16 + 8);
+        buffer.put((byte) 2).put((byte) sensores.length).putLong(contador);
+        for (int i = 0; i < sensores.length; i++) {
+            buffer.putInt(sensores[i]).putLong(0).putFloat(valores[i]);
+        }
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(clave.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        mac.update(buffer.array(), 0, buffer.position());
+        buffer.put(mac.doFinal(), 0, 8);
+        return buffer.array();
+    }
+
+    private void enviar(byte[] datagrama) throws Exception {
+        socket.send(new DatagramPacket(datagrama, datagrama.length, InetAddress.getLoopbackAddress(), puerto));
+    }
+
+    private void esperarRechazos(String motivo, double valor) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (metricas.counter("udp.datagramas.rechazados", "motivo", motivo).count() < valor
+                && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        assertThat(metricas.counter("udp.datagramas.rechazados", "motivo", motivo).count()).isEqualTo(valor);
+    }
+
+}
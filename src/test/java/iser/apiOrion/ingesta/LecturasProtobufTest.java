@@ -0,0 +1,134 @@
+package iser.apiOrion.ingesta;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LecturasProtobufTest {
+
+    @Test
+    void decodificaLecturasDelimitadas() throws Exception {
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        escribirLectura(cuerpo, 7, 1_700_000_000_000L, 23.5f);
+        escribirLectura(cuerpo, 300, 0, -1.25f);
+
+        List<LecturasProtobuf.Lectura> lecturas = LecturasProtobuf.decodificar(new ByteArrayInputStream(cuerpo.toByteArray()), 10);
+
+        assertThat(lecturas).containsExactly(
+                new LecturasProtobuf.Lectura(7, 1_700_000_000_000L, 23.5f),
+                new LecturasProtobuf.Lectura(300, 0, -1.25f));
+    }
+
+    @Test
+    void rechazaLongitudQueNoCabeEnUnInt() {
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        // 2^32 + 3: truncada a int seria 3 y apuntaria a una lectura valida
+        varint(cuerpo, (1L << 32) + 3);
+        cuerpo.writeBytes(new byte[] { 0x08, 0x01, 0x00 });
+
+        assertThatThrownBy(() -> LecturasProtobuf.decodificar(cuerpo.toByteArray(), 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Longitud invalida");
+    }
+
+    @Test
+    void rechazaCampoDelimitadoMasLargoQueElMensaje() {
+        ByteArrayOutputStream mensaje = new ByteArrayOutputStream();
+        // campo 9 delimitado con una longitud de 2^31, mayor que lo que queda
+        varint(mensaje, (9 << 3) | 2);
+        varint(mensaje, 1L << 31);
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        varint(cuerpo, mensaje.size());
+        cuerpo.writeBytes(mensaje.toByteArray());
+
+        assertThatThrownBy(() -> LecturasProtobuf.decodificar(cuerpo.toByteArray(), 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Longitud invalida");
+    }
+
+    @Test
+    void rechazaIndiceDeSensorFueraDeRango() {
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        escribirLectura(cuerpo, 1L << 32, 0, 1f);
+
+        assertThatThrownBy(() -> LecturasProtobuf.decodificar(cuerpo.toByteArray(), 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Indice de sensor");
+    }
+
+    @Test
+    void rechazaLecturaSinSensor() {
+        ByteArrayOutputStream mensaje = new ByteArrayOutputStream();
+        varint(mensaje, 2 << 3);
+        varint(mensaje, 1_700_000_000_000L);
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        varint(cuerpo, mensaje.size());
+        cuerpo.writeBytes(mensaje.toByteArray());
+
+        assertThatThrownBy(() -> LecturasProtobuf.decodificar(cuerpo.toByteArray(), 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("sin indice de sensor");
+    }
+
+    @Test
+    void rechazaFechaNegativa() {
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        // uint64 mayor que 2^63 - 1, que como long queda negativo
+        escribirLectura(cuerpo, 7, -1L, 1f);
+
+        assertThatThrownBy(() -> LecturasProtobuf.decodificar(cuerpo.toByteArray(), 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Fecha negativa");
+    }
+
+    @Test
+    void cortaLaLecturaDelCuerpoAlSuperarElMaximoDeBytes() {
+        int maximo = 4;
+        int maximoBytes = maximo * LecturasProtobuf.MAXIMO_BYTES_LECTURA;
+        int[] leidos = new int[1];
+        InputStream infinito = new InputStream() {
+            @Override
+            public int read() {
+                leidos[0]++;
+                return 0;
+            }
+        };
+
+        assertThatThrownBy(() -> LecturasProtobuf.decodificar(infinito, maximo))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("bytes");
+        assertThat(leidos[0]).isEqualTo(maximoBytes + 1);
+    }
+
+    private static void escribirLectura(ByteArrayOutputStream cuerpo, long sensor, long fecha, float valor) {
+        ByteArrayOutputStream mensaje = new ByteArrayOutputStream();
+        varint(mensaje, 1 << 3);
+        varint(mensaje, sensor);
+        if (fecha != 0) {
+            varint(mensaje, 2 << 3);
+            varint(mensaje, fecha);
+        }
+        varint(mensaje, (3 << 3) | 5);
+        int bits = Float.floatToIntBits(valor);
+        for (int i = 0; i < 4; i++) {
+            mensaje.write(bits >>> (8 * i));
+        }
+        varint(cuerpo, mensaje.size());
+        cuerpo.writeBytes(mensaje.toByteArray());
+    }
+
+    private static void varint(ByteArrayOutputStream salida, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            salida.write((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        salida.write((int) valor);
+    }
+
+}
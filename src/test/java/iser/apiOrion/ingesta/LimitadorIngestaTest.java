@@ -0,0 +1,57 @@
+package iser.apiOrion.ingesta;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LimitadorIngestaTest {
+
+    private LimitadorIngesta limitador;
+
+    @BeforeEach
+    void iniciar() {
+        limitador = new LimitadorIngesta();
+        limitador.meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(limitador, "habilitado", true);
+        ReflectionTestUtils.setField(limitador, "insertarDatosRequestURI", "/apiOrion/api/v1/datos/insertar");
+        // un token cada 1000 s: durante la prueba no se recarga ninguno
+        ReflectionTestUtils.setField(limitador, "tasaIp", 0.001);
+        ReflectionTestUtils.setField(limitador, "rafagaIp", 3);
+        ReflectionTestUtils.setField(limitador, "tasaSensor", 0.001);
+        ReflectionTestUtils.setField(limitador, "rafagaSensor", 2);
+        ReflectionTestUtils.setField(limitador, "maxSensores", 100);
+        limitador.iniciar();
+    }
+
+    @Test
+    void laIpSeLimitaSinConocerElSensor() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(limitador.admitir("10.0.0.1")).isZero();
+        }
+        assertThat(limitador.admitir("10.0.0.1")).isPositive();
+        assertThat(limitador.admitir("10.0.0.2")).isZero();
+    }
+
+    @Test
+    void cadaSensorTieneSuCubeta() {
+        assertThat(limitador.admitirSensor("s1")).isZero();
+        assertThat(limitador.admitirSensor("s1")).isZero();
+        assertThat(limitador.admitirSensor("s1")).isPositive();
+
+        assertThat(limitador.admitirSensor("s2")).isZero();
+        assertThat(limitador.meterRegistry.counter("ingesta.limite.rechazados", "clave", "sensor").count()).isEqualTo(1);
+    }
+
+    @Test
+    void deshabilitadoNoLimitaSensores() {
+        ReflectionTestUtils.setField(limitador, "habilitado", false);
+        for (int i = 0; i < 5; i++) {
+            assertThat(limitador.admitirSensor("s1")).isZero();
+        }
+        assertThat(limitador.aplica("/apiOrion/api/v1/datos/insertar")).isFalse();
+    }
+
+}
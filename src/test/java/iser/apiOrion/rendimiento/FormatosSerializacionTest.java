@@ -0,0 +1,109 @@
+package iser.apiOrion.rendimiento;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import iser.apiOrion.collection.Datos;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compara JSON, CBOR y Smile sobre un lote representativo de Datos: tamano del cuerpo (plano
+ * y con gzip) y tiempo de serializar y deserializar. Los mappers se construyen como los de los
+ * conversores de Spring MVC. Se ejecuta con gradlew rendimiento.
+ */
+@Tag("rendimiento")
+class FormatosSerializacionTest {
+
+    private static final int DATOS = 5000;
+    private static final long MEDICION_NS = 2_000_000_000L;
+
+    @Test
+    void compararFormatos() throws IOException {
+        Datos[] lote = lote();
+        Map<String, ObjectMapper> formatos = new LinkedHashMap<>();
+        formatos.put("json", Jackson2ObjectMapperBuilder.json().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build());
+        formatos.put("cbor", Jackson2ObjectMapperBuilder.cbor().build());
+        formatos.put("smile", Jackson2ObjectMapperBuilder.smile().build());
+
+        Map<String, Integer> tamanos = new LinkedHashMap<>();
+        System.out.printf("%-6s %10s %10s %14s %14s%n", "", "bytes", "gzip", "escribir ms", "leer ms");
+        for (Map.Entry<String, ObjectMapper> formato : formatos.entrySet()) {
+            ObjectMapper mapper = formato.getValue();
+            byte[] cuerpo = mapper.writeValueAsBytes(lote);
+            assertThat(mapper.readValue(cuerpo, Datos[].class)).containsExactly(lote);
+
+            double escribir = medir(() -> mapper.writeValueAsBytes(lote));
+            double leer = medir(() -> mapper.readValue(cuerpo, Datos[].class));
+            tamanos.put(formato.getKey(), cuerpo.length);
+            System.out.printf("%-6s %10d %10d %14.3f %14.3f%n", formato.getKey(), cuerpo.length, gzip(cuerpo), escribir, leer);
+        }
+
+        assertThat(tamanos.get("cbor")).isLessThan(tamanos.get("json"));
+        assertThat(tamanos.get("smile")).isLessThan(tamanos.get("json"));
+    }
+
+    /**
+     * Lecturas de un sensor cada 10 s con un decimal, como las de una pagina de rango
+     */
+    private Datos[] lote() {
+        Random aleatorio = new Random(7);
+        String idSensor = new ObjectId().toHexString();
+        long fecha = 1_700_000_000_000L;
+        Datos[] lote = new Datos[DATOS];
+        for (int i = 0; i < DATOS; i++) {
+            Datos datos = new Datos();
+            datos.setId(new ObjectId().toHexString());
+            datos.setIdSensor(idSensor);
+            datos.setValor(Math.round((22 + 3 * Math.sin(i / 200.0) + aleatorio.nextGaussian() * 0.2) * 10) / 10.0);
+            datos.setUnidad("C");
+            datos.setFecha(new Date(fecha + i * 10_000L));
+            datos.setVersionEsquema(Datos.VERSION_ESQUEMA);
+            datos.setRecibido(new Date(fecha + i * 10_000L + 150));
+            lote[i] = datos;
+        }
+        return lote;
+    }
+
+    private interface Operacion {
+        Object ejecutar() throws IOException;
+    }
+
+    /**
+     * Calienta la operacion y devuelve el promedio de milisegundos por ejecucion
+     */
+    private double medir(Operacion operacion) throws IOException {
+        Object sumidero = null;
+        for (int i = 0; i < 200; i++) {
+            sumidero = operacion.ejecutar();
+        }
+        long inicio = System.nanoTime();
+        long ejecuciones = 0;
+        while (System.nanoTime() - inicio < MEDICION_NS) {
+            sumidero = operacion.ejecutar();
+            ejecuciones++;
+        }
+        assertThat(sumidero).isNotNull();
+        return (System.nanoTime() - inicio) / 1e6 / ejecuciones;
+    }
+
+    private int gzip(byte[] cuerpo) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (GZIPOutputStream comprimido = new GZIPOutputStream(salida)) {
+            comprimido.write(cuerpo);
+        }
+        return salida.size();
+    }
+
+}
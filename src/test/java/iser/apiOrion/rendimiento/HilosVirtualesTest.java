@@ -0,0 +1,82 @@
+package iser.apiOrion.rendimiento;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compara el pool de hilos de plataforma de Tomcat (200 hilos, el valor por defecto de
+ * server.tomcat.threads.max) con un hilo virtual por tarea bajo una carga de peticiones que se
+ * bloquean en E/S, como las consultas a mongo o las llamadas a Tuya. La latencia de cada
+ * peticion incluye la espera en la cola del pool. Se ejecuta con gradlew rendimiento.
+ */
+@Tag("rendimiento")
+class HilosVirtualesTest {
+
+    private static final int PETICIONES = 10_000;
+    private static final int HILOS_PLATAFORMA = 200;
+    private static final long BLOQUEO_MS = 20;
+
+    @Test
+    void compararHilosDePlataformaYVirtuales() throws Exception {
+        // calentamiento de ambos ejecutores
+        medir(Executors.newFixedThreadPool(HILOS_PLATAFORMA), 1000);
+        medir(Executors.newVirtualThreadPerTaskExecutor(), 1000);
+
+        Resultado plataforma = medir(Executors.newFixedThreadPool(HILOS_PLATAFORMA), PETICIONES);
+        Resultado virtuales = medir(Executors.newVirtualThreadPerTaskExecutor(), PETICIONES);
+
+        System.out.printf("%-11s %10s %12s %10s %10s%n", "", "total ms", "peticiones/s", "p50 ms", "p99 ms");
+        imprimir("plataforma", plataforma);
+        imprimir("virtuales", virtuales);
+
+        // con 200 hilos el minimo teorico es PETICIONES / 200 * BLOQUEO_MS = 1 s
+        assertThat(virtuales.totalMs()).isLessThan(plataforma.totalMs());
+    }
+
+    private record Resultado(double totalMs, double[] latenciasMs) {
+
+        double percentil(double p) {
+            return latenciasMs[(int) Math.min(latenciasMs.length - 1, Math.ceil(p * latenciasMs.length) - 1)];
+        }
+
+    }
+
+    /**
+     * Envia todas las peticiones de golpe y espera a que terminen
+     */
+    private Resultado medir(ExecutorService ejecutor, int peticiones) throws Exception {
+        List<Future<Long>> pendientes = new ArrayList<>(peticiones);
+        long inicio = System.nanoTime();
+        try (ejecutor) {
+            for (int i = 0; i < peticiones; i++) {
+                long enviada = System.nanoTime();
+                pendientes.add(ejecutor.submit(() -> {
+                    Thread.sleep(BLOQUEO_MS);
+                    return System.nanoTime() - enviada;
+                }));
+            }
+        }
+        double totalMs = (System.nanoTime() - inicio) / 1e6;
+        double[] latencias = new double[peticiones];
+        for (int i = 0; i < peticiones; i++) {
+            latencias[i] = pendientes.get(i).get() / 1e6;
+        }
+        Arrays.sort(latencias);
+        return new Resultado(totalMs, latencias);
+    }
+
+    private void imprimir(String nombre, Resultado resultado) {
+        System.out.printf("%-11s %10.1f %12.0f %10.1f %10.1f%n", nombre, resultado.totalMs(),
+                PETICIONES / (resultado.totalMs() / 1000), resultado.percentil(0.5), resultado.percentil(0.99));
+    }
+
+}